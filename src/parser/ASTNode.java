@@ -5,6 +5,14 @@ public abstract  class ASTNode {
     protected int line;
     protected  int column;
 
+    // Expression type id computed by TypeChecker, valid while typeStamp matches its current analysis
+    int cachedTypeId;
+    int typeStamp;
+
+    // What Interpreter resolved this node to when it loaded the program: a frame slot,
+    // field, method or operator code, depending on the node
+    int slot;
+
     public ASTNode(int line, int column) {
         this.line = line;
         this.column = column;
@@ -18,20 +26,36 @@ public abstract  class ASTNode {
         return column;
     }
 
-    public abstract void print(int indent);
-
-    protected void printIndent(int indent) {
-        for (int i = 0; i < indent; i++) {
-            System.out.print("  ");
-        }
+    /**
+     * Move this node by delta lines, after the text above it gained or lost lines
+     * Only this node moves; its children are moved separately.
+     */
+    void shiftLines(int delta) {
+        line += delta;
     }
 
-    public abstract void printTree(String prefix, boolean isLast);
+    public abstract <R> R accept(ASTVisitor<R> visitor);
 
-    protected void tree(String prefix, boolean isLast, String text) {
-        System.out.print(prefix);
-        System.out.print(isLast ? "└── " : "├── ");
-        System.out.println(text);
+    public abstract void print(OutputRenderer out, int indent);
+
+    public abstract void printTree(OutputRenderer out, boolean isLast);
+
+    /**
+     * Print this subtree in indented form to standard output
+     */
+    public void print(int indent) {
+        OutputRenderer out = OutputRenderer.toStandardOutput();
+        out.print(this, indent);
+        out.flush();
+    }
+
+    /**
+     * Print this subtree in tree form to standard output
+     */
+    public void printTree(String prefix, boolean isLast) {
+        OutputRenderer out = OutputRenderer.toStandardOutput();
+        out.printTree(prefix, this, isLast);
+        out.flush();
     }
 }
 
@@ -52,23 +76,28 @@ class ProgrameNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("Program");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitProgram(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "Program");
 
         for (ASTNode classNode : classes) {
-            classNode.print(indent + 2);
+            out.print(classNode, indent + 2);
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "Program");
-        String p = prefix + (isLast ? "    " : "│   ");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "Program");
+        out.push(isLast);
 
         for (int i = 0; i < classes.size(); i++) {
-            classes.get(i).printTree(p, i == classes.size() - 1);
+            out.printTree(classes.get(i), i == classes.size() - 1);
         }
+        out.pop();
     }
 }
 
@@ -99,36 +128,51 @@ class ClassNode extends ASTNode {
         return members;
     }
 
+    /**
+     * Replace the members from (inclusive) to to (exclusive) with replacement
+     */
+    public void replaceMembers(int from, int to, List<ASTNode> replacement) {
+        List<ASTNode> range = members.subList(from, to);
+        range.clear();
+        range.addAll(replacement);
+    }
+
     @Override
-    public void print(int indent) {
-        printIndent(indent);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitClass(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
         if (modifiers != null && !modifiers.isEmpty()) {
-            System.out.println("ClassDeclaration: " + modifiers + " " + name + " [Line " + line + "]");
+            out.line(indent, "ClassDeclaration: " + modifiers + " " + name + " [Line " + line + "]");
         } else {
-            System.out.println("ClassDeclaration: " + name + " [Line " + line + "]");
+            out.line(indent, "ClassDeclaration: " + name + " [Line " + line + "]");
         }
         for (ASTNode member : members) {
-            member.print(indent + 1);
+            out.print(member, indent + 1);
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
+    public void printTree(OutputRenderer out, boolean isLast) {
         if (modifiers != null && !modifiers.isEmpty()) {
-            tree(prefix, isLast, "ClassDeclaration: " +modifiers+" " +name+ " [Line " + line + "]");
+            out.branch(isLast, "ClassDeclaration: " +modifiers+" " +name+ " [Line " + line + "]");
         } else {
-            tree(prefix, isLast, "ClassDeclaration: " + name+ " [Line " + line + "]");
+            out.branch(isLast, "ClassDeclaration: " + name+ " [Line " + line + "]");
         }
-        String p = prefix + (isLast ? "    " : "│   ");
+        out.push(isLast);
         for (int i = 0; i < members.size(); i++) {
-            members.get(i).printTree(p, i == members.size() - 1);
+            out.printTree(members.get(i), i == members.size() - 1);
         }
+        out.pop();
     }
 }
 
 class MethodNode extends ASTNode {
     private String modifiers;
     private String returnType;
+    private int returnTypeId;
     private String name;
     private  List<ASTNode> parameters ;
     private  List<ASTNode> statements ;
@@ -138,6 +182,7 @@ class MethodNode extends ASTNode {
         this.modifiers=modifiers;
         this.name = name;
         this.returnType = returnType;
+        this.returnTypeId = TypeIds.intern(returnType);
         this.parameters = new ArrayList<>();
         this.statements = new ArrayList<>();
     }
@@ -158,6 +203,10 @@ class MethodNode extends ASTNode {
         return returnType;
     }
 
+    public int getReturnTypeId() {
+        return returnTypeId;
+    }
+
     public String getModifiers() {
         return modifiers;
     }
@@ -171,57 +220,65 @@ class MethodNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitMethod(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
         if (modifiers != null && !modifiers.isEmpty()) {
-            System.out.println("MethodDeclaration: " + modifiers + " " + returnType + " " + name + " [Line " + line + "]");
+            out.line(indent, "MethodDeclaration: " + modifiers + " " + returnType + " " + name + " [Line " + line + "]");
         } else {
-            System.out.println("MethodDeclaration: " + returnType + " " + name + " [Line " + line + "]");
+            out.line(indent, "MethodDeclaration: " + returnType + " " + name + " [Line " + line + "]");
         }
 
         if (!parameters.isEmpty()) {
-            printIndent(indent + 1);
-            System.out.println("Parameters:");
+            out.line(indent + 1, "Parameters:");
             for (ASTNode param : parameters) {
-                param.print(indent + 2);
+                out.print(param, indent + 2);
             }
         }
 
         if (!statements.isEmpty()) {
-            printIndent(indent + 1);
-            System.out.println("Body:");
+            out.line(indent + 1, "Body:");
             for (ASTNode stmt : statements) {
-                stmt.print(indent + 2);
+                out.print(stmt, indent + 2);
             }
         }
     }
     @Override
-    public void printTree(String prefix, boolean isLast) {
+    public void printTree(OutputRenderer out, boolean isLast) {
         if (modifiers != null && !modifiers.isEmpty()) {
-            tree(prefix,isLast,"MethodDeclaration: " + modifiers + " " + returnType + " " + name + " [Line " + line + "]");
+            out.branch(isLast, "MethodDeclaration: " + modifiers + " " + returnType + " " + name + " [Line " + line + "]");
         } else {
-            tree(prefix,isLast,"MethodDeclaration: " + returnType + " " + name + " [Line " + line + "]");
+            out.branch(isLast, "MethodDeclaration: " + returnType + " " + name + " [Line " + line + "]");
         }
-        String p = prefix + (isLast ? "    " : "│   ");
+        out.push(isLast);
 
         if (!parameters.isEmpty()) {
-            tree(p, false, "Parameters");
+            out.branch(false, "Parameters");
+            out.push(false);
             for (int i = 0; i < parameters.size(); i++) {
-                parameters.get(i).printTree(p + "│   ", i == parameters.size() - 1);
+                out.printTree(parameters.get(i), i == parameters.size() - 1);
             }
+            out.pop();
         }
 
         if (!statements.isEmpty()) {
-            tree(p, true, "Body");
+            out.branch(true, "Body");
+            out.push(true);
             for (int i = 0; i < statements.size(); i++) {
-                statements.get(i).printTree(p + "    ", i == statements.size() - 1);
+                out.printTree(statements.get(i), i == statements.size() - 1);
             }
+            out.pop();
         }
+        out.pop();
     }
 }
 
 class ParameterNode extends ASTNode {
     private String type;
+    private int typeId;
     private String name;
     private boolean isArray;
 
@@ -229,6 +286,7 @@ class ParameterNode extends ASTNode {
         super(line, column);
         this.name=name;
         this.type=type;
+        this.typeId = TypeIds.intern(type);
         this.isArray=isArray;
     }
 
@@ -240,30 +298,39 @@ class ParameterNode extends ASTNode {
         return type;
     }
 
+    public int getTypeId() {
+        return typeId;
+    }
+
     public boolean isArray() {
         return isArray;
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitParameter(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
         if (isArray) {
-            System.out.println("Parameter: " + type + "[] " + name);
+            out.line(indent, "Parameter: " + type + "[] " + name);
         } else {
-            System.out.println("Parameter: " + type + " " + name);
+            out.line(indent, "Parameter: " + type + " " + name);
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
+    public void printTree(OutputRenderer out, boolean isLast) {
         String arr = isArray ? "[]" : "";
-        tree(prefix, isLast, "Parameter: " + type + arr + " " + name);
+        out.branch(isLast, "Parameter: " + type + arr + " " + name);
     }
 }
 
 class FieldNode extends ASTNode {
     private String modifiers;
     private String type;
+    private int typeId;
     private String name;
     private boolean isArray;
 
@@ -271,6 +338,7 @@ class FieldNode extends ASTNode {
         super(line, column);
         this.modifiers = modifiers;
         this.type = type;
+        this.typeId = TypeIds.intern(type);
         this.name = name;
         this.isArray = isArray;
     }
@@ -283,6 +351,10 @@ class FieldNode extends ASTNode {
         return type;
     }
 
+    public int getTypeId() {
+        return typeId;
+    }
+
     public String getModifiers() {
         return modifiers;
     }
@@ -292,34 +364,47 @@ class FieldNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitField(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
         String arrayStr = isArray ? "[]" : "";
         if (modifiers != null && !modifiers.isEmpty()) {
-            System.out.println("Field: " + modifiers + " " + type + arrayStr + " " + name + " [Line " + line + "]");
+            out.line(indent, "Field: " + modifiers + " " + type + arrayStr + " " + name + " [Line " + line + "]");
         } else {
-            System.out.println("Field: " + type + arrayStr + " " + name + " [Line " + line + "]");
+            out.line(indent, "Field: " + type + arrayStr + " " + name + " [Line " + line + "]");
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
+    public void printTree(OutputRenderer out, boolean isLast) {
         String arr = isArray ? "[]" : "";
-        tree(prefix, isLast, "Field: " + type + arr + " " + name + " [Line " + line + "]");
+        out.branch(isLast, "Field: " + type + arr + " " + name + " [Line " + line + "]");
     }
 }
 
 class VariableDeclarationNode extends ASTNode{
     private String type;
+    private int typeId;
     private String name;
     private boolean isArray;
+    private boolean isFinal;
     private ASTNode initializer;
 
     public VariableDeclarationNode(String type,String name,boolean isArray,ASTNode initializer,int line, int column) {
+        this(type, name, isArray, false, initializer, line, column);
+    }
+
+    public VariableDeclarationNode(String type, String name, boolean isArray, boolean isFinal, ASTNode initializer,
+                                   int line, int column) {
         super(line, column);
         this.name = name;
         this.type=type;
+        this.typeId = TypeIds.intern(type);
         this.isArray=isArray;
+        this.isFinal = isFinal;
         this.initializer = initializer;
     }
 
@@ -331,31 +416,45 @@ class VariableDeclarationNode extends ASTNode{
         return type;
     }
 
+    public int getTypeId() {
+        return typeId;
+    }
+
     public boolean isArray() {
         return isArray;
     }
 
+    public boolean isFinal() {
+        return isFinal;
+    }
+
     public ASTNode getInitializer() {
         return initializer;
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitVariableDeclaration(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
         String arrayStr = isArray ? "[]" : "";
-        System.out.println("VariableDeclaration: " + type + arrayStr + " " + name + " [Line " + line + "]");
+        String finalStr = isFinal ? "final " : "";
+        out.line(indent, "VariableDeclaration: " + finalStr + type + arrayStr + " " + name + " [Line " + line + "]");
         if (initializer != null) {
-            printIndent(indent + 1);
-            System.out.println("Initializer:");
-            initializer.print(indent + 2);
+            out.line(indent + 1, "Initializer:");
+            out.print(initializer, indent + 2);
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "VariableDeclaration: " + type + " " + name+ " [Line " + line + "]");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "VariableDeclaration: " + (isFinal ? "final " : "") + type + " " + name+ " [Line " + line + "]");
         if (initializer != null) {
-            initializer.printTree(prefix + (isLast ? "    " : "│   "), true);
+            out.push(isLast);
+            out.printTree(initializer, true);
+            out.pop();
         }
     }
 }
@@ -379,21 +478,26 @@ class AssignmentNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("Assignment: " + variableName + " [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitAssignment(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "Assignment: " + variableName + " [Line " + line + "]");
         if (expression != null) {
-            printIndent(indent + 1);
-            System.out.println("Expression:");
-            expression.print(indent + 2);
+            out.line(indent + 1, "Expression:");
+            out.print(expression, indent + 2);
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "Assignment: " + variableName+ " [Line " + line + "]");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "Assignment: " + variableName+ " [Line " + line + "]");
         if (expression != null) {
-            expression.printTree(prefix + (isLast ? "    " : "│   "), true);
+            out.push(isLast);
+            out.printTree(expression, true);
+            out.pop();
         }
     }
 }
@@ -423,40 +527,48 @@ class IfNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("IfStatement [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitIf(this);
+    }
 
-        printIndent(indent + 1);
-        System.out.println("Condition:");
-        condition.print(indent + 2);
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "IfStatement [Line " + line + "]");
+
+        out.line(indent + 1, "Condition:");
+        out.print(condition, indent + 2);
 
-        printIndent(indent + 1);
-        System.out.println("Then:");
-        thenStatement.print(indent + 2);
+        out.line(indent + 1, "Then:");
+        out.print(thenStatement, indent + 2);
 
         if (elseStatement != null) {
-            printIndent(indent + 1);
-            System.out.println("Else:");
-            elseStatement.print(indent + 2);
+            out.line(indent + 1, "Else:");
+            out.print(elseStatement, indent + 2);
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "IfStatement [line "+line+ " ]");
-        String p = prefix + (isLast ? "    " : "│   ");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "IfStatement [line "+line+ " ]");
+        out.push(isLast);
 
-        tree(p, false, "Condition");
-        condition.printTree(p + "│   ", true);
+        out.branch(false, "Condition");
+        out.push(false);
+        out.printTree(condition, true);
+        out.pop();
 
-        tree(p, elseStatement == null, "Then");
-        thenStatement.printTree(p + "    ", true);
+        out.branch(elseStatement == null, "Then");
+        out.push(true);
+        out.printTree(thenStatement, true);
+        out.pop();
 
         if (elseStatement != null) {
-            tree(p, true, "Else");
-            elseStatement.printTree(p + "    ", true);
+            out.branch(true, "Else");
+            out.push(true);
+            out.printTree(elseStatement, true);
+            out.pop();
         }
+        out.pop();
     }
 }
 
@@ -479,29 +591,36 @@ class WhileNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("WhileLoop [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitWhile(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "WhileLoop [Line " + line + "]");
 
-        printIndent(indent + 1);
-        System.out.println("Condition:");
-        condition.print(indent + 2);
+        out.line(indent + 1, "Condition:");
+        out.print(condition, indent + 2);
 
-        printIndent(indent + 1);
-        System.out.println("Body:");
-        body.print(indent + 2);
+        out.line(indent + 1, "Body:");
+        out.print(body, indent + 2);
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "WhileLoop [Line " + line + "]");
-        String p = prefix + (isLast ? "    " : "│   ");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "WhileLoop [Line " + line + "]");
+        out.push(isLast);
 
-        tree(p, false, "Condition");
-        condition.printTree(p + "│   ", true);
+        out.branch(false, "Condition");
+        out.push(false);
+        out.printTree(condition, true);
+        out.pop();
 
-        tree(p, true, "Body");
-        body.printTree(p + "    ", true);
+        out.branch(true, "Body");
+        out.push(true);
+        out.printTree(body, true);
+        out.pop();
+        out.pop();
     }
 }
 
@@ -524,29 +643,36 @@ class DoWhileNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("DoWhileLoop [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitDoWhile(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "DoWhileLoop [Line " + line + "]");
 
-        printIndent(indent + 1);
-        System.out.println("Body:");
-        body.print(indent + 2);
+        out.line(indent + 1, "Body:");
+        out.print(body, indent + 2);
 
-        printIndent(indent + 1);
-        System.out.println("Condition:");
-        condition.print(indent + 2);
+        out.line(indent + 1, "Condition:");
+        out.print(condition, indent + 2);
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "DoWhileLoop [Line " + line + "]");
-        String p = prefix + (isLast ? "    " : "│   ");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "DoWhileLoop [Line " + line + "]");
+        out.push(isLast);
 
-        tree(p, false, "Body");
-        body.printTree(p + "│   ", true);
+        out.branch(false, "Body");
+        out.push(false);
+        out.printTree(body, true);
+        out.pop();
 
-        tree(p, true, "Condition");
-        condition.printTree(p + "    ", true);
+        out.branch(true, "Condition");
+        out.push(true);
+        out.printTree(condition, true);
+        out.pop();
+        out.pop();
     }
 }
 
@@ -581,43 +707,44 @@ class ForNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("ForLoop [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitFor(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "ForLoop [Line " + line + "]");
 
         if (init != null) {
-            printIndent(indent + 1);
-            System.out.println("Initialization:");
-            init.print(indent + 2);
+            out.line(indent + 1, "Initialization:");
+            out.print(init, indent + 2);
         }
 
         if (condition != null) {
-            printIndent(indent + 1);
-            System.out.println("Condition:");
-            condition.print(indent + 2);
+            out.line(indent + 1, "Condition:");
+            out.print(condition, indent + 2);
         }
 
         if (update != null) {
-            printIndent(indent + 1);
-            System.out.println("Update:");
-            update.print(indent + 2);
+            out.line(indent + 1, "Update:");
+            out.print(update, indent + 2);
         }
 
-        printIndent(indent + 1);
-        System.out.println("Body:");
-        body.print(indent + 2);
+        out.line(indent + 1, "Body:");
+        out.print(body, indent + 2);
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "ForLoop [Line " + line + "]");
-        String p = prefix + (isLast ? "    " : "│   ");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "ForLoop [Line " + line + "]");
+        out.push(isLast);
 
-        if (init != null) init.printTree(p, false);
-        if (condition != null) condition.printTree(p, false);
-        if (update != null) update.printTree(p, false);
+        if (init != null) out.printTree(init, false);
+        if (condition != null) out.printTree(condition, false);
+        if (update != null) out.printTree(update, false);
 
-        body.printTree(p, true);
+        out.printTree(body, true);
+        out.pop();
     }
 }
 
@@ -653,31 +780,35 @@ class SwitchNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("SwitchStatement [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitSwitch(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "SwitchStatement [Line " + line + "]");
 
-        printIndent(indent + 1);
-        System.out.println("Expression:");
-        expression.print(indent + 2);
+        out.line(indent + 1, "Expression:");
+        out.print(expression, indent + 2);
 
         for (ASTNode caseNode : cases) {
-            caseNode.print(indent + 1);
+            out.print(caseNode, indent + 1);
         }
 
         if (defaultCase != null) {
-            defaultCase.print(indent + 1);
+            out.print(defaultCase, indent + 1);
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "SwitchStatement [Line " + line + "]");
-        String p = prefix + (isLast ? "    " : "│   ");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "SwitchStatement [Line " + line + "]");
+        out.push(isLast);
 
-        expression.printTree(p, false);
-        for (ASTNode c : cases) c.printTree(p, false);
-        if (defaultCase != null) defaultCase.printTree(p, true);
+        out.printTree(expression, false);
+        for (ASTNode c : cases) out.printTree(c, false);
+        if (defaultCase != null) out.printTree(defaultCase, true);
+        out.pop();
     }
 }
 
@@ -704,28 +835,32 @@ class CaseNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("Case [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitCase(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "Case [Line " + line + "]");
 
-        printIndent(indent + 1);
-        System.out.println("Value:");
-        value.print(indent + 2);
+        out.line(indent + 1, "Value:");
+        out.print(value, indent + 2);
 
         if (!statements.isEmpty()) {
-            printIndent(indent + 1);
-            System.out.println("Statements:");
+            out.line(indent + 1, "Statements:");
             for (ASTNode stmt : statements) {
-                stmt.print(indent + 2);
+                out.print(stmt, indent + 2);
             }
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "Case [Line " + line + "]");
-        value.printTree(prefix + "    ", false);
-        for (ASTNode s : statements) s.printTree(prefix + "    ", true);
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "Case [Line " + line + "]");
+        out.push(true);
+        out.printTree(value, false);
+        for (ASTNode s : statements) out.printTree(s, true);
+        out.pop();
     }
 }
 
@@ -746,23 +881,28 @@ class DefaultCaseNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("Default [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitDefaultCase(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "Default [Line " + line + "]");
 
         if (!statements.isEmpty()) {
-            printIndent(indent + 1);
-            System.out.println("Statements:");
+            out.line(indent + 1, "Statements:");
             for (ASTNode stmt : statements) {
-                stmt.print(indent + 2);
+                out.print(stmt, indent + 2);
             }
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "Default [Line " + line + "]");
-        for (ASTNode s : statements) s.printTree(prefix + "    ", true);
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "Default [Line " + line + "]");
+        out.push(true);
+        for (ASTNode s : statements) out.printTree(s, true);
+        out.pop();
     }
 }
 
@@ -779,21 +919,27 @@ class ReturnNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("ReturnStatement [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitReturn(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "ReturnStatement [Line " + line + "]");
         if (expression != null) {
-            printIndent(indent + 1);
-            System.out.println("Expression:");
-            expression.print(indent + 2);
+            out.line(indent + 1, "Expression:");
+            out.print(expression, indent + 2);
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "ReturnStatement [Line " + line + "]");
-        if (expression != null)
-            expression.printTree(prefix + "    ", true);
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "ReturnStatement [Line " + line + "]");
+        if (expression != null) {
+            out.push(true);
+            out.printTree(expression, true);
+            out.pop();
+        }
     }
 }
 
@@ -804,14 +950,18 @@ class BreakNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("BreakStatement [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitBreak(this);
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "BreakStatement [Line " + line + "]");
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "BreakStatement [Line " + line + "]");
+    }
+
+    @Override
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "BreakStatement [Line " + line + "]");
     }
 }
 
@@ -822,14 +972,18 @@ class ContinueNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("ContinueStatement [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitContinue(this);
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "ContinueStatement [Line " + line + "]");
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "ContinueStatement [Line " + line + "]");
+    }
+
+    @Override
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "ContinueStatement [Line " + line + "]");
     }
 }
 
@@ -846,21 +1000,26 @@ class BlockNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("Block [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitBlock(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "Block [Line " + line + "]");
         for (ASTNode stmt : statements) {
-            stmt.print(indent + 1);
+            out.print(stmt, indent + 1);
         }
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "Block [Line " + line);
-        String p = prefix + (isLast ? "    " : "│   ");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "Block [Line " + line);
+        out.push(isLast);
         for (int i = 0; i < statements.size(); i++) {
-            statements.get(i).printTree(p, i == statements.size() - 1);
+            out.printTree(statements.get(i), i == statements.size() - 1);
         }
+        out.pop();
     }
 }
 
@@ -889,24 +1048,159 @@ class BinaryOpNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("BinaryOp: " + operator + " [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitBinaryOp(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "BinaryOp: " + operator + " [Line " + line + "]");
 
-        printIndent(indent + 1);
-        System.out.println("Left:");
-        left.print(indent + 2);
+        out.line(indent + 1, "Left:");
+        out.print(left, indent + 2);
 
-        printIndent(indent + 1);
-        System.out.println("Right:");
-        right.print(indent + 2);
+        out.line(indent + 1, "Right:");
+        out.print(right, indent + 2);
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "BinaryOp: " + operator);
-        left.printTree(prefix + "    ", false);
-        right.printTree(prefix + "    ", true);
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "BinaryOp: " + operator);
+        out.push(true);
+        out.printTree(left, false);
+        out.printTree(right, true);
+        out.pop();
+    }
+}
+
+/**
+ * A run of the same associative operator, such as a + b + c or a && b && c
+ * Stands for the left-deep chain of BinaryOpNodes the parser used to build, and
+ * prints as that chain, but keeps the operands in one list so a long chain can
+ * be walked and typed in a loop. Operator i sits between operands i and i + 1.
+ */
+class NaryOpNode extends ASTNode {
+    private String operator;
+    private List<ASTNode> operands;
+    private int[] operatorLines;
+    private int[] operatorColumns;
+
+    /**
+     * Chain of left operator right, with the first operator at line and column
+     */
+    public NaryOpNode(String operator, ASTNode left, ASTNode right, int line, int column) {
+        super(line, column);
+        this.operator = operator;
+        this.operands = new ArrayList<>();
+        this.operands.add(left);
+        this.operands.add(right);
+        this.operatorLines = new int[] { line, 0, 0, 0 };
+        this.operatorColumns = new int[] { column, 0, 0, 0 };
+    }
+
+    /**
+     * Extend the chain with another operator at line and column and its right operand
+     */
+    public void addOperand(ASTNode operand, int line, int column) {
+        int index = operands.size() - 1;
+        if (index == operatorLines.length) {
+            operatorLines = Arrays.copyOf(operatorLines, index * 2);
+            operatorColumns = Arrays.copyOf(operatorColumns, index * 2);
+        }
+        operatorLines[index] = line;
+        operatorColumns[index] = column;
+        operands.add(operand);
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public List<ASTNode> getOperands() {
+        return operands;
+    }
+
+    public int getOperatorLine(int index) {
+        return operatorLines[index];
+    }
+
+    public int getOperatorColumn(int index) {
+        return operatorColumns[index];
+    }
+
+    @Override
+    void shiftLines(int delta) {
+        super.shiftLines(delta);
+        for (int i = 0; i < operands.size() - 1; i++) {
+            operatorLines[i] += delta;
+        }
+    }
+
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitNaryOp(this);
+    }
+
+    /**
+     * Printed as the BinaryOp chain: the operators from last to first down the
+     * Left branches, then the right operands from first to last on the way back up
+     */
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        int count = operands.size() - 1;
+        int levels = 0;
+        for (int level = 0; level < count; level++) {
+            int at = indent + 2 * level;
+            if (level > 0) {
+                if (!out.fitsBelow(level)) {
+                    out.line(at, "...");
+                    break;
+                }
+                out.enterLevel();
+            }
+            out.line(at, "BinaryOp: " + operator + " [Line " + operatorLines[count - 1 - level] + "]");
+            out.line(at + 1, "Left:");
+            levels++;
+        }
+        if (levels == count) {
+            out.print(operands.get(0), indent + 2 * count);
+        }
+        for (int level = levels - 1; level >= 0; level--) {
+            int at = indent + 2 * level;
+            out.line(at + 1, "Right:");
+            out.print(operands.get(count - level), at + 2);
+            if (level > 0) {
+                out.leaveLevel();
+            }
+        }
+    }
+
+    @Override
+    public void printTree(OutputRenderer out, boolean isLast) {
+        int count = operands.size() - 1;
+        int levels = 0;
+        for (int level = 0; level < count; level++) {
+            if (level > 0) {
+                if (!out.fitsBelow(level)) {
+                    out.branch(false, "...");
+                    break;
+                }
+                out.enterLevel();
+            }
+            out.branch(level == 0 && isLast, "BinaryOp: " + operator);
+            out.push(true);
+            levels++;
+        }
+        if (levels == count) {
+            out.printTree(operands.get(0), false);
+        }
+        for (int level = levels - 1; level >= 0; level--) {
+            out.printTree(operands.get(count - level), true);
+            out.pop();
+            if (level > 0) {
+                out.leaveLevel();
+            }
+        }
     }
 }
 
@@ -935,50 +1229,87 @@ class UnaryOpNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitUnaryOp(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
         String type = isPrefix ? "Prefix" : "Postfix";
-        System.out.println("UnaryOp (" + type + "): " + operator + " [Line " + line + "]");
+        out.line(indent, "UnaryOp (" + type + "): " + operator + " [Line " + line + "]");
 
-        printIndent(indent + 1);
-        System.out.println("Operand:");
-        operand.print(indent + 2);
+        out.line(indent + 1, "Operand:");
+        out.print(operand, indent + 2);
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "UnaryOp: " + operator+  "[Line " + line + "]");
-        operand.printTree(prefix + "    ", true);
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "UnaryOp: " + operator+  "[Line " + line + "]");
+        out.push(true);
+        out.printTree(operand, true);
+        out.pop();
     }
 }
 
 class LiteralNode extends ASTNode {
     private String type;
+    private int typeId;
     private String value;
 
+    // Value of the literal, parsed from its text on first use; NOT_CONSTANT if it has none
+    private Object constant;
+
     public LiteralNode(String type, String value, int line, int column) {
         super(line, column);
         this.type = type;
+        this.typeId = TypeIds.intern(type);
         this.value = value;
     }
 
+    /**
+     * Literal whose value is already known, such as one made by ConstantFolder
+     */
+    LiteralNode(String type, String value, Object constant, int line, int column) {
+        this(type, value, line, column);
+        this.constant = constant;
+    }
+
     public String getType() {
         return type;
     }
 
+    public int getTypeId() {
+        return typeId;
+    }
+
     public String getValue() {
         return value;
     }
 
+    /**
+     * The literal's value as an Integer, Long, Float, Double, Boolean, Character or
+     * String, or null if its text does not denote one (such as an int literal out of range)
+     */
+    Object getConstant() {
+        if (constant == null) {
+            constant = ConstantFolder.parse(typeId, value);
+        }
+        return constant != ConstantFolder.NOT_CONSTANT ? constant : null;
+    }
+
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("Literal: " + type + " = " + value);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitLiteral(this);
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "Literal: " +type+ " = "+ value);
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "Literal: " + type + " = " + value);
+    }
+
+    @Override
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "Literal: " +type+ " = "+ value);
     }
 }
 
@@ -995,14 +1326,18 @@ class IdentifierNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("Identifier: " + name);
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitIdentifier(this);
     }
 
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "Identifier: " + name);
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "Identifier: " + name);
+    }
+
+    @Override
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "Identifier: " + name);
     }
 }
 
@@ -1029,23 +1364,28 @@ class MethodCallNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("MethodCall: " + methodName + " [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitMethodCall(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "MethodCall: " + methodName + " [Line " + line + "]");
 
         if (!arguments.isEmpty()) {
-            printIndent(indent + 1);
-            System.out.println("Arguments:");
+            out.line(indent + 1, "Arguments:");
             for (ASTNode arg : arguments) {
-                arg.print(indent + 2);
+                out.print(arg, indent + 2);
             }
         }
     }
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "MethodCall: " + methodName+ " [Line " + line + "]");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "MethodCall: " + methodName+ " [Line " + line + "]");
+        out.push(true);
         for (ASTNode a : arguments)
-            a.printTree(prefix + "    ", true);
+            out.printTree(a, true);
+        out.pop();
     }}
 
 class MemberAccessNode extends ASTNode {
@@ -1073,19 +1413,23 @@ class MemberAccessNode extends ASTNode {
     }
 
     @Override
-    public void print(int indent) {
-        printIndent(indent);
-        System.out.println("MemberAccess: " + String.join(".", members) + " [Line " + line + "]");
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitMemberAccess(this);
+    }
+
+    @Override
+    public void print(OutputRenderer out, int indent) {
+        out.line(indent, "MemberAccess: " + String.join(".", members) + " [Line " + line + "]");
 
         if (methodCall != null) {
-            methodCall.print(indent + 1);
+            out.print(methodCall, indent + 1);
         }
     }
     @Override
-    public void printTree(String prefix, boolean isLast) {
-        tree(prefix, isLast, "MemberAccess: " + String.join(".", members)+ " [Line " + line + "]");
+    public void printTree(OutputRenderer out, boolean isLast) {
+        out.branch(isLast, "MemberAccess: " + String.join(".", members)+ " [Line " + line + "]");
         if (methodCall != null) {
-            methodCall.printTree(prefix,isLast);
+            out.printTree(methodCall, isLast);
         }
     }
 }
\ No newline at end of file
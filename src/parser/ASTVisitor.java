@@ -0,0 +1,292 @@
+package parser;
+
+import java.util.*;
+
+/**
+ * Visitor over the AST node types
+ * Each node's accept() calls the matching visit method, so a pass is one
+ * virtual call per node instead of a chain of instanceof checks.
+ */
+interface ASTVisitor<R> {
+    R visitProgram(ProgrameNode node);
+    R visitClass(ClassNode node);
+    R visitMethod(MethodNode node);
+    R visitParameter(ParameterNode node);
+    R visitField(FieldNode node);
+    R visitVariableDeclaration(VariableDeclarationNode node);
+    R visitAssignment(AssignmentNode node);
+    R visitIf(IfNode node);
+    R visitWhile(WhileNode node);
+    R visitDoWhile(DoWhileNode node);
+    R visitFor(ForNode node);
+    R visitSwitch(SwitchNode node);
+    R visitCase(CaseNode node);
+    R visitDefaultCase(DefaultCaseNode node);
+    R visitReturn(ReturnNode node);
+    R visitBreak(BreakNode node);
+    R visitContinue(ContinueNode node);
+    R visitBlock(BlockNode node);
+    R visitBinaryOp(BinaryOpNode node);
+    R visitNaryOp(NaryOpNode node);
+    R visitUnaryOp(UnaryOpNode node);
+    R visitLiteral(LiteralNode node);
+    R visitIdentifier(IdentifierNode node);
+    R visitMethodCall(MethodCallNode node);
+    R visitMemberAccess(MemberAccessNode node);
+}
+
+/**
+ * Visitor where every node type not overridden returns defaultVisit(node)
+ */
+abstract class ASTDefaultVisitor<R> implements ASTVisitor<R> {
+
+    protected R defaultVisit(ASTNode node) {
+        return null;
+    }
+
+    public R visitProgram(ProgrameNode node) { return defaultVisit(node); }
+    public R visitClass(ClassNode node) { return defaultVisit(node); }
+    public R visitMethod(MethodNode node) { return defaultVisit(node); }
+    public R visitParameter(ParameterNode node) { return defaultVisit(node); }
+    public R visitField(FieldNode node) { return defaultVisit(node); }
+    public R visitVariableDeclaration(VariableDeclarationNode node) { return defaultVisit(node); }
+    public R visitAssignment(AssignmentNode node) { return defaultVisit(node); }
+    public R visitIf(IfNode node) { return defaultVisit(node); }
+    public R visitWhile(WhileNode node) { return defaultVisit(node); }
+    public R visitDoWhile(DoWhileNode node) { return defaultVisit(node); }
+    public R visitFor(ForNode node) { return defaultVisit(node); }
+    public R visitSwitch(SwitchNode node) { return defaultVisit(node); }
+    public R visitCase(CaseNode node) { return defaultVisit(node); }
+    public R visitDefaultCase(DefaultCaseNode node) { return defaultVisit(node); }
+    public R visitReturn(ReturnNode node) { return defaultVisit(node); }
+    public R visitBreak(BreakNode node) { return defaultVisit(node); }
+    public R visitContinue(ContinueNode node) { return defaultVisit(node); }
+    public R visitBlock(BlockNode node) { return defaultVisit(node); }
+    public R visitBinaryOp(BinaryOpNode node) { return defaultVisit(node); }
+    public R visitNaryOp(NaryOpNode node) { return defaultVisit(node); }
+    public R visitUnaryOp(UnaryOpNode node) { return defaultVisit(node); }
+    public R visitLiteral(LiteralNode node) { return defaultVisit(node); }
+    public R visitIdentifier(IdentifierNode node) { return defaultVisit(node); }
+    public R visitMethodCall(MethodCallNode node) { return defaultVisit(node); }
+    public R visitMemberAccess(MemberAccessNode node) { return defaultVisit(node); }
+}
+
+/**
+ * Visitor that walks every child of every node in source order
+ * The walk runs on an explicit work stack, so the depth of the tree is not
+ * limited by the thread's stack. Subclasses override the node types they
+ * inspect and call super to keep descending: super schedules the children,
+ * which are visited after the override returns. Work that has to wait for the
+ * children is scheduled with afterChildren and done in leave.
+ */
+abstract class ASTWalker implements ASTVisitor<Void> {
+
+    // Work stack: a node to visit, or, with a token, a node whose children have all been visited
+    private ASTNode[] stackNodes = new ASTNode[64];
+    private Object[] stackTokens = new Object[64];
+    private int stackSize;
+
+    /**
+     * Visit node and everything below it
+     */
+    protected void walk(ASTNode node) {
+        int base = stackSize;
+        schedule(node, null);
+        try {
+            while (stackSize > base) {
+                int top = --stackSize;
+                ASTNode next = stackNodes[top];
+                Object token = stackTokens[top];
+                stackNodes[top] = null;
+                stackTokens[top] = null;
+                if (token == null) {
+                    visitNode(next);
+                } else {
+                    leave(next, token);
+                }
+            }
+        } finally {
+            while (stackSize > base) {
+                stackSize--;
+                stackNodes[stackSize] = null;
+                stackTokens[stackSize] = null;
+            }
+        }
+    }
+
+    /**
+     * Called for each node the walk reaches
+     */
+    protected void visitNode(ASTNode node) {
+        node.accept(this);
+    }
+
+    /**
+     * Call leave(node, token) once the children scheduled after this call have been visited
+     */
+    protected final void afterChildren(ASTNode node, Object token) {
+        schedule(node, token);
+    }
+
+    protected void leave(ASTNode node, Object token) {
+    }
+
+    /**
+     * Visit a child; children are scheduled last to first so they are visited in source order
+     */
+    private void descend(ASTNode child) {
+        if (child != null) {
+            schedule(child, null);
+        }
+    }
+
+    private void descend(List<ASTNode> children) {
+        for (int i = children.size() - 1; i >= 0; i--) {
+            descend(children.get(i));
+        }
+    }
+
+    private void schedule(ASTNode node, Object token) {
+        if (node == null) {
+            return;
+        }
+        if (stackSize == stackNodes.length) {
+            stackNodes = Arrays.copyOf(stackNodes, stackSize * 2);
+            stackTokens = Arrays.copyOf(stackTokens, stackSize * 2);
+        }
+        stackNodes[stackSize] = node;
+        stackTokens[stackSize] = token;
+        stackSize++;
+    }
+
+    public Void visitProgram(ProgrameNode node) {
+        descend(node.getClasses());
+        return null;
+    }
+
+    public Void visitClass(ClassNode node) {
+        descend(node.getMembers());
+        return null;
+    }
+
+    public Void visitMethod(MethodNode node) {
+        descend(node.getStatements());
+        descend(node.getParameters());
+        return null;
+    }
+
+    public Void visitParameter(ParameterNode node) {
+        return null;
+    }
+
+    public Void visitField(FieldNode node) {
+        return null;
+    }
+
+    public Void visitVariableDeclaration(VariableDeclarationNode node) {
+        descend(node.getInitializer());
+        return null;
+    }
+
+    public Void visitAssignment(AssignmentNode node) {
+        descend(node.getExpression());
+        return null;
+    }
+
+    public Void visitIf(IfNode node) {
+        descend(node.getElseStatement());
+        descend(node.getThenStatement());
+        descend(node.getCondition());
+        return null;
+    }
+
+    public Void visitWhile(WhileNode node) {
+        descend(node.getBody());
+        descend(node.getCondition());
+        return null;
+    }
+
+    public Void visitDoWhile(DoWhileNode node) {
+        descend(node.getCondition());
+        descend(node.getBody());
+        return null;
+    }
+
+    public Void visitFor(ForNode node) {
+        descend(node.getBody());
+        descend(node.getUpdate());
+        descend(node.getCondition());
+        descend(node.getInit());
+        return null;
+    }
+
+    public Void visitSwitch(SwitchNode node) {
+        descend(node.getDefaultCase());
+        descend(node.getCases());
+        descend(node.getExpression());
+        return null;
+    }
+
+    public Void visitCase(CaseNode node) {
+        descend(node.getStatements());
+        descend(node.getValue());
+        return null;
+    }
+
+    public Void visitDefaultCase(DefaultCaseNode node) {
+        descend(node.getStatements());
+        return null;
+    }
+
+    public Void visitReturn(ReturnNode node) {
+        descend(node.getExpression());
+        return null;
+    }
+
+    public Void visitBreak(BreakNode node) {
+        return null;
+    }
+
+    public Void visitContinue(ContinueNode node) {
+        return null;
+    }
+
+    public Void visitBlock(BlockNode node) {
+        descend(node.getStatements());
+        return null;
+    }
+
+    public Void visitBinaryOp(BinaryOpNode node) {
+        descend(node.getRight());
+        descend(node.getLeft());
+        return null;
+    }
+
+    public Void visitNaryOp(NaryOpNode node) {
+        descend(node.getOperands());
+        return null;
+    }
+
+    public Void visitUnaryOp(UnaryOpNode node) {
+        descend(node.getOperand());
+        return null;
+    }
+
+    public Void visitLiteral(LiteralNode node) {
+        return null;
+    }
+
+    public Void visitIdentifier(IdentifierNode node) {
+        return null;
+    }
+
+    public Void visitMethodCall(MethodCallNode node) {
+        descend(node.getArguments());
+        return null;
+    }
+
+    public Void visitMemberAccess(MemberAccessNode node) {
+        descend(node.getMethodCall());
+        return null;
+    }
+}
@@ -0,0 +1,316 @@
+package parser;
+
+import java.util.*;
+
+/**
+ * Runs every registered rule during one walk of the tree
+ * The rules interested in each node class are resolved once, when the pipeline
+ * is built, so visiting a node costs only the calls of the rules that want it.
+ */
+class AnalysisPipeline extends ASTWalker {
+
+    private static final AnalysisRule[] NO_RULES = new AnalysisRule[0];
+
+    private final AnalysisRule.Diagnostics diagnostics;
+
+    private final Interested onProgram;
+    private final Interested onClass;
+    private final Interested onMethod;
+    private final Interested onParameter;
+    private final Interested onField;
+    private final Interested onVariableDeclaration;
+    private final Interested onAssignment;
+    private final Interested onIf;
+    private final Interested onWhile;
+    private final Interested onDoWhile;
+    private final Interested onFor;
+    private final Interested onSwitch;
+    private final Interested onCase;
+    private final Interested onDefaultCase;
+    private final Interested onReturn;
+    private final Interested onBreak;
+    private final Interested onContinue;
+    private final Interested onBlock;
+    private final Interested onBinaryOp;
+    private final Interested onNaryOp;
+    private final Interested onUnaryOp;
+    private final Interested onLiteral;
+    private final Interested onIdentifier;
+    private final Interested onMethodCall;
+    private final Interested onMemberAccess;
+
+    AnalysisPipeline(List<AnalysisRule> rules, AnalysisRule.Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+        Map<Class<?>, List<AnalysisRule>> enterBy = new HashMap<>();
+        Map<Class<?>, List<AnalysisRule>> exitBy = new HashMap<>();
+        for (AnalysisRule rule : rules) {
+            index(enterBy, rule, rule.getInterests());
+            index(exitBy, rule, rule.getExitInterests());
+        }
+        this.onProgram = interested(enterBy, exitBy, ProgrameNode.class);
+        this.onClass = interested(enterBy, exitBy, ClassNode.class);
+        this.onMethod = interested(enterBy, exitBy, MethodNode.class);
+        this.onParameter = interested(enterBy, exitBy, ParameterNode.class);
+        this.onField = interested(enterBy, exitBy, FieldNode.class);
+        this.onVariableDeclaration = interested(enterBy, exitBy, VariableDeclarationNode.class);
+        this.onAssignment = interested(enterBy, exitBy, AssignmentNode.class);
+        this.onIf = interested(enterBy, exitBy, IfNode.class);
+        this.onWhile = interested(enterBy, exitBy, WhileNode.class);
+        this.onDoWhile = interested(enterBy, exitBy, DoWhileNode.class);
+        this.onFor = interested(enterBy, exitBy, ForNode.class);
+        this.onSwitch = interested(enterBy, exitBy, SwitchNode.class);
+        this.onCase = interested(enterBy, exitBy, CaseNode.class);
+        this.onDefaultCase = interested(enterBy, exitBy, DefaultCaseNode.class);
+        this.onReturn = interested(enterBy, exitBy, ReturnNode.class);
+        this.onBreak = interested(enterBy, exitBy, BreakNode.class);
+        this.onContinue = interested(enterBy, exitBy, ContinueNode.class);
+        this.onBlock = interested(enterBy, exitBy, BlockNode.class);
+        this.onBinaryOp = interested(enterBy, exitBy, BinaryOpNode.class);
+        this.onNaryOp = interested(enterBy, exitBy, NaryOpNode.class);
+        this.onUnaryOp = interested(enterBy, exitBy, UnaryOpNode.class);
+        this.onLiteral = interested(enterBy, exitBy, LiteralNode.class);
+        this.onIdentifier = interested(enterBy, exitBy, IdentifierNode.class);
+        this.onMethodCall = interested(enterBy, exitBy, MethodCallNode.class);
+        this.onMemberAccess = interested(enterBy, exitBy, MemberAccessNode.class);
+    }
+
+    private static void index(Map<Class<?>, List<AnalysisRule>> byNodeClass, AnalysisRule rule,
+                              List<Class<? extends ASTNode>> nodeClasses) {
+        for (Class<? extends ASTNode> nodeClass : nodeClasses) {
+            List<AnalysisRule> interested = byNodeClass.get(nodeClass);
+            if (interested == null) {
+                interested = new ArrayList<>();
+                byNodeClass.put(nodeClass, interested);
+            }
+            interested.add(rule);
+        }
+    }
+
+    private static Interested interested(Map<Class<?>, List<AnalysisRule>> enterBy,
+                                         Map<Class<?>, List<AnalysisRule>> exitBy, Class<?> nodeClass) {
+        return new Interested(toArray(enterBy.get(nodeClass)), toArray(exitBy.get(nodeClass)));
+    }
+
+    private static AnalysisRule[] toArray(List<AnalysisRule> rules) {
+        return rules != null ? rules.toArray(NO_RULES) : NO_RULES;
+    }
+
+    /**
+     * Walk the tree rooted at node, calling the interested rules at every node
+     */
+    void run(ASTNode root) {
+        walk(root);
+    }
+
+    /**
+     * Call the enter of the interested rules, and schedule their exit for after the children
+     */
+    private void enter(Interested interested, ASTNode node) {
+        for (AnalysisRule rule : interested.enter) {
+            rule.enter(node, diagnostics);
+        }
+        if (interested.exit.length != 0) {
+            afterChildren(node, interested.exit);
+        }
+    }
+
+    @Override
+    protected void leave(ASTNode node, Object rules) {
+        AnalysisRule[] exiting = (AnalysisRule[]) rules;
+        for (int i = exiting.length - 1; i >= 0; i--) {
+            exiting[i].exit(node, diagnostics);
+        }
+    }
+
+    // ==================== NODE VISITS ====================
+
+    @Override
+    public Void visitProgram(ProgrameNode node) {
+        enter(onProgram, node);
+        super.visitProgram(node);
+        return null;
+    }
+
+    @Override
+    public Void visitClass(ClassNode node) {
+        enter(onClass, node);
+        super.visitClass(node);
+        return null;
+    }
+
+    @Override
+    public Void visitMethod(MethodNode node) {
+        enter(onMethod, node);
+        super.visitMethod(node);
+        return null;
+    }
+
+    @Override
+    public Void visitParameter(ParameterNode node) {
+        enter(onParameter, node);
+        super.visitParameter(node);
+        return null;
+    }
+
+    @Override
+    public Void visitField(FieldNode node) {
+        enter(onField, node);
+        super.visitField(node);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableDeclaration(VariableDeclarationNode node) {
+        enter(onVariableDeclaration, node);
+        super.visitVariableDeclaration(node);
+        return null;
+    }
+
+    @Override
+    public Void visitAssignment(AssignmentNode node) {
+        enter(onAssignment, node);
+        super.visitAssignment(node);
+        return null;
+    }
+
+    @Override
+    public Void visitIf(IfNode node) {
+        enter(onIf, node);
+        super.visitIf(node);
+        return null;
+    }
+
+    @Override
+    public Void visitWhile(WhileNode node) {
+        enter(onWhile, node);
+        super.visitWhile(node);
+        return null;
+    }
+
+    @Override
+    public Void visitDoWhile(DoWhileNode node) {
+        enter(onDoWhile, node);
+        super.visitDoWhile(node);
+        return null;
+    }
+
+    @Override
+    public Void visitFor(ForNode node) {
+        enter(onFor, node);
+        super.visitFor(node);
+        return null;
+    }
+
+    @Override
+    public Void visitSwitch(SwitchNode node) {
+        enter(onSwitch, node);
+        super.visitSwitch(node);
+        return null;
+    }
+
+    @Override
+    public Void visitCase(CaseNode node) {
+        enter(onCase, node);
+        super.visitCase(node);
+        return null;
+    }
+
+    @Override
+    public Void visitDefaultCase(DefaultCaseNode node) {
+        enter(onDefaultCase, node);
+        super.visitDefaultCase(node);
+        return null;
+    }
+
+    @Override
+    public Void visitReturn(ReturnNode node) {
+        enter(onReturn, node);
+        super.visitReturn(node);
+        return null;
+    }
+
+    @Override
+    public Void visitBreak(BreakNode node) {
+        enter(onBreak, node);
+        super.visitBreak(node);
+        return null;
+    }
+
+    @Override
+    public Void visitContinue(ContinueNode node) {
+        enter(onContinue, node);
+        super.visitContinue(node);
+        return null;
+    }
+
+    @Override
+    public Void visitBlock(BlockNode node) {
+        enter(onBlock, node);
+        super.visitBlock(node);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryOp(BinaryOpNode node) {
+        enter(onBinaryOp, node);
+        super.visitBinaryOp(node);
+        return null;
+    }
+
+    @Override
+    public Void visitNaryOp(NaryOpNode node) {
+        enter(onNaryOp, node);
+        super.visitNaryOp(node);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryOp(UnaryOpNode node) {
+        enter(onUnaryOp, node);
+        super.visitUnaryOp(node);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteral(LiteralNode node) {
+        enter(onLiteral, node);
+        super.visitLiteral(node);
+        return null;
+    }
+
+    @Override
+    public Void visitIdentifier(IdentifierNode node) {
+        enter(onIdentifier, node);
+        super.visitIdentifier(node);
+        return null;
+    }
+
+    @Override
+    public Void visitMethodCall(MethodCallNode node) {
+        enter(onMethodCall, node);
+        super.visitMethodCall(node);
+        return null;
+    }
+
+    @Override
+    public Void visitMemberAccess(MemberAccessNode node) {
+        enter(onMemberAccess, node);
+        super.visitMemberAccess(node);
+        return null;
+    }
+
+    // ==================== INNER CLASSES ====================
+
+    /**
+     * The rules called for one node class
+     */
+    private static final class Interested {
+        final AnalysisRule[] enter;
+        final AnalysisRule[] exit;
+
+        Interested(AnalysisRule[] enter, AnalysisRule[] exit) {
+            this.enter = enter;
+            this.exit = exit;
+        }
+    }
+}
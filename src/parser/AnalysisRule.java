@@ -0,0 +1,63 @@
+package parser;
+
+import java.util.*;
+
+/**
+ * A semantic check run by AnalysisPipeline
+ * A rule names the node classes it is interested in and its enter is called only
+ * for those, before the node's children are walked. Its exit is called after the
+ * children only for the node classes it asks for with exitFrom.
+ * Rules added to a TypeChecker must not keep state between calls, since
+ * analyzeParallel runs them on several methods at once.
+ */
+abstract class AnalysisRule {
+
+    private final List<Class<? extends ASTNode>> interests;
+    private List<Class<? extends ASTNode>> exitInterests = Collections.emptyList();
+
+    @SafeVarargs
+    protected AnalysisRule(Class<? extends ASTNode>... interests) {
+        // Copied element by element: passing the varargs array on makes -Xlint:varargs warn
+        List<Class<? extends ASTNode>> copy = new ArrayList<>(interests.length);
+        for (Class<? extends ASTNode> nodeClass : interests) {
+            copy.add(nodeClass);
+        }
+        this.interests = Collections.unmodifiableList(copy);
+    }
+
+    /**
+     * Also call exit for nodes of these classes
+     * Waiting for a node's children costs the walk a step, so only rules that need it ask.
+     */
+    @SafeVarargs
+    protected final void exitFrom(Class<? extends ASTNode>... nodeClasses) {
+        List<Class<? extends ASTNode>> copy = new ArrayList<>(nodeClasses.length);
+        for (Class<? extends ASTNode> nodeClass : nodeClasses) {
+            copy.add(nodeClass);
+        }
+        this.exitInterests = Collections.unmodifiableList(copy);
+    }
+
+    List<Class<? extends ASTNode>> getInterests() {
+        return interests;
+    }
+
+    List<Class<? extends ASTNode>> getExitInterests() {
+        return exitInterests;
+    }
+
+    void enter(ASTNode node, Diagnostics diagnostics) {
+    }
+
+    void exit(ASTNode node, Diagnostics diagnostics) {
+    }
+
+    /**
+     * Where rules report what they find
+     */
+    interface Diagnostics {
+        void error(String message);
+
+        void warning(String message);
+    }
+}
@@ -0,0 +1,757 @@
+package parser;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Binary file format for an AST, readable one method body at a time
+ * The file holds the program's outline, with every class, field and method
+ * header, and each method body as a separate length-prefixed block, so a reader
+ * decodes the outline and then only the bodies it asks for, straight from a
+ * mapped file. Use it to keep parse results on disk, hand them to another
+ * process or reload them without parsing.
+ *
+ * Layout (varint: unsigned LEB128; string: varint index + 1 into the string table, 0 for null):
+ *   header     int MAGIC, byte VERSION
+ *   strings    varint count, then per string varint UTF-8 length and the bytes
+ *   program    varint class count, then per class:
+ *                string name, string modifiers, varint line, varint column,
+ *                varint member count, then per member a method or a node
+ *   method     byte METHOD, string modifiers, string return type, string name,
+ *                varint line, varint column, varint parameter count, the parameter nodes,
+ *                int body length in bytes, then the body: varint statement count and the statement nodes
+ *   node       byte kind (FlatAst kinds), nothing more for EMPTY, otherwise
+ *                varint zigzag line delta from the previous node, varint column,
+ *                the kind's attributes, then its children in preorder
+ * Line deltas restart from the method's line in each body, so a body decodes on its own.
+ *
+ * Node attributes by kind, with the number of children that follow:
+ *   PARAMETER      string type, string name, byte is array           0
+ *   FIELD          string modifiers, string type, string name, byte  0
+ *   VARIABLE       string type, string name, byte flags              1
+ *                  (1 is array, 2 final)
+ *   ASSIGNMENT     string variable                                   1
+ *   IF, WHILE, DO_WHILE, FOR, RETURN, BREAK, CONTINUE                3, 2, 2, 4, 1, 0, 0
+ *   SWITCH         varint case count n                               expression, n cases, default
+ *   CASE           varint statement count n                          value, n statements
+ *   DEFAULT_CASE   varint statement count n                          n
+ *   BLOCK          varint statement count n                          n
+ *   BINARY_OP      string operator                                   2
+ *   NARY_OP        string operator, varint operand count n, then per
+ *                  later operator zigzag line delta and varint column  n
+ *   UNARY_OP       string operator, byte prefix                      1
+ *   LITERAL        string value, string type                         0
+ *   IDENTIFIER     string name                                       0
+ *   METHOD_CALL    string name, varint argument count n              n
+ *   MEMBER_ACCESS  varint member count, string per member            1
+ */
+public final class AstFile implements TypeChecker.MethodBodies {
+
+    private static final int MAGIC = 0x4A415354;
+    private static final byte VERSION = 2;
+
+    private final ByteBuffer bytes;
+    private final String[] strings;
+    private final int programStart;
+
+    // Offset of each body, for the headers of outlines read from this file
+    private final Map<MethodNode, Integer> bodies = new IdentityHashMap<>();
+
+    private AstFile(ByteBuffer bytes) throws IOException {
+        this.bytes = bytes;
+        ByteBuffer in = bytes.duplicate();
+        try {
+            if (in.getInt() != MAGIC || in.get() != VERSION) {
+                throw new IOException("Not an AST file");
+            }
+            strings = new String[readCount(in)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] utf8 = new byte[readCount(in)];
+                in.get(utf8);
+                strings[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+        } catch (BufferUnderflowException | IllegalStateException e) {
+            throw new IOException("Truncated AST file");
+        }
+        programStart = in.position();
+    }
+
+    /**
+     * Map the AST file at path
+     */
+    public static AstFile open(String path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+             FileChannel channel = file.getChannel()) {
+            return new AstFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static AstFile of(byte[] bytes) throws IOException {
+        return new AstFile(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Size of the file in bytes
+     */
+    public int size() {
+        return bytes.limit();
+    }
+
+    /**
+     * Write the file's bytes to out
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        if (bytes.hasArray()) {
+            out.write(bytes.array(), bytes.arrayOffset(), bytes.limit());
+        } else {
+            byte[] copy = new byte[bytes.limit()];
+            bytes.duplicate().get(copy);
+            out.write(copy);
+        }
+    }
+
+    // ==================== WRITING ====================
+
+    /**
+     * Encode an AST in this format
+     */
+    public static byte[] toBytes(FlatAst ast) {
+        return new Writer(ast).write();
+    }
+
+    public static byte[] toBytes(ProgrameNode program) {
+        return toBytes(FlatAst.encode(program));
+    }
+
+    public static void write(FlatAst ast, String path) throws IOException {
+        try (OutputStream out = new FileOutputStream(path)) {
+            out.write(toBytes(ast));
+        }
+    }
+
+    /**
+     * Writes a FlatAst, whose preorder is the order nodes are stored in this format
+     */
+    private static final class Writer {
+        private final FlatAst ast;
+        private final ByteSink out = new ByteSink();
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+        private int previousLine;
+
+        Writer(FlatAst ast) {
+            this.ast = ast;
+        }
+
+        byte[] write() {
+            out.varint(ast.childCount(FlatAst.ROOT));
+            for (int c = ast.firstChild(FlatAst.ROOT); c != -1; c = ast.nextSibling(c)) {
+                string(ast.name(c));
+                string(ast.type(c));
+                out.varint(ast.line(c));
+                out.varint(ast.column(c));
+                out.varint(ast.childCount(c));
+                for (int member = ast.firstChild(c); member != -1; member = ast.nextSibling(member)) {
+                    if (ast.kind(member) == FlatAst.METHOD) {
+                        writeMethod(member);
+                    } else {
+                        writeNodes(member, ast.subtreeEnd(member), 0);
+                    }
+                }
+            }
+
+            // The string table goes first, so the file is assembled once everything is interned
+            ByteSink file = new ByteSink();
+            file.int32(MAGIC);
+            file.put(VERSION);
+            file.varint(strings.size());
+            for (String s : strings) {
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                file.varint(utf8.length);
+                file.put(utf8, 0, utf8.length);
+            }
+            file.put(out.buffer, 0, out.size);
+            return file.toByteArray();
+        }
+
+        private void writeMethod(int method) {
+            out.put(FlatAst.METHOD);
+            string(ast.modifiers(method));
+            string(ast.type(method));
+            string(ast.name(method));
+            out.varint(ast.line(method));
+            out.varint(ast.column(method));
+            int parameters = ast.parameterCount(method);
+            out.varint(parameters);
+            int child = ast.firstChild(method);
+            for (int p = 0; p < parameters; p++) {
+                writeNodes(child, ast.subtreeEnd(child), 0);
+                child = ast.nextSibling(child);
+            }
+
+            int lengthAt = out.size;
+            out.int32(0);
+            int statements = 0;
+            for (int s = child; s != -1; s = ast.nextSibling(s)) {
+                statements++;
+            }
+            out.varint(statements);
+            if (statements > 0) {
+                writeNodes(child, ast.subtreeEnd(method), ast.line(method));
+            }
+            out.patchInt32(lengthAt, out.size - lengthAt - 4);
+        }
+
+        /**
+         * Nodes from index to end, a run of whole subtrees in preorder
+         */
+        private void writeNodes(int from, int end, int baseLine) {
+            previousLine = baseLine;
+            for (int i = from; i < end; i++) {
+                writeNode(i);
+            }
+        }
+
+        private void writeNode(int i) {
+            byte kind = ast.kind(i);
+            out.put(kind);
+            if (kind == FlatAst.EMPTY) {
+                return;
+            }
+            out.zigzag(ast.line(i) - previousLine);
+            previousLine = ast.line(i);
+            out.varint(ast.column(i));
+            switch (kind) {
+                case FlatAst.PARAMETER:
+                    string(ast.type(i));
+                    string(ast.name(i));
+                    out.put((byte) (ast.isArray(i) ? 1 : 0));
+                    break;
+                case FlatAst.VARIABLE:
+                    string(ast.type(i));
+                    string(ast.name(i));
+                    out.put((byte) ((ast.isArray(i) ? 1 : 0) | (ast.isFinal(i) ? 2 : 0)));
+                    break;
+                case FlatAst.FIELD:
+                    string(ast.modifiers(i));
+                    string(ast.type(i));
+                    string(ast.name(i));
+                    out.put((byte) (ast.isArray(i) ? 1 : 0));
+                    break;
+                case FlatAst.ASSIGNMENT:
+                case FlatAst.BINARY_OP:
+                case FlatAst.IDENTIFIER:
+                    string(ast.name(i));
+                    break;
+                case FlatAst.SWITCH:
+                    out.varint(ast.childCount(i) - 2);
+                    break;
+                case FlatAst.CASE:
+                    out.varint(ast.childCount(i) - 1);
+                    break;
+                case FlatAst.DEFAULT_CASE:
+                case FlatAst.BLOCK:
+                    out.varint(ast.childCount(i));
+                    break;
+                case FlatAst.NARY_OP: {
+                    string(ast.name(i));
+                    int operands = ast.childCount(i);
+                    out.varint(operands);
+                    for (int k = 1; k < operands - 1; k++) {
+                        out.zigzag(ast.operatorLine(i, k) - ast.line(i));
+                        out.varint(ast.operatorColumn(i, k));
+                    }
+                    break;
+                }
+                case FlatAst.UNARY_OP:
+                    string(ast.name(i));
+                    out.put((byte) (ast.isPrefix(i) ? 1 : 0));
+                    break;
+                case FlatAst.LITERAL:
+                    string(ast.name(i));
+                    string(ast.type(i));
+                    break;
+                case FlatAst.METHOD_CALL:
+                    string(ast.name(i));
+                    out.varint(ast.childCount(i));
+                    break;
+                case FlatAst.MEMBER_ACCESS: {
+                    List<String> members = ast.members(i);
+                    out.varint(members.size());
+                    for (String member : members) {
+                        string(member);
+                    }
+                    break;
+                }
+                case FlatAst.IF:
+                case FlatAst.WHILE:
+                case FlatAst.DO_WHILE:
+                case FlatAst.FOR:
+                case FlatAst.RETURN:
+                case FlatAst.BREAK:
+                case FlatAst.CONTINUE:
+                    break;
+                default:
+                    throw new IllegalStateException("Node kind " + kind + " cannot appear below a class member");
+            }
+        }
+
+        private void string(String value) {
+            if (value == null) {
+                out.varint(0);
+                return;
+            }
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = strings.size();
+                stringIds.put(value, id);
+                strings.add(value);
+            }
+            out.varint(id + 1);
+        }
+    }
+
+    /**
+     * Growable byte array with the encodings of this format
+     */
+    private static final class ByteSink {
+        byte[] buffer = new byte[1 << 12];
+        int size;
+
+        void put(byte b) {
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, size * 2);
+            }
+            buffer[size++] = b;
+        }
+
+        void put(byte[] b, int offset, int length) {
+            if (size + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + length));
+            }
+            System.arraycopy(b, offset, buffer, size, length);
+            size += length;
+        }
+
+        void varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                put((byte) (value & 0x7F | 0x80));
+                value >>>= 7;
+            }
+            put((byte) value);
+        }
+
+        void zigzag(int value) {
+            varint(value << 1 ^ value >> 31);
+        }
+
+        void int32(int value) {
+            put((byte) (value >>> 24));
+            put((byte) (value >>> 16));
+            put((byte) (value >>> 8));
+            put((byte) value);
+        }
+
+        void patchInt32(int at, int value) {
+            buffer[at] = (byte) (value >>> 24);
+            buffer[at + 1] = (byte) (value >>> 16);
+            buffer[at + 2] = (byte) (value >>> 8);
+            buffer[at + 3] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    // ==================== READING ====================
+
+    /**
+     * The program with its classes, fields and method headers, but no method statements
+     * Load a header's statements with statements(header). Reading an outline is
+     * not thread safe; loading statements is.
+     */
+    public ProgrameNode outline() {
+        ByteBuffer in = bytes.duplicate();
+        in.position(programStart);
+        try {
+            Decoder decoder = new Decoder(in);
+            ProgrameNode program = new ProgrameNode();
+            for (int c = readCount(in); c > 0; c--) {
+                String name = decoder.string();
+                String modifiers = decoder.string();
+                ClassNode classNode = new ClassNode(name, modifiers, readVarint(in), readVarint(in));
+                program.addClass(classNode);
+                for (int m = readCount(in); m > 0; m--) {
+                    if (in.get(in.position()) == FlatAst.METHOD) {
+                        in.get();
+                        classNode.addMember(readMethod(decoder));
+                    } else {
+                        classNode.addMember(decoder.nodes(1, 0).get(0));
+                    }
+                }
+            }
+            if (in.hasRemaining()) {
+                throw new IllegalStateException("Unexpected data after the program");
+            }
+            return program;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw corrupt();
+        }
+    }
+
+    /**
+     * A method header, skipping over the body after noting where it starts
+     */
+    private MethodNode readMethod(Decoder decoder) {
+        ByteBuffer in = decoder.in;
+        String modifiers = decoder.string();
+        String returnType = decoder.string();
+        String name = decoder.string();
+        MethodNode header = new MethodNode(modifiers, returnType, name, readVarint(in), readVarint(in));
+        header.setParameter(decoder.nodes(readCount(in), 0));
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw corrupt();
+        }
+        bodies.put(header, in.position());
+        in.position(in.position() + length);
+        return header;
+    }
+
+    /**
+     * The statements of a method header read by outline(), decoded from the file
+     * Returns null for a method that was not read from this file.
+     */
+    public List<ASTNode> statements(MethodNode header) {
+        Integer body = bodies.get(header);
+        if (body == null) {
+            return null;
+        }
+        ByteBuffer in = bytes.duplicate();
+        in.position(body);
+        try {
+            return new Decoder(in).nodes(readCount(in), header.getLine());
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw corrupt();
+        }
+    }
+
+    /**
+     * The whole program, with every method body decoded
+     */
+    public ProgrameNode readAll() {
+        ProgrameNode program = outline();
+        for (ASTNode classNode : program.getClasses()) {
+            for (ASTNode member : ((ClassNode) classNode).getMembers()) {
+                if (member instanceof MethodNode) {
+                    ((MethodNode) member).setStatement(statements((MethodNode) member));
+                }
+            }
+        }
+        return program;
+    }
+
+    private static IllegalStateException corrupt() {
+        return new IllegalStateException("✗ ERROR: Corrupt AST file");
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw corrupt();
+    }
+
+    /**
+     * A varint that counts items; each takes at least a byte, which bounds it by what is left
+     */
+    private static int readCount(ByteBuffer in) {
+        int count = readVarint(in);
+        if (count < 0 || count > in.remaining()) {
+            throw corrupt();
+        }
+        return count;
+    }
+
+    /**
+     * Node under construction whose children are still being decoded
+     */
+    private static final class Frame {
+        byte kind;
+        int line;
+        int column;
+        String name;
+        String type;
+        String modifiers;
+        boolean flag;
+        boolean isFinal;
+        int childCount;
+        int[] operatorPositions;
+        List<String> members;
+        final List<ASTNode> children = new ArrayList<>();
+    }
+
+    /**
+     * Decodes runs of nodes from one position, on an explicit stack rather than by recursion
+     */
+    private final class Decoder {
+        final ByteBuffer in;
+        private final ArrayDeque<Frame> stack = new ArrayDeque<>();
+        private int previousLine;
+
+        Decoder(ByteBuffer in) {
+            this.in = in;
+        }
+
+        String string() {
+            int id = readVarint(in);
+            return id == 0 ? null : strings[id - 1];
+        }
+
+        /**
+         * The next count subtrees, with line deltas starting from baseLine
+         */
+        List<ASTNode> nodes(int count, int baseLine) {
+            previousLine = baseLine;
+            List<ASTNode> result = new ArrayList<>(count);
+            while (true) {
+                Frame top = stack.peek();
+                if (top != null && top.children.size() == top.childCount) {
+                    stack.pop();
+                    attach(result, build(top));
+                    continue;
+                }
+                if (top == null && result.size() == count) {
+                    return result;
+                }
+                byte kind = in.get();
+                if (kind == FlatAst.EMPTY) {
+                    attach(result, null);
+                    continue;
+                }
+                Frame frame = readFrame(kind);
+                if (frame.childCount == 0) {
+                    attach(result, build(frame));
+                } else {
+                    stack.push(frame);
+                }
+            }
+        }
+
+        private void attach(List<ASTNode> result, ASTNode node) {
+            Frame parent = stack.peek();
+            if (parent != null) {
+                parent.children.add(node);
+            } else {
+                result.add(node);
+            }
+        }
+
+        private Frame readFrame(byte kind) {
+            Frame f = new Frame();
+            f.kind = kind;
+            f.line = previousLine + zigzag();
+            previousLine = f.line;
+            f.column = readVarint(in);
+            switch (kind) {
+                case FlatAst.PARAMETER:
+                    f.type = string();
+                    f.name = string();
+                    f.flag = in.get() != 0;
+                    break;
+                case FlatAst.FIELD:
+                    f.modifiers = string();
+                    f.type = string();
+                    f.name = string();
+                    f.flag = in.get() != 0;
+                    break;
+                case FlatAst.VARIABLE: {
+                    f.type = string();
+                    f.name = string();
+                    byte flags = in.get();
+                    f.flag = (flags & 1) != 0;
+                    f.isFinal = (flags & 2) != 0;
+                    f.childCount = 1;
+                    break;
+                }
+                case FlatAst.ASSIGNMENT:
+                    f.name = string();
+                    f.childCount = 1;
+                    break;
+                case FlatAst.IF:
+                    f.childCount = 3;
+                    break;
+                case FlatAst.WHILE:
+                case FlatAst.DO_WHILE:
+                    f.childCount = 2;
+                    break;
+                case FlatAst.FOR:
+                    f.childCount = 4;
+                    break;
+                case FlatAst.SWITCH:
+                    f.childCount = readCount(in) + 2;
+                    break;
+                case FlatAst.CASE:
+                    f.childCount = readCount(in) + 1;
+                    break;
+                case FlatAst.DEFAULT_CASE:
+                case FlatAst.BLOCK:
+                    f.childCount = readCount(in);
+                    break;
+                case FlatAst.RETURN:
+                    f.childCount = 1;
+                    break;
+                case FlatAst.BREAK:
+                case FlatAst.CONTINUE:
+                    break;
+                case FlatAst.IDENTIFIER:
+                    f.name = string();
+                    break;
+                case FlatAst.BINARY_OP:
+                    f.name = string();
+                    f.childCount = 2;
+                    break;
+                case FlatAst.NARY_OP: {
+                    f.name = string();
+                    f.childCount = readCount(in);
+                    if (f.childCount < 2) {
+                        throw corrupt();
+                    }
+                    f.operatorPositions = new int[2 * (f.childCount - 2)];
+                    for (int k = 0; k < f.operatorPositions.length; k += 2) {
+                        f.operatorPositions[k] = f.line + zigzag();
+                        f.operatorPositions[k + 1] = readVarint(in);
+                    }
+                    break;
+                }
+                case FlatAst.UNARY_OP:
+                    f.name = string();
+                    f.flag = in.get() != 0;
+                    f.childCount = 1;
+                    break;
+                case FlatAst.LITERAL:
+                    f.name = string();
+                    f.type = string();
+                    break;
+                case FlatAst.METHOD_CALL:
+                    f.name = string();
+                    f.childCount = readCount(in);
+                    break;
+                case FlatAst.MEMBER_ACCESS: {
+                    int count = readCount(in);
+                    f.members = new ArrayList<>(count);
+                    for (int m = 0; m < count; m++) {
+                        f.members.add(string());
+                    }
+                    f.childCount = 1;
+                    break;
+                }
+                default:
+                    throw corrupt();
+            }
+            return f;
+        }
+
+        private int zigzag() {
+            int value = readVarint(in);
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        /**
+         * The node of a frame whose children have all been decoded
+         */
+        private ASTNode build(Frame f) {
+            List<ASTNode> children = f.children;
+            switch (f.kind) {
+                case FlatAst.PARAMETER:
+                    return new ParameterNode(f.type, f.name, f.flag, f.line, f.column);
+                case FlatAst.FIELD:
+                    return new FieldNode(f.modifiers, f.type, f.name, f.flag, f.line, f.column);
+                case FlatAst.VARIABLE:
+                    return new VariableDeclarationNode(f.type, f.name, f.flag, f.isFinal, children.get(0), f.line, f.column);
+                case FlatAst.ASSIGNMENT:
+                    return new AssignmentNode(f.name, children.get(0), f.line, f.column);
+                case FlatAst.IF:
+                    return new IfNode(children.get(0), children.get(1), children.get(2), f.line, f.column);
+                case FlatAst.WHILE:
+                    return new WhileNode(children.get(0), children.get(1), f.line, f.column);
+                case FlatAst.DO_WHILE:
+                    return new DoWhileNode(children.get(0), children.get(1), f.line, f.column);
+                case FlatAst.FOR:
+                    return new ForNode(children.get(0), children.get(1), children.get(2), children.get(3),
+                            f.line, f.column);
+                case FlatAst.SWITCH: {
+                    SwitchNode switchNode = new SwitchNode(children.get(0), f.line, f.column);
+                    for (int c = 1; c < children.size() - 1; c++) {
+                        switchNode.addCase(children.get(c));
+                    }
+                    switchNode.setDefaultCase(children.get(children.size() - 1));
+                    return switchNode;
+                }
+                case FlatAst.CASE: {
+                    CaseNode caseNode = new CaseNode(children.get(0), f.line, f.column);
+                    for (int c = 1; c < children.size(); c++) {
+                        caseNode.addStatement(children.get(c));
+                    }
+                    return caseNode;
+                }
+                case FlatAst.DEFAULT_CASE: {
+                    DefaultCaseNode defaultCase = new DefaultCaseNode(f.line, f.column);
+                    for (ASTNode statement : children) {
+                        defaultCase.addStatement(statement);
+                    }
+                    return defaultCase;
+                }
+                case FlatAst.RETURN:
+                    return new ReturnNode(children.get(0), f.line, f.column);
+                case FlatAst.BREAK:
+                    return new BreakNode(f.line, f.column);
+                case FlatAst.CONTINUE:
+                    return new ContinueNode(f.line, f.column);
+                case FlatAst.BLOCK:
+                    return new BlockNode(children, f.line, f.column);
+                case FlatAst.BINARY_OP:
+                    return new BinaryOpNode(f.name, children.get(0), children.get(1), f.line, f.column);
+                case FlatAst.NARY_OP: {
+                    NaryOpNode run = new NaryOpNode(f.name, children.get(0), children.get(1), f.line, f.column);
+                    for (int c = 2; c < children.size(); c++) {
+                        run.addOperand(children.get(c), f.operatorPositions[2 * (c - 2)],
+                                f.operatorPositions[2 * (c - 2) + 1]);
+                    }
+                    return run;
+                }
+                case FlatAst.UNARY_OP:
+                    return new UnaryOpNode(f.name, children.get(0), f.flag, f.line, f.column);
+                case FlatAst.LITERAL:
+                    return new LiteralNode(f.type, f.name, f.line, f.column);
+                case FlatAst.IDENTIFIER:
+                    return new IdentifierNode(f.name, f.line, f.column);
+                case FlatAst.METHOD_CALL: {
+                    MethodCallNode call = new MethodCallNode(f.name, f.line, f.column);
+                    call.setArguments(children);
+                    return call;
+                }
+                case FlatAst.MEMBER_ACCESS: {
+                    MemberAccessNode access = new MemberAccessNode(f.line, f.column);
+                    for (String member : f.members) {
+                        access.addMember(member);
+                    }
+                    access.setMethodCall(children.get(0));
+                    return access;
+                }
+                default:
+                    throw corrupt();
+            }
+        }
+    }
+}
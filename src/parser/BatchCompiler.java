@@ -0,0 +1,263 @@
+package parser;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many files in one JVM on a pool of worker threads
+ * Each worker keeps its own FileCompiler, so the parser, symbol table and
+ * type checker are reused for every file that worker picks up.
+ * Results are printed in input order as soon as they are available,
+ * followed by a summary.
+ *
+ * Usage: java parser.BatchCompiler [options] <file|directory|@listfile>...
+ */
+public class BatchCompiler {
+
+    private static final String USAGE =
+            "Usage: java parser.BatchCompiler [--threads=N] [--no-symbols] [--parallel-check] [--flat-ast]"
+            + " [--emit=tokens,ast,tree,diagnostics] [--max-depth=N] [--max-nesting=N] [--max-errors=N]"
+            + " [--cache-dir=DIR] [--cache-size=MB] [--run] <file|directory|@listfile>...";
+
+    private final int threads;
+    private final CompilerOptions options;
+    private CompileCache cache;
+
+    /**
+     * Compile with the given options on each file; their filename is not used
+     */
+    public BatchCompiler(int threads, CompilerOptions options) {
+        this.threads = threads;
+        this.options = options;
+    }
+
+    /**
+     * Share a CompileCache between the workers, or null for none
+     */
+    public void setCache(CompileCache cache) {
+        this.cache = cache;
+    }
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        CompilerOptions options = new CompilerOptions();
+        // Per-file reports are off unless asked for; the status line and errors are always shown
+        options.sections = EnumSet.noneOf(OutputRenderer.Section.class);
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("--threads must be at least 1");
+                    }
+                } else if (!options.parseOption(arg)) {
+                    if (arg.startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    inputs.add(arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid option: " + e.getMessage());
+            inputs.clear();
+        }
+
+        if (inputs.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+
+        List<String> files;
+        try {
+            files = collectFiles(inputs);
+        } catch (IOException e) {
+            System.err.println("✗ ERROR: Could not list input files: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        OutputRenderer out = OutputRenderer.toStandardOutput();
+        BatchCompiler batch = new BatchCompiler(threads, options);
+        batch.setCache(options.cache());
+        Summary summary = batch.run(files, out);
+        out.flush();
+        if (summary.failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Expand the command line inputs: directories are walked for regular files,
+     * "@name" reads one path per line from a list file, anything else is a file
+     */
+    static List<String> collectFiles(List<String> inputs) throws IOException {
+        List<String> files = new ArrayList<>();
+        for (String input : inputs) {
+            if (input.startsWith("@")) {
+                for (String line : Files.readAllLines(Paths.get(input.substring(1)))) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        files.add(line);
+                    }
+                }
+            } else if (Files.isDirectory(Paths.get(input))) {
+                try (Stream<Path> walk = Files.walk(Paths.get(input))) {
+                    walk.filter(Files::isRegularFile)
+                            .map(Path::toString)
+                            .sorted()
+                            .forEach(files::add);
+                }
+            } else {
+                files.add(input);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Compile all files and print one result per file, in input order, then the summary
+     */
+    public Summary run(List<String> files, OutputRenderer out) {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final ThreadLocal<FileCompiler> compilers = new ThreadLocal<FileCompiler>() {
+            @Override
+            protected FileCompiler initialValue() {
+                FileCompiler compiler = new FileCompiler(options.recordSymbols, options.parallelCheck);
+                compiler.setMaxNesting(options.maxNesting);
+                compiler.setMaxSyntaxErrors(options.maxErrors);
+                compiler.setFlatAst(options.flatAst);
+                compiler.setRun(options.run);
+                compiler.setCache(cache);
+                return compiler;
+            }
+        };
+        Summary summary = new Summary(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<FileResult>> pending = new ArrayList<>(files.size());
+            for (final String file : files) {
+                pending.add(pool.submit(new Callable<FileResult>() {
+                    public FileResult call() {
+                        return compile(compilers.get(), file);
+                    }
+                }));
+            }
+            for (Future<FileResult> future : pending) {
+                FileResult result = future.get();
+                summary.add(result);
+                printResult(result, out);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Batch compilation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch compilation failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        summary.wallNanos = System.nanoTime() - start;
+        summary.print(out);
+        return summary;
+    }
+
+    /**
+     * Compile one file on the calling worker, capturing its report and errors
+     */
+    private FileResult compile(FileCompiler compiler, String file) {
+        StringWriter report = new StringWriter();
+        StringWriter errors = new StringWriter();
+        long start = System.nanoTime();
+        int status = compiler.compile(file,
+                new OutputRenderer(report, options.sections, options.maxDepth), new PrintWriter(errors));
+        long elapsed = System.nanoTime() - start;
+        return new FileResult(file, status, compiler.getTokenCount(), elapsed,
+                options.sections.isEmpty() ? "" : report.toString(), errors.toString());
+    }
+
+    private static void printResult(FileResult result, OutputRenderer out) {
+        out.println(String.format("%-6s %s (%.1f ms)",
+                result.succeeded() ? "OK" : "FAILED", result.file, result.nanos / 1e6));
+        if (!result.report.isEmpty()) {
+            out.print(result.report);
+        }
+        if (!result.errors.isEmpty()) {
+            out.print(result.errors);
+        }
+    }
+
+    // ==================== INNER CLASSES ====================
+
+    /**
+     * Outcome of compiling one file
+     */
+    public static class FileResult {
+        public final String file;
+        public final int status;
+        public final int tokens;
+        public final long nanos;
+        public final String report;
+        public final String errors;
+
+        public FileResult(String file, int status, int tokens, long nanos, String report, String errors) {
+            this.file = file;
+            this.status = status;
+            this.tokens = tokens;
+            this.nanos = nanos;
+            this.report = report;
+            this.errors = errors;
+        }
+
+        public boolean succeeded() {
+            return status == FileCompiler.EXIT_SUCCESS;
+        }
+    }
+
+    /**
+     * Totals over a batch
+     */
+    public static class Summary {
+        public final int threads;
+        public int files;
+        public int succeeded;
+        public int failed;
+        public long tokens;
+        public long compileNanos;
+        public long wallNanos;
+
+        Summary(int threads) {
+            this.threads = threads;
+        }
+
+        void add(FileResult result) {
+            files++;
+            if (result.succeeded()) {
+                succeeded++;
+            } else {
+                failed++;
+            }
+            tokens += result.tokens;
+            compileNanos += result.nanos;
+        }
+
+        void print(OutputRenderer out) {
+            double wallSeconds = wallNanos / 1e9;
+            out.println();
+            out.println("========================================");
+            out.println("BATCH SUMMARY");
+            out.println("========================================");
+            out.println("Files:           " + files + " (" + succeeded + " succeeded, " + failed + " failed)");
+            out.println("Threads:         " + threads);
+            out.println("Tokens:          " + tokens);
+            out.println(String.format("Wall time:       %.1f ms", wallNanos / 1e6));
+            out.println(String.format("Compile time:    %.1f ms (sum over files)", compileNanos / 1e6));
+            if (wallSeconds > 0) {
+                out.println(String.format("Throughput:      %.1f files/sec", files / wallSeconds));
+            }
+            out.println();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package parser;
+
+import java.io.*;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * On-disk cache of compile results, keyed by a hash of the file content
+ * An entry holds what the report is rendered from: the AST as an AstFile, the
+ * recorded tokens, the type errors and warnings and the unused variables, so a
+ * hit prints the same report without lexing, parsing or type checking. The key
+ * also covers the compiler build and the options that change those results; the
+ * report sections and depth are applied when an entry is replayed.
+ * Files that fail to parse or abort analysis are compiled every time.
+ *
+ * The directory is kept under a byte budget by deleting the least recently used
+ * entries; a hit refreshes its entry's modification time. Entries are written to a
+ * temporary file and renamed into place, so compilers in several threads or
+ * processes can share a directory.
+ */
+public class CompileCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private static final int MAGIC = 0x4A435331;
+    private static final String SUFFIX = ".cache";
+
+    private final File directory;
+    private final long maxBytes;
+
+    public CompileCache(File directory, long maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Cache size must be positive, got " + maxBytes);
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    // ==================== KEYS ====================
+
+    /**
+     * Key for compiling the mapped file input with the given options
+     * Hashing the buffer the lexer reads, rather than the file again, keeps a save
+     * between the two reads from storing new results under the old content's key.
+     */
+    public String key(MappedCharStream input, boolean recordSymbols, int maxNesting) {
+        ByteBuffer content = input.getBytes();
+        if (content == null) {
+            throw new IllegalArgumentException("Only a mapped file can be keyed");
+        }
+        MessageDigest digest = sha256();
+        digest.update(CompilerFingerprint.VALUE);
+        digest.update((byte) (recordSymbols ? 1 : 0));
+        digest.update(intBytes(maxNesting));
+        digest.update(content);
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit(b >>> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Hash of the compiler's class files, so entries written by another build are never read
+     * Class files in a directory are identified by name, size and modification time,
+     * and entries of a jar by name and CRC, which is enough to notice a rebuild
+     * without reading the code.
+     */
+    private static final class CompilerFingerprint {
+        static final byte[] VALUE = compute();
+
+        private static byte[] compute() {
+            MessageDigest digest = sha256();
+            URL self = CompileCache.class.getResource("CompileCache.class");
+            try {
+                URLConnection connection = self != null ? self.openConnection() : null;
+                if (connection instanceof JarURLConnection) {
+                    JarFile jar = ((JarURLConnection) connection).getJarFile();
+                    List<String> names = new ArrayList<>();
+                    Map<String, Long> crcs = new HashMap<>();
+                    for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                        JarEntry entry = entries.nextElement();
+                        if (entry.getName().startsWith("parser/") && entry.getName().endsWith(".class")) {
+                            names.add(entry.getName());
+                            crcs.put(entry.getName(), entry.getCrc());
+                        }
+                    }
+                    Collections.sort(names);
+                    for (String name : names) {
+                        digest.update(name.getBytes(StandardCharsets.UTF_8));
+                        digest.update(Long.toString(crcs.get(name)).getBytes(StandardCharsets.UTF_8));
+                    }
+                } else if (self != null && "file".equals(self.getProtocol())) {
+                    File[] classes = new File(self.toURI()).getParentFile().listFiles(new FilenameFilter() {
+                        public boolean accept(File dir, String name) {
+                            return name.endsWith(".class");
+                        }
+                    });
+                    Arrays.sort(classes);
+                    for (File file : classes) {
+                        digest.update((file.getName() + ":" + file.length() + ":" + file.lastModified())
+                                .getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+            } catch (Exception e) {
+                // Only the build-independent part of the key is left; entries stay valid per content
+            }
+            return digest.digest();
+        }
+    }
+
+    // ==================== ENTRIES ====================
+
+    /**
+     * Everything a compile's report is rendered from
+     */
+    public static class Entry {
+        public final AstFile ast; // decoded only if the report prints it
+        public final SymbolTable tokens; // null when symbols were not recorded
+        public final List<String> errors;
+        public final List<String> warnings;
+        public final List<String> unusedVariables;
+
+        public Entry(AstFile ast, SymbolTable tokens, List<String> errors, List<String> warnings,
+                     List<String> unusedVariables) {
+            this.ast = ast;
+            this.tokens = tokens;
+            this.errors = errors;
+            this.warnings = warnings;
+            this.unusedVariables = unusedVariables;
+        }
+    }
+
+    /**
+     * The entry stored under key, or null on a miss
+     * An entry that cannot be read is treated as a miss and deleted.
+     */
+    public Entry load(String key, SymbolTable tokens) {
+        File file = new File(directory, key + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new FileInputStream(file)), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a cache entry");
+            }
+            int astLength = in.readInt();
+            if (astLength < 0) {
+                throw new IOException("Corrupt AST length");
+            }
+            byte[] astBytes = new byte[astLength];
+            in.readFully(astBytes);
+            AstFile ast = AstFile.of(astBytes);
+            SymbolTable table = null;
+            if (in.readBoolean()) {
+                tokens.readTokens(in);
+                table = tokens;
+            }
+            List<String> errors = readStrings(in);
+            List<String> warnings = readStrings(in);
+            List<String> unused = readStrings(in);
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(ast, table, errors, warnings, unused);
+        } catch (IOException | RuntimeException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Store an entry under key, then evict old entries if the directory is over budget
+     * A failure to write only costs the next compile its hit.
+     */
+    public void store(String key, Entry entry) {
+        File temp = null;
+        try {
+            Files.createDirectories(directory.toPath());
+            temp = File.createTempFile(key, ".tmp", directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new DeflaterOutputStream(new FileOutputStream(temp), new Deflater(Deflater.BEST_SPEED)),
+                    1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(entry.ast.size());
+                entry.ast.writeTo(out);
+                out.writeBoolean(entry.tokens != null);
+                if (entry.tokens != null) {
+                    entry.tokens.writeTokens(out);
+                }
+                writeStrings(out, entry.errors);
+                writeStrings(out, entry.warnings);
+                writeStrings(out, entry.unusedVariables);
+            }
+            if (temp.length() > maxBytes) {
+                return; // Would evict everything else and then itself
+            }
+            Files.move(temp.toPath(), new File(directory, key + SUFFIX).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temp = null;
+            evict();
+        } catch (IOException e) {
+            // Not cached
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Delete least recently used entries until the directory fits the budget
+     */
+    private synchronized void evict() {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        final long[] used = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            total += files[i].length();
+            used[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.compare(used[a], used[b]);
+            }
+        });
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            File file = files[order[i]];
+            long length = file.length();
+            if (file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        out.writeInt(strings.size());
+        for (String s : strings) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt string list");
+        }
+        List<String> strings = new ArrayList<>(Math.min(count, 1024));
+        for (int i = 0; i < count; i++) {
+            byte[] utf8 = new byte[in.readInt()];
+            in.readFully(utf8);
+            strings.add(new String(utf8, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+}
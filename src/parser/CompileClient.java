@@ -0,0 +1,99 @@
+package parser;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Thin client for CompileServer
+ * Takes the same arguments as JavaParser.main, prints the same output and
+ * exits with the same status, but the compile runs in the resident server.
+ *
+ * Usage: java parser.CompileClient [--socket=PATH] [--stop] [compiler options] <input_file.java>
+ */
+public class CompileClient {
+
+    public static void main(String[] args) {
+        Path socketPath = CompileServer.defaultSocketPath();
+        boolean stop = false;
+        List<String> compilerArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--socket=")) {
+                try {
+                    socketPath = Paths.get(arg.substring("--socket=".length()));
+                } catch (InvalidPathException e) {
+                    System.err.println("Invalid option: " + e.getMessage());
+                    System.exit(1);
+                }
+            } else if (arg.equals("--stop")) {
+                stop = true;
+            } else {
+                compilerArgs.add(arg);
+            }
+        }
+
+        int status;
+        try {
+            status = stop ? send(socketPath, CompileServer.COMMAND_STOP, null)
+                          : send(socketPath, CompileServer.COMMAND_COMPILE, compilerArgs);
+        } catch (ConnectException e) {
+            System.err.println("✗ ERROR: No compile server on " + socketPath
+                    + " (start one with: java parser.CompileServer --socket=" + socketPath + ")");
+            status = FileCompiler.EXIT_FAILURE;
+        } catch (IOException e) {
+            System.err.println("✗ ERROR: Compile server connection failed: " + e.getMessage());
+            status = FileCompiler.EXIT_FAILURE;
+        }
+        if (status != FileCompiler.EXIT_SUCCESS) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Send one request and copy the response frames to stdout and stderr
+     */
+    private static int send(Path socketPath, String command, List<String> args) throws IOException {
+        if (!Files.exists(socketPath)) {
+            throw new ConnectException("No socket at " + socketPath);
+        }
+        try (SocketChannel socket = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(socket)));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(socket)))) {
+            out.writeUTF(command);
+            if (args != null) {
+                out.writeUTF(new File("").getAbsolutePath());
+                out.writeInt(args.size());
+                for (String arg : args) {
+                    out.writeUTF(arg);
+                }
+            }
+            out.flush();
+
+            byte[] buffer = new byte[8192];
+            while (true) {
+                byte kind = in.readByte();
+                if (kind == CompileServer.FRAME_EXIT) {
+                    System.out.flush();
+                    System.err.flush();
+                    return in.readInt();
+                }
+                int length = in.readInt();
+                if (buffer.length < length) {
+                    buffer = new byte[length];
+                }
+                in.readFully(buffer, 0, length);
+                String text = new String(buffer, 0, length, StandardCharsets.UTF_8);
+                if (kind == CompileServer.FRAME_STDERR) {
+                    System.out.flush();
+                    System.err.print(text);
+                    System.err.flush();
+                } else {
+                    System.out.print(text);
+                }
+            }
+        }
+    }
+}
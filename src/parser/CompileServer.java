@@ -0,0 +1,308 @@
+package parser;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * Resident compile server
+ * Keeps the parser and type checker loaded and JIT-compiled across requests,
+ * so a compile costs a socket round trip instead of a JVM start.
+ * Listens on a Unix-domain socket in a directory only its owner can enter, so only
+ * that user can send requests; CompileClient is the matching client. Programs run
+ * with --run stop after a fixed number of statements, so none can hold a worker.
+ *
+ * Protocol, one request per connection, using DataInput/DataOutput encoding:
+ *   request:  UTF command ("compile" or "stop"),
+ *             for compile: UTF working directory, int argument count, UTF per argument
+ *   response: frames of (byte kind, int length, UTF-8 bytes) where kind is
+ *             FRAME_STDOUT or FRAME_STDERR, ending with FRAME_EXIT followed by an int status
+ *
+ * Usage: java parser.CompileServer [--socket=PATH] [--threads=N] [--max-run-steps=N]
+ */
+public class CompileServer {
+
+    /** Statements a --run request may execute unless --max-run-steps says otherwise */
+    public static final long DEFAULT_MAX_RUN_STEPS = 100_000_000L;
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    static final String COMMAND_COMPILE = "compile";
+    static final String COMMAND_STOP = "stop";
+
+    static final byte FRAME_STDOUT = 'O';
+    static final byte FRAME_STDERR = 'E';
+    static final byte FRAME_EXIT = 'X';
+
+    private final Path socketPath;
+    private final ServerSocketChannel serverSocket;
+    private final ExecutorService workers;
+    private final long maxRunSteps;
+    private volatile boolean running = true;
+
+    // One compiler per worker thread, symbol recording mode and type checking mode
+    private final ThreadLocal<FileCompiler[]> compilers = new ThreadLocal<FileCompiler[]>() {
+        @Override
+        protected FileCompiler[] initialValue() {
+            return new FileCompiler[4];
+        }
+    };
+
+    /**
+     * Listen on socketPath, creating its directory with owner-only permissions
+     * Throws IOException if the directory is open to other users or a server already listens there.
+     */
+    public CompileServer(Path socketPath, int threads, long maxRunSteps) throws IOException {
+        this.socketPath = socketPath.toAbsolutePath();
+        this.maxRunSteps = maxRunSteps;
+        secureDirectory(this.socketPath.getParent());
+        if (Files.exists(this.socketPath, LinkOption.NOFOLLOW_LINKS)) {
+            SocketChannel probe;
+            try {
+                probe = SocketChannel.open(UnixDomainSocketAddress.of(this.socketPath));
+            } catch (ConnectException e) {
+                probe = null;
+                Files.delete(this.socketPath); // Left behind by a server that did not stop
+            }
+            if (probe != null) {
+                probe.close();
+                throw new IOException("A compile server is already listening on " + this.socketPath);
+            }
+        }
+        this.serverSocket = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        serverSocket.bind(UnixDomainSocketAddress.of(this.socketPath), 50);
+        this.workers = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Socket the server listens on and the client connects to unless told otherwise
+     * One per user, in the temporary directory, which on Windows is already per user.
+     */
+    public static Path defaultSocketPath() {
+        return Paths.get(System.getProperty("java.io.tmpdir"),
+                "compile-server-" + System.getProperty("user.name"), "server.sock");
+    }
+
+    /**
+     * Create dir for the socket, or check an existing one, so that only its owner can use it
+     * On file systems without POSIX permissions the directory is created as is.
+     */
+    private static void secureDirectory(Path dir) throws IOException {
+        FileSystem fs = dir.getFileSystem();
+        if (!fs.supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(dir);
+            return;
+        }
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            Files.createDirectories(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+        }
+        PosixFileAttributes attributes = Files.readAttributes(dir, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        UserPrincipal user = fs.getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+        if (!attributes.isDirectory() || !attributes.owner().equals(user)
+                || !attributes.permissions().equals(OWNER_ONLY)) {
+            throw new IOException("Socket directory " + dir + " must be a directory owned by "
+                    + user.getName() + " with permissions rwx------");
+        }
+    }
+
+    public static void main(String[] args) {
+        Path socketPath = defaultSocketPath();
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxRunSteps = DEFAULT_MAX_RUN_STEPS;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--socket=")) {
+                    socketPath = Paths.get(arg.substring("--socket=".length()));
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } else if (arg.startsWith("--max-run-steps=")) {
+                    maxRunSteps = Long.parseLong(arg.substring("--max-run-steps=".length()));
+                    if (maxRunSteps < 1) {
+                        throw new IllegalArgumentException("Step limit must be at least 1, got " + maxRunSteps);
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unknown argument '" + arg + "'");
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid option: " + e.getMessage());
+            System.err.println("Usage: java parser.CompileServer [--socket=PATH] [--threads=N] [--max-run-steps=N]");
+            System.exit(1);
+        }
+
+        try {
+            CompileServer server = new CompileServer(socketPath, threads, maxRunSteps);
+            System.out.println("Compile server listening on " + server.socketPath);
+            server.serve();
+        } catch (IOException e) {
+            System.err.println("✗ ERROR: Could not start compile server: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Accept connections until a stop request arrives
+     */
+    public void serve() throws IOException {
+        try {
+            while (running) {
+                final SocketChannel socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (ClosedChannelException e) {
+                    if (!running) {
+                        break;
+                    }
+                    throw e;
+                }
+                workers.execute(new Runnable() {
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            }
+        } finally {
+            workers.shutdown();
+            serverSocket.close();
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    private void handle(SocketChannel socket) {
+        try (SocketChannel s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(s)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(s)))) {
+            String command = in.readUTF();
+            if (command.equals(COMMAND_STOP)) {
+                out.writeByte(FRAME_EXIT);
+                out.writeInt(FileCompiler.EXIT_SUCCESS);
+                out.flush();
+                stop();
+                return;
+            }
+            if (!command.equals(COMMAND_COMPILE)) {
+                throw new IOException("Unknown command '" + command + "'");
+            }
+            File workingDir = new File(in.readUTF());
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+
+            int status = compile(workingDir, args, out);
+            out.writeByte(FRAME_EXIT);
+            out.writeInt(status);
+            out.flush();
+        } catch (IOException e) {
+            // The client went away; nothing to report to
+        }
+    }
+
+    /**
+     * Run one compile with the same options and messages as JavaParser.main
+     */
+    private int compile(File workingDir, String[] args, DataOutputStream stream) throws IOException {
+        PrintWriter err = new PrintWriter(new BufferedWriter(new FrameWriter(stream, FRAME_STDERR)));
+        CompilerOptions options = null;
+        try {
+            options = CompilerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println("Invalid option: " + e.getMessage());
+        }
+        if (options == null || options.filename == null) {
+            err.println(CompilerOptions.USAGE);
+            err.flush();
+            return FileCompiler.EXIT_FAILURE;
+        }
+
+        FileCompiler[] perMode = compilers.get();
+        int mode = (options.recordSymbols ? 1 : 0) | (options.parallelCheck ? 2 : 0);
+        if (perMode[mode] == null) {
+            perMode[mode] = new FileCompiler(options.recordSymbols, options.parallelCheck);
+        }
+        perMode[mode].setMaxNesting(options.maxNesting);
+        perMode[mode].setMaxSyntaxErrors(options.maxErrors);
+        perMode[mode].setFlatAst(options.flatAst);
+        perMode[mode].setRun(options.run);
+        perMode[mode].setMaxRunSteps(maxRunSteps);
+        // A relative cache directory is the client's, like the file name
+        CompileCache cache = null;
+        if (options.cacheDir != null) {
+            File cacheDir = new File(options.cacheDir);
+            if (!cacheDir.isAbsolute()) {
+                cacheDir = new File(workingDir, options.cacheDir);
+            }
+            cache = new CompileCache(cacheDir, options.cacheMaxBytes);
+        }
+        perMode[mode].setCache(cache);
+        OutputRenderer out = new OutputRenderer(new FrameWriter(stream, FRAME_STDOUT),
+                options.sections, options.maxDepth);
+        int status = perMode[mode].compile(options.filename, workingDir, out, err);
+        out.flush();
+        err.flush();
+        return status;
+    }
+
+    // ==================== INNER CLASSES ====================
+
+    /**
+     * Writes each chunk it is given as one frame of the given kind
+     * A trailing high surrogate is held back so a pair is never split across frames.
+     */
+    static class FrameWriter extends Writer {
+        private final DataOutputStream stream;
+        private final byte kind;
+        private char pendingHighSurrogate;
+
+        FrameWriter(DataOutputStream stream, byte kind) {
+            this.stream = stream;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            StringBuilder chunk = new StringBuilder(len + 1);
+            if (pendingHighSurrogate != 0) {
+                chunk.append(pendingHighSurrogate);
+                pendingHighSurrogate = 0;
+            }
+            chunk.append(cbuf, off, len);
+            int last = chunk.length() - 1;
+            if (last >= 0 && Character.isHighSurrogate(chunk.charAt(last))) {
+                pendingHighSurrogate = chunk.charAt(last);
+                chunk.setLength(last);
+            }
+            if (chunk.length() == 0) {
+                return;
+            }
+            byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+            stream.writeByte(kind);
+            stream.writeInt(bytes.length);
+            stream.write(bytes);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            stream.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package parser;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Command line options of the single-file compiler
+ * Shared by JavaParser.main and the compile server so both accept the same arguments.
+ */
+public class CompilerOptions {
+
+    public static final String USAGE =
+            "Usage: java Main [--no-symbols] [--parallel-check] [--flat-ast] [--emit=tokens,ast,tree,diagnostics] [--max-depth=N] [--max-nesting=N] [--max-errors=N] [--cache-dir=DIR] [--cache-size=MB] [--run] <input_file.java>";
+
+    public String filename;
+    public boolean recordSymbols = true;
+    public boolean parallelCheck = false;
+    public boolean flatAst = false;
+    public Set<OutputRenderer.Section> sections = EnumSet.allOf(OutputRenderer.Section.class);
+    public int maxDepth = 0;
+    public int maxNesting = JavaParser.DEFAULT_MAX_NESTING;
+    public int maxErrors = JavaParser.DEFAULT_MAX_SYNTAX_ERRORS;
+    public String cacheDir;
+    public long cacheMaxBytes = CompileCache.DEFAULT_MAX_BYTES;
+    public boolean run = false;
+
+    /**
+     * Parse command line arguments; the first non-option argument is the input file
+     * Throws IllegalArgumentException for a malformed or unknown option
+     */
+    public static CompilerOptions parse(String[] args) {
+        CompilerOptions options = new CompilerOptions();
+        for (String arg : args) {
+            if (options.parseOption(arg)) {
+                continue;
+            }
+            if (arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+            if (options.filename == null) {
+                options.filename = arg;
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Apply arg if it is one of the options held here, returning whether it was
+     * Lets drivers with options of their own, such as BatchCompiler, accept these too.
+     * Throws IllegalArgumentException for a malformed option
+     */
+    boolean parseOption(String arg) {
+        if (arg.equals("--no-symbols")) {
+            recordSymbols = false;
+        } else if (arg.equals("--parallel-check")) {
+            parallelCheck = true;
+        } else if (arg.equals("--flat-ast")) {
+            flatAst = true;
+        } else if (arg.startsWith("--emit=")) {
+            sections = OutputRenderer.parseSections(arg.substring("--emit=".length()));
+        } else if (arg.startsWith("--max-depth=")) {
+            maxDepth = Integer.parseInt(arg.substring("--max-depth=".length()));
+        } else if (arg.startsWith("--max-nesting=")) {
+            maxNesting = Integer.parseInt(arg.substring("--max-nesting=".length()));
+            if (maxNesting < 1) {
+                throw new IllegalArgumentException("--max-nesting must be at least 1");
+            }
+        } else if (arg.startsWith("--max-errors=")) {
+            maxErrors = Integer.parseInt(arg.substring("--max-errors=".length()));
+            if (maxErrors < 1) {
+                throw new IllegalArgumentException("--max-errors must be at least 1");
+            }
+        } else if (arg.startsWith("--cache-dir=")) {
+            cacheDir = arg.substring("--cache-dir=".length());
+        } else if (arg.startsWith("--cache-size=")) {
+            cacheMaxBytes = parseCacheSize(arg.substring("--cache-size=".length()));
+        } else if (arg.equals("--run")) {
+            run = true;
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parse a cache size in megabytes
+     */
+    static long parseCacheSize(String megabytes) {
+        long size = Long.parseLong(megabytes);
+        if (size < 1) {
+            throw new IllegalArgumentException("--cache-size must be at least 1 (MB)");
+        }
+        return size << 20;
+    }
+
+    /**
+     * The cache selected with --cache-dir, or null when compiles are not cached
+     */
+    public CompileCache cache() {
+        return cacheDir != null ? new CompileCache(new File(cacheDir), cacheMaxBytes) : null;
+    }
+}
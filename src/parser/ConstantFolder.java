@@ -0,0 +1,410 @@
+package parser;
+
+import java.util.*;
+
+/**
+ * Folds operators over constants into literals while the parser builds the tree
+ * An operator's operands are built, and folded, before the operator itself, so a
+ * constant subexpression of any depth reaches its parent as a single LiteralNode
+ * and no separate walk of the tree is needed. A final local whose initializer
+ * folds to a constant is replaced by that constant wherever it is read.
+ *
+ * Only operations the type checker accepts without a diagnostic are folded, and
+ * the folded literal has the type the checker gives the operation, so checking
+ * the smaller tree reports what checking the full one would. Values follow Java
+ * arithmetic on int, long, float, double and boolean. char and String operands,
+ * and division or remainder by zero, are left for later phases to report.
+ */
+final class ConstantFolder {
+
+    /** What parse returns for literal text that denotes no constant */
+    static final Object NOT_CONSTANT = new Object();
+
+    /**
+     * A local in scope, with its value if it is a constant
+     */
+    private static final class Binding {
+        final String name;
+        final LiteralNode value; // null for a variable
+        final Binding shadowed;
+
+        Binding(String name, LiteralNode value, Binding shadowed) {
+            this.name = name;
+            this.value = value;
+            this.shadowed = shadowed;
+        }
+    }
+
+    // Innermost binding of each name; a variable is only bound when it hides a constant
+    private final Map<String, Binding> bindings = new HashMap<>();
+    private Binding[] declared = new Binding[16];
+    private int declaredCount;
+    private int[] scopeMarks = new int[16];
+    private int scopeDepth;
+
+    // ==================== SCOPES ====================
+
+    void enterScope() {
+        if (scopeDepth == scopeMarks.length) {
+            scopeMarks = Arrays.copyOf(scopeMarks, scopeDepth * 2);
+        }
+        scopeMarks[scopeDepth++] = declaredCount;
+    }
+
+    /**
+     * Close the innermost scope, making the constants it hid visible again
+     */
+    void exitScope() {
+        if (scopeDepth == 0) {
+            throw new IllegalStateException("No scope to exit");
+        }
+        int mark = scopeMarks[--scopeDepth];
+        while (declaredCount > mark) {
+            Binding binding = declared[--declaredCount];
+            declared[declaredCount] = null;
+            if (binding.shadowed != null) {
+                bindings.put(binding.name, binding.shadowed);
+            } else {
+                bindings.remove(binding.name);
+            }
+        }
+    }
+
+    int getScopeDepth() {
+        return scopeDepth;
+    }
+
+    void clear() {
+        bindings.clear();
+        Arrays.fill(declared, 0, declaredCount, null);
+        declaredCount = 0;
+        scopeDepth = 0;
+    }
+
+    /**
+     * Declare a local in the innermost scope, with its value if it is a constant
+     */
+    void declare(String name, LiteralNode value) {
+        Binding shadowed = bindings.get(name);
+        if (value == null && shadowed == null) {
+            return; // Nothing to hide, and reads of it stay identifiers anyway
+        }
+        Binding binding = new Binding(name, value, shadowed);
+        bindings.put(name, binding);
+        if (declaredCount == declared.length) {
+            declared = Arrays.copyOf(declared, declaredCount * 2);
+        }
+        declared[declaredCount++] = binding;
+    }
+
+    /**
+     * The constant a final local of the given type holds, or null if its initializer is not one
+     */
+    static LiteralNode finalValue(String type, boolean isArray, ASTNode initializer) {
+        if (isArray || !(initializer instanceof LiteralNode)) {
+            return null;
+        }
+        LiteralNode literal = (LiteralNode) initializer;
+        int to = TypeIds.intern(type);
+        int from = literal.getTypeId();
+        Object value = literal.getConstant();
+        if (value == null || !isFoldable(from) || !isFoldable(to) || !TypeIds.isAssignable(from, to)) {
+            return null;
+        }
+        return literal(to, value instanceof Number ? convert((Number) value, to) : value,
+                literal.getLine(), literal.getColumn());
+    }
+
+    /**
+     * A read of name at line and column: its constant if it names one, otherwise an identifier
+     */
+    ASTNode identifier(String name, int line, int column) {
+        if (!bindings.isEmpty()) {
+            Binding binding = bindings.get(name);
+            if (binding != null && binding.value != null) {
+                return new LiteralNode(binding.value.getType(), binding.value.getValue(),
+                        binding.value.getConstant(), line, column);
+            }
+        }
+        return new IdentifierNode(name, line, column);
+    }
+
+    // ==================== FOLDING ====================
+
+    /**
+     * The literal left operator right folds to, or null if it does not fold
+     */
+    static LiteralNode foldBinary(String operator, ASTNode left, ASTNode right, int line, int column) {
+        if (!(left instanceof LiteralNode) || !(right instanceof LiteralNode)) {
+            return null;
+        }
+        LiteralNode l = (LiteralNode) left;
+        LiteralNode r = (LiteralNode) right;
+        int leftType = l.getTypeId();
+        int rightType = r.getTypeId();
+        Object a = l.getConstant();
+        Object b = r.getConstant();
+        if (a == null || b == null || !isFoldable(leftType) || !isFoldable(rightType)) {
+            return null;
+        }
+        Object value;
+        int type;
+        if (leftType == TypeIds.BOOLEAN && rightType == TypeIds.BOOLEAN) {
+            value = logical(operator, (Boolean) a, (Boolean) b);
+            type = TypeIds.BOOLEAN;
+        } else if (leftType != TypeIds.BOOLEAN && rightType != TypeIds.BOOLEAN) {
+            type = TypeIds.wider(leftType, rightType);
+            value = arithmetic(operator, type, (Number) a, (Number) b);
+            if (value instanceof Boolean) {
+                type = TypeIds.BOOLEAN;
+            }
+        } else {
+            return null;
+        }
+        return value != null ? literal(type, value, line, column) : null;
+    }
+
+    /**
+     * The literal a prefix operator applied to operand folds to, or null if it does not fold
+     */
+    static LiteralNode foldUnary(String operator, ASTNode operand, int line, int column) {
+        if (!(operand instanceof LiteralNode)) {
+            return null;
+        }
+        LiteralNode literal = (LiteralNode) operand;
+        int type = literal.getTypeId();
+        Object value = literal.getConstant();
+        if (value == null && operator.equals("-") && (type == TypeIds.INT || type == TypeIds.LONG)) {
+            // 2147483648 and 9223372036854775808L are only in range negated, as in Java
+            Object negated = parse(type, "-" + literal.getValue());
+            return negated != NOT_CONSTANT ? literal(type, negated, line, column) : null;
+        }
+        if (value == null || !isFoldable(type)) {
+            return null;
+        }
+        if (operator.equals("!") && type == TypeIds.BOOLEAN) {
+            return literal(type, !(Boolean) value, line, column);
+        }
+        if (operator.equals("-") && type != TypeIds.BOOLEAN) {
+            Number n = (Number) value;
+            switch (type) {
+                case TypeIds.INT:
+                    return literal(type, -n.intValue(), line, column);
+                case TypeIds.LONG:
+                    return literal(type, -n.longValue(), line, column);
+                case TypeIds.FLOAT:
+                    return literal(type, -n.floatValue(), line, column);
+                default:
+                    return literal(type, -n.doubleValue(), line, column);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isFoldable(int type) {
+        return type == TypeIds.INT || type == TypeIds.LONG || type == TypeIds.FLOAT || type == TypeIds.DOUBLE
+                || type == TypeIds.BOOLEAN;
+    }
+
+    private static Object logical(String operator, boolean a, boolean b) {
+        switch (operator) {
+            case "&&":
+                return a && b;
+            case "||":
+                return a || b;
+            case "==":
+                return a == b;
+            case "!=":
+                return a != b;
+            default:
+                return null; // Rejected by the checker
+        }
+    }
+
+    /**
+     * a operator b with both operands promoted to type, null if it does not fold
+     */
+    private static Object arithmetic(String operator, int type, Number a, Number b) {
+        if ((operator.equals("/") || operator.equals("%")) && b.doubleValue() == 0) {
+            return null; // Reported by the division by zero rule
+        }
+        if (type == TypeIds.INT || type == TypeIds.LONG) {
+            long x = a.longValue();
+            long y = b.longValue();
+            long result;
+            switch (operator) {
+                case "+": result = x + y; break;
+                case "-": result = x - y; break;
+                case "*": result = x * y; break;
+                case "/": result = x / y; break;
+                case "%": result = x % y; break;
+                case "==": return x == y;
+                case "!=": return x != y;
+                case "<": return x < y;
+                case "<=": return x <= y;
+                case ">": return x > y;
+                case ">=": return x >= y;
+                default: return null;
+            }
+            // The low 32 bits of the long result are the int result, overflow included
+            return type == TypeIds.INT ? (Object) (int) result : (Object) result;
+        }
+        if (type == TypeIds.FLOAT) {
+            float x = a.floatValue();
+            float y = b.floatValue();
+            float result;
+            switch (operator) {
+                case "+": result = x + y; break;
+                case "-": result = x - y; break;
+                case "*": result = x * y; break;
+                case "/": result = x / y; break;
+                case "%": result = x % y; break;
+                case "==": return x == y;
+                case "!=": return x != y;
+                case "<": return x < y;
+                case "<=": return x <= y;
+                case ">": return x > y;
+                case ">=": return x >= y;
+                default: return null;
+            }
+            return Float.isFinite(result) ? result : null;
+        }
+        double x = a.doubleValue();
+        double y = b.doubleValue();
+        double result;
+        switch (operator) {
+            case "+": result = x + y; break;
+            case "-": result = x - y; break;
+            case "*": result = x * y; break;
+            case "/": result = x / y; break;
+            case "%": result = x % y; break;
+            case "==": return x == y;
+            case "!=": return x != y;
+            case "<": return x < y;
+            case "<=": return x <= y;
+            case ">": return x > y;
+            case ">=": return x >= y;
+            default: return null;
+        }
+        // An infinite or NaN result has no literal to stand for it
+        return Double.isFinite(result) ? result : null;
+    }
+
+    private static Object convert(Number value, int type) {
+        switch (type) {
+            case TypeIds.INT:
+                return value.intValue();
+            case TypeIds.LONG:
+                return value.longValue();
+            case TypeIds.FLOAT:
+                return value.floatValue();
+            default:
+                return value.doubleValue();
+        }
+    }
+
+    // ==================== VALUES ====================
+
+    /**
+     * Literal of type holding value, written the way the source would write it
+     */
+    private static LiteralNode literal(int type, Object value, int line, int column) {
+        String text;
+        switch (type) {
+            case TypeIds.LONG:
+                text = value + "L";
+                break;
+            case TypeIds.FLOAT:
+                text = value + "f";
+                break;
+            default:
+                text = String.valueOf(value);
+        }
+        return new LiteralNode(TypeIds.name(type), text, value, line, column);
+    }
+
+    /**
+     * Value of a literal of the given type written as text, or NOT_CONSTANT
+     * Integer literals with a leading zero are octal, as in Java.
+     */
+    static Object parse(int typeId, String text) {
+        try {
+            switch (typeId) {
+                case TypeIds.INT:
+                    return Integer.decode(text);
+                case TypeIds.LONG: {
+                    char last = text.isEmpty() ? 0 : text.charAt(text.length() - 1);
+                    return Long.decode(last == 'l' || last == 'L' ? text.substring(0, text.length() - 1) : text);
+                }
+                case TypeIds.FLOAT:
+                    return Float.parseFloat(text);
+                case TypeIds.DOUBLE:
+                    return Double.parseDouble(text);
+                case TypeIds.BOOLEAN:
+                    return text.equals("true") ? Boolean.TRUE : text.equals("false") ? Boolean.FALSE : NOT_CONSTANT;
+                case TypeIds.CHAR: {
+                    String value = unquote(text);
+                    return value != null && value.length() == 1 ? (Object) value.charAt(0) : NOT_CONSTANT;
+                }
+                case TypeIds.STRING: {
+                    // Interned like Java's string constants, so == between equal literals holds
+                    String value = unquote(text);
+                    return value != null ? value.intern() : NOT_CONSTANT;
+                }
+                default:
+                    return NOT_CONSTANT;
+            }
+        } catch (NumberFormatException e) {
+            return NOT_CONSTANT;
+        }
+    }
+
+    /**
+     * Contents of a quoted char or string literal with its escapes resolved, or null if
+     * it uses an escape this compiler does not know
+     */
+    private static String unquote(String text) {
+        if (text.length() < 2) {
+            return null;
+        }
+        int end = text.length() - 1;
+        StringBuilder sb = new StringBuilder(end - 1);
+        for (int i = 1; i < end; i++) {
+            char c = text.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i == end) {
+                return null;
+            }
+            c = text.charAt(i);
+            switch (c) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 's': sb.append(' '); break;
+                case '\'':
+                case '"':
+                case '\\':
+                    sb.append(c);
+                    break;
+                default: {
+                    if (c < '0' || c > '7') {
+                        return null;
+                    }
+                    // Octal escape: up to three digits, the first of three at most 3
+                    int value = c - '0';
+                    int max = c <= '3' ? 2 : 1;
+                    while (max-- > 0 && i + 1 < end && text.charAt(i + 1) >= '0' && text.charAt(i + 1) <= '7') {
+                        value = value * 8 + text.charAt(++i) - '0';
+                    }
+                    sb.append((char) value);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
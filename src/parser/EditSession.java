@@ -0,0 +1,618 @@
+package parser;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A program kept parsed and checked while its text is edited
+ * The session holds the text, the AST, the token stream and each method's type
+ * checking result. An edit reparses only the class members whose text it touches,
+ * splices the new members into their ClassNode and the new tokens into the stream,
+ * and type checks only the methods that could report something different: the
+ * reparsed ones, those that call a method whose signature changed, and those
+ * moved to other lines. Edits that touch a class header or brace, add a field, or
+ * do not reparse as whole members fall back to parsing the whole text.
+ * The results are always those of compiling the current text from scratch.
+ *
+ * Each member owns the text from the end of the token before it to the end of its
+ * own last token, so comments and blank lines belong to the member that follows them.
+ * Not thread safe.
+ */
+public class EditSession {
+
+    private final boolean recordSymbols;
+    private int maxNesting = JavaParser.DEFAULT_MAX_NESTING;
+
+    private String text;
+    private int[] lineStarts = new int[64];
+    private int lineCount;
+
+    private ProgrameNode program;
+    private SymbolTable tokens;
+    private List<Member> members = new ArrayList<>();
+
+    // Set when the text stopped parsing; the next edit parses everything again
+    private boolean stale;
+
+    // Reparses members, reusing its parser and token table between edits
+    private JavaParser memberParser;
+
+    // Fields of the whole program, which is what a checker sees after a full parse
+    private final SymbolTable fieldScope = new SymbolTable(JavaParser.TOKEN_TYPE_NAMES);
+    private final TypeChecker checker = new TypeChecker(fieldScope);
+    private final Map<MethodNode, TypeChecker.MethodResult> results = new IdentityHashMap<>();
+    private List<String> errors = new ArrayList<>();
+    private List<String> warnings = new ArrayList<>();
+    private RuntimeException failure;
+
+    // What the last edit cost
+    private boolean parsedWholeText;
+    private int reparsedMembers;
+    private int checkedMethods;
+
+    /**
+     * Parse and check text; throws ParseException if it does not lex or parse
+     */
+    public EditSession(String text, boolean recordSymbols) throws ParseException {
+        this.recordSymbols = recordSymbols;
+        for (AnalysisRule rule : JavaParser.semanticRules()) {
+            checker.addRule(rule);
+        }
+        this.text = text;
+        indexLines();
+        parseAll();
+        check();
+    }
+
+    /**
+     * Limit nesting for the parses done from now on, see JavaParser.setMaxNesting
+     */
+    public void setMaxNesting(int maxNesting) {
+        this.maxNesting = maxNesting;
+    }
+
+    // ==================== EDITING ====================
+
+    /**
+     * Replace length chars at offset with replacement, then bring the AST, tokens and diagnostics up to date
+     * If the new text does not lex or parse, a ParseException is thrown and the session keeps
+     * the results of the last text that did; the next edit parses the whole text.
+     */
+    public void replace(int offset, int length, String replacement) throws ParseException {
+        if (offset < 0 || length < 0 || offset + length > text.length()) {
+            throw new IndexOutOfBoundsException("Edit [" + offset + ", " + (offset + length)
+                    + ") outside the text of length " + text.length());
+        }
+        int first = stale ? -1 : memberAt(offset);
+        int last = first < 0 ? -1 : regionEnd(first, offset + length);
+
+        int oldLineCount = lineCount;
+        text = text.substring(0, offset) + replacement + text.substring(offset + length);
+        indexLines();
+        int delta = replacement.length() - length;
+
+        if (last < 0 || !reparse(first, last, delta, lineCount - oldLineCount)) {
+            parseAll();
+        }
+        check();
+    }
+
+    /**
+     * Index of the member whose text contains offset, or -1 if offset is outside every member
+     */
+    private int memberAt(int offset) {
+        int low = 0;
+        int high = members.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Member m = members.get(mid);
+            if (offset < m.start) {
+                high = mid - 1;
+            } else if (offset >= m.end) {
+                low = mid + 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Index of the last member to reparse along with first for an edit ending at end, or -1 if
+     * the edit reaches past the members of first's class
+     * A member followed by more text on its last line takes the next member with it,
+     * since that text's columns change with the edit.
+     */
+    private int regionEnd(int first, int end) {
+        ClassNode owner = members.get(first).owner;
+        int last = first;
+        while (members.get(last).end < end || restOfLineHasText(members.get(last).end)) {
+            if (last + 1 == members.size() || members.get(last + 1).owner != owner) {
+                return -1;
+            }
+            last++;
+        }
+        return last;
+    }
+
+    private boolean restOfLineHasText(int offset) {
+        for (int i = offset; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r') {
+                return false;
+            }
+            if (c != ' ' && c != '\t' && c != '\f') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reparse members first to last, whose text grew by delta chars and lineDelta lines,
+     * and splice the result in
+     * Returns false, leaving the session as it was, if the text does not parse as
+     * whole members; the whole text is then parsed to report or recover from it.
+     */
+    private boolean reparse(int first, int last, int delta, int lineDelta) {
+        Member firstMember = members.get(first);
+        Member lastMember = members.get(last);
+        int regionStart = firstMember.start;
+        int regionEnd = lastMember.end + delta;
+
+        if (memberParser == null) {
+            memberParser = new JavaParser(MappedCharStream.ofString(""), recordSymbols);
+        }
+        memberParser.reset(MappedCharStream.ofString(text.substring(regionStart, regionEnd),
+                lineOf(regionStart), columnOf(regionStart)));
+        memberParser.setMaxNesting(maxNesting);
+        memberParser.setMaxSyntaxErrors(1); // Any error means parsing the whole text
+        Recorder recorder = new Recorder(memberParser.getSymbolTable(), regionStart);
+        memberParser.setMemberListener(recorder);
+        try {
+            memberParser.MemberDeclarations();
+        } catch (ParseException | TokenMgrError e) {
+            return false;
+        } finally {
+            memberParser.setMemberListener(null);
+        }
+        List<Member> parsed = recorder.parsed;
+        int parsedEnd = parsed.isEmpty() ? regionStart : parsed.get(parsed.size() - 1).end;
+        for (int i = parsedEnd; i < regionEnd; i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false; // A trailing comment belongs to the token after the region
+            }
+        }
+
+        ClassNode owner = firstMember.owner;
+        List<ASTNode> nodes = new ArrayList<>();
+        boolean fieldsChanged = false;
+        Set<String> signatures = new HashSet<>();
+        for (Member m : parsed) {
+            m.owner = owner;
+            nodes.add(m.node);
+            fieldsChanged |= m.node instanceof FieldNode;
+            toggleSignature(signatures, m.node);
+        }
+        List<Member> replaced = members.subList(first, last + 1);
+        for (Member m : replaced) {
+            fieldsChanged |= m.node instanceof FieldNode;
+            toggleSignature(signatures, m.node);
+            results.remove(m.node);
+        }
+
+        // AST and tokens
+        int index = owner.getMembers().indexOf(firstMember.node);
+        owner.replaceMembers(index, index + replaced.size(), nodes);
+        int tokenFrom = firstMember.firstToken;
+        int tokenTo = lastMember.firstToken + lastMember.tokenCount;
+        int tokenShift = 0;
+        if (recordSymbols) {
+            tokens.replaceTokens(tokenFrom, tokenTo, memberParser.getSymbolTable(), lineDelta);
+            tokenShift = memberParser.getSymbolTable().getTokens().size() - (tokenTo - tokenFrom);
+        }
+        for (Member m : parsed) {
+            m.firstToken += tokenFrom;
+        }
+        replaced.clear();
+        replaced.addAll(parsed);
+
+        // Everything after the region moves
+        int after = first + parsed.size();
+        if (after < members.size() && members.get(after).owner == owner) {
+            members.get(after).start = parsedEnd - delta; // moved by delta below
+        }
+        LineShifter shifter = lineDelta != 0 ? new LineShifter(lineDelta) : null;
+        for (int i = after; i < members.size(); i++) {
+            Member m = members.get(i);
+            m.start += delta;
+            m.end += delta;
+            m.firstToken += tokenShift;
+            if (shifter != null) {
+                shifter.shift(m.node);
+                for (SymbolTable.VariableInfo variable : m.variables) {
+                    variable.line += lineDelta;
+                }
+                results.remove(m.node); // Its messages name the old lines
+            }
+        }
+        if (shifter != null) {
+            List<ASTNode> classes = program.getClasses();
+            for (int c = classes.indexOf(owner) + 1; c < classes.size(); c++) {
+                classes.get(c).shiftLines(lineDelta);
+            }
+        }
+
+        // Methods whose checks read what changed
+        if (fieldsChanged) {
+            results.clear();
+            collectFields();
+        } else if (!signatures.isEmpty()) {
+            Set<String> names = new HashSet<>();
+            for (String signature : signatures) {
+                names.add(signature.substring(0, signature.indexOf('(')));
+            }
+            // Callers, and methods of the same name, which report duplicates of the first one
+            for (Member m : members) {
+                if (m.calls != null && (!Collections.disjoint(m.calls, names)
+                        || names.contains(((MethodNode) m.node).getName()))) {
+                    results.remove(m.node);
+                }
+            }
+        }
+        parsedWholeText = false;
+        reparsedMembers = parsed.size();
+        return true;
+    }
+
+    /**
+     * Add a method's signature to signatures, or remove it if present, so that after
+     * toggling the old and new members the set holds the signatures that changed
+     */
+    private static void toggleSignature(Set<String> signatures, ASTNode node) {
+        if (!(node instanceof MethodNode)) {
+            return;
+        }
+        MethodNode method = (MethodNode) node;
+        StringBuilder sb = new StringBuilder(method.getName()).append('(');
+        for (ASTNode p : method.getParameters()) {
+            ParameterNode parameter = (ParameterNode) p;
+            sb.append(parameter.getType()).append(parameter.isArray() ? "[]," : ",");
+        }
+        sb.append(')').append(method.getReturnType()).append(' ').append(method.getModifiers());
+        String signature = sb.toString();
+        if (!signatures.remove(signature)) {
+            signatures.add(signature);
+        }
+    }
+
+    /**
+     * Parse the whole text, replacing every member
+     */
+    private void parseAll() throws ParseException {
+        stale = true;
+        JavaParser parser = new JavaParser(MappedCharStream.ofString(text), recordSymbols);
+        parser.setMaxNesting(maxNesting);
+        Recorder recorder = new Recorder(parser.getSymbolTable(), 0);
+        parser.setMemberListener(recorder);
+        ProgrameNode parsed;
+        try {
+            parsed = (ProgrameNode) parser.Program();
+        } catch (TokenMgrError e) {
+            // Text that does not lex fails like text that does not parse
+            ParseException unlexable = new ParseException(e.getMessage());
+            unlexable.initCause(e);
+            throw unlexable;
+        }
+
+        // Members were reported in source order, which is class by class
+        Iterator<Member> next = recorder.parsed.iterator();
+        for (ASTNode classNode : parsed.getClasses()) {
+            for (int i = ((ClassNode) classNode).getMembers().size(); i > 0; i--) {
+                next.next().owner = (ClassNode) classNode;
+            }
+        }
+        program = parsed;
+        members = recorder.parsed;
+        tokens = recordSymbols ? parser.getSymbolTable() : null;
+        results.clear();
+        collectFields();
+        stale = false;
+        parsedWholeText = true;
+        reparsedMembers = members.size();
+    }
+
+    /**
+     * Declare the program's fields in fieldScope, in source order like a full parse does
+     */
+    private void collectFields() {
+        fieldScope.clear();
+        if (!recordSymbols) {
+            return;
+        }
+        for (Member m : members) {
+            if (m.node instanceof FieldNode) {
+                for (SymbolTable.VariableInfo field : m.variables) {
+                    fieldScope.addVariable(field.name, field.type, field.line);
+                }
+            }
+        }
+    }
+
+    private void check() {
+        int methods = 0;
+        for (Member m : members) {
+            if (m.node instanceof MethodNode) {
+                methods++;
+            }
+        }
+        checkedMethods = methods - results.size();
+        checker.reset();
+        failure = null;
+        try {
+            checker.analyzeIncremental(program, results);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        errors = new ArrayList<>(checker.getErrors());
+        warnings = new ArrayList<>(checker.getWarnings());
+    }
+
+    // ==================== RESULTS ====================
+
+    public String getText() {
+        return text;
+    }
+
+    public ProgrameNode getProgram() {
+        return program;
+    }
+
+    /**
+     * The recorded tokens, or null when symbols are not recorded
+     */
+    public SymbolTable getTokens() {
+        return tokens;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * The exception a semantic rule aborted analysis with, or null
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Unused variables in declaration order, as a full parse lists them
+     * A field counts as used when a later member names it without declaring
+     * something of that name in between.
+     */
+    public List<String> getUnusedVariables() {
+        List<String> unused = new ArrayList<>();
+        Map<String, SymbolTable.VariableInfo> visibleFields = new HashMap<>();
+        Set<SymbolTable.VariableInfo> usedFields = Collections.newSetFromMap(
+                new IdentityHashMap<SymbolTable.VariableInfo, Boolean>());
+        for (Member m : members) {
+            for (String name : m.freeNames) {
+                SymbolTable.VariableInfo field = visibleFields.get(name);
+                if (field != null) {
+                    usedFields.add(field);
+                }
+            }
+            if (m.node instanceof FieldNode) {
+                for (SymbolTable.VariableInfo field : m.variables) {
+                    visibleFields.put(field.name, field);
+                }
+            }
+        }
+        for (Member m : members) {
+            boolean field = m.node instanceof FieldNode;
+            for (SymbolTable.VariableInfo variable : m.variables) {
+                if (field ? !usedFields.contains(variable) : !variable.used) {
+                    unused.add(SymbolTable.describeUnused(variable));
+                }
+            }
+        }
+        return unused;
+    }
+
+    /**
+     * Print the report the command line compiler prints for the current text,
+     * from the parse result on, returning its exit status
+     */
+    public int printReport(OutputRenderer out, PrintWriter err) {
+        FileCompiler.printParsed(tokens, FileCompiler.printsTree(out) ? program : null, out);
+        if (failure != null) {
+            out.flush();
+            err.println(failure.getMessage());
+            err.flush();
+            return FileCompiler.EXIT_FAILURE;
+        }
+        return FileCompiler.printDiagnostics(errors, warnings, getUnusedVariables(), out, err);
+    }
+
+    /**
+     * Whether the last edit parsed the whole text instead of the members it touched
+     */
+    public boolean parsedWholeText() {
+        return parsedWholeText;
+    }
+
+    /**
+     * Number of members the last edit parsed
+     */
+    public int getReparsedMemberCount() {
+        return reparsedMembers;
+    }
+
+    /**
+     * Number of methods the last edit type checked
+     */
+    public int getCheckedMethodCount() {
+        return checkedMethods;
+    }
+
+    // ==================== LINE INDEX ====================
+
+    /**
+     * Index line starts the way MappedCharStream counts lines, with "\r\n" as one break
+     */
+    private void indexLines() {
+        lineCount = 1;
+        lineStarts[0] = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 == text.length() || text.charAt(i + 1) != '\n'))) {
+                if (lineCount == lineStarts.length) {
+                    lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+                }
+                lineStarts[lineCount++] = i + 1;
+            }
+        }
+    }
+
+    private int lineOf(int offset) {
+        int low = 0;
+        int high = lineCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    private int columnOf(int offset) {
+        return offset - lineStarts[lineOf(offset) - 1] + 1;
+    }
+
+    /**
+     * Offset just after the last char of t
+     */
+    private int offsetAfter(Token t) {
+        return lineStarts[t.endLine - 1] + t.endColumn;
+    }
+
+    // ==================== INNER CLASSES ====================
+
+    /**
+     * A class member and what the session keeps about it
+     */
+    private static final class Member {
+        ClassNode owner;
+        ASTNode node;
+
+        // Its text: from the end of the token before it to the end of its last token
+        int start;
+        int end;
+
+        // Its tokens in the token stream
+        int firstToken;
+        int tokenCount;
+
+        // Parameters and locals of a method, or a field, in declaration order
+        final List<SymbolTable.VariableInfo> variables = new ArrayList<>();
+
+        // Names it uses that are not its own parameters or locals
+        final Set<String> freeNames = new HashSet<>();
+
+        // Names of the methods a method calls
+        Set<String> calls;
+    }
+
+    /**
+     * Collects the members a parse reports
+     */
+    private final class Recorder implements JavaParser.MemberListener {
+        final List<Member> parsed = new ArrayList<>();
+        private final SymbolTable table;
+        private final int regionStart;
+        private Member current;
+
+        Recorder(SymbolTable table, int regionStart) {
+            this.table = table;
+            this.regionStart = regionStart;
+        }
+
+        public void startMember(Token previous) {
+            current = new Member();
+            // The first member of a reparsed region follows the parser's initial token
+            current.start = previous.endLine == 0 ? regionStart : offsetAfter(previous);
+            current.firstToken = table.getTokens().size();
+        }
+
+        public void endMember(ASTNode member, Token last) {
+            current.node = member;
+            current.end = offsetAfter(last);
+            current.tokenCount = table.getTokens().size() - current.firstToken;
+            if (member instanceof MethodNode) {
+                current.calls = new CallCollector().collect(member);
+            }
+            parsed.add(current);
+            current = null;
+        }
+
+        public void declared(SymbolTable.VariableInfo variable) {
+            if (current != null) {
+                current.variables.add(variable);
+            }
+        }
+
+        public void used(String name, SymbolTable.VariableInfo resolved) {
+            // Fields are declared at scope level 0, parameters and locals below it
+            if (current != null && (resolved == null || resolved.scopeLevel == 0)) {
+                current.freeNames.add(name);
+            }
+        }
+    }
+
+    /**
+     * Names of the methods called in a subtree
+     */
+    private static final class CallCollector extends ASTWalker {
+        private final Set<String> names = new HashSet<>();
+
+        Set<String> collect(ASTNode node) {
+            walk(node);
+            return names;
+        }
+
+        @Override
+        public Void visitMethodCall(MethodCallNode node) {
+            names.add(node.getMethodName());
+            return super.visitMethodCall(node);
+        }
+    }
+
+    /**
+     * Moves every node of a subtree by a number of lines
+     */
+    private static final class LineShifter extends ASTWalker {
+        private final int delta;
+
+        LineShifter(int delta) {
+            this.delta = delta;
+        }
+
+        void shift(ASTNode node) {
+            walk(node);
+        }
+
+        @Override
+        protected void visitNode(ASTNode node) {
+            node.shiftLines(delta);
+            super.visitNode(node);
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package parser;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Compiles one file at a time, producing the same report and error messages
+ * as the command line compiler
+ * The parser, symbol table and type checker are created once and reset between
+ * files, so a long-lived instance does not pay their setup cost per file.
+ * Instances are not thread safe; use one per thread.
+ */
+public class FileCompiler {
+
+    public static final int EXIT_SUCCESS = 0;
+    public static final int EXIT_FAILURE = 1;
+
+    private final boolean recordSymbols;
+    private final boolean parallelCheck;
+    private int maxNesting = JavaParser.DEFAULT_MAX_NESTING;
+    private int maxSyntaxErrors = JavaParser.DEFAULT_MAX_SYNTAX_ERRORS;
+    private boolean flatAst;
+    private boolean run;
+    private long maxRunSteps = Long.MAX_VALUE;
+    private CompileCache cache;
+    private JavaParser parser;
+    private TypeChecker typeChecker;
+    private SymbolTable replayTokens;
+
+    // Statistics for the last compiled file
+    private int tokenCount;
+
+    public FileCompiler(boolean recordSymbols) {
+        this(recordSymbols, false);
+    }
+
+    /**
+     * With parallelCheck, method bodies are type checked concurrently on the common pool
+     */
+    public FileCompiler(boolean recordSymbols, boolean parallelCheck) {
+        this.recordSymbols = recordSymbols;
+        this.parallelCheck = parallelCheck;
+    }
+
+    /**
+     * Limit how deeply statements and expressions may nest in the files compiled from now on
+     * See JavaParser.setMaxNesting. Input that overflows the stack below a raised
+     * limit is reported as a syntax error at the last token read.
+     */
+    public void setMaxNesting(int maxNesting) {
+        this.maxNesting = maxNesting;
+    }
+
+    /**
+     * Report at most this many syntax errors per file, see JavaParser.setMaxSyntaxErrors
+     */
+    public void setMaxSyntaxErrors(int maxSyntaxErrors) {
+        this.maxSyntaxErrors = maxSyntaxErrors;
+    }
+
+    /**
+     * Parse into a FlatAst and type check it one method body at a time
+     * The report is the same; only the AST sections turn the whole tree into objects.
+     */
+    public void setFlatAst(boolean flatAst) {
+        this.flatAst = flatAst;
+    }
+
+    /**
+     * Run each program that compiles without errors, printing its output after the report
+     * See Interpreter.
+     */
+    public void setRun(boolean run) {
+        this.run = run;
+    }
+
+    /**
+     * Stop each run after this many statements, see Interpreter.setMaxSteps
+     */
+    public void setMaxRunSteps(long maxRunSteps) {
+        this.maxRunSteps = maxRunSteps;
+    }
+
+    /**
+     * Reuse results from a CompileCache for files whose content was compiled before, or null for none
+     */
+    public void setCache(CompileCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Number of tokens recorded for the last compiled file
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Compile a file, writing the report to out and error messages to err
+     * Returns the exit status the command line compiler would use
+     */
+    public int compile(String filename, OutputRenderer out, PrintWriter err) {
+        return compile(filename, null, out, err);
+    }
+
+    /**
+     * Compile a file named relative to baseDir, for callers whose working
+     * directory differs from the one the name was given in
+     * Messages still show the file name as given.
+     */
+    public int compile(String filename, File baseDir, OutputRenderer out, PrintWriter err) {
+        tokenCount = 0;
+        File file = new File(filename);
+        if (baseDir != null && !file.isAbsolute()) {
+            file = new File(baseDir, filename);
+        }
+        String path = file.getPath();
+        try {
+            try {
+                return compileFile(filename, path, out, err);
+            } finally {
+                // Report output must reach its destination before any error
+                out.flush();
+            }
+        } catch (FileNotFoundException e) {
+            err.println("✗ ERROR: File '" + filename + "' not found.");
+
+        } catch (ParseException e) {
+            reportSyntaxErrors(syntaxErrorsOf(e), err);
+
+        } catch (TokenMgrError e) {
+            // The lexer stops the parse; errors the parser recovered from before that still count
+            if (parser != null && !parser.getSyntaxErrors().isEmpty()) {
+                reportSyntaxErrors(parser.getSyntaxErrors(), err);
+            }
+            reportLexicalError(e, err);
+
+        } catch (IOException e) {
+            err.println("✗ ERROR: Could not read file: " + e.getMessage());
+
+        } catch (StackOverflowError e) {
+            // Nesting within --max-nesting that is still too deep for the thread's stack
+            reportSyntaxErrors(Collections.singletonList(nestingTooDeep()), err);
+            parser = null;
+
+        } catch (RuntimeException e) {
+            err.println(e.getMessage());
+
+        } catch (Exception e) {
+            err.println("✗ UNEXPECTED ERROR: " + e.getMessage());
+            e.printStackTrace(err);
+        } finally {
+            err.flush();
+        }
+        return EXIT_FAILURE;
+    }
+
+    private int compileFile(String filename, String path, OutputRenderer out, PrintWriter err) throws Exception {
+        out.println("Input file: " + filename);
+        out.println();
+
+        // Create parser over the memory-mapped input file
+        MappedCharStream input = MappedCharStream.open(path);
+        try {
+            // A cached result is replayed without lexing
+            String cacheKey = null;
+            if (cache != null) {
+                cacheKey = cache.key(input, recordSymbols, maxNesting);
+                if (replayTokens == null) {
+                    replayTokens = new SymbolTable(JavaParser.TOKEN_TYPE_NAMES);
+                }
+                CompileCache.Entry cached = cache.load(cacheKey, replayTokens);
+                if (cached != null) {
+                    tokenCount = cached.tokens != null ? cached.tokens.getTokens().size() : 0;
+                    ProgrameNode program = printsTree(out) || run ? cached.ast.readAll() : null;
+                    printParsed(cached.tokens, program, out);
+                    int status = printDiagnostics(cached.errors, cached.warnings, cached.unusedVariables, out, err);
+                    return status == EXIT_SUCCESS && run ? runProgram(program, out, maxRunSteps) : status;
+                }
+            }
+
+            if (parser == null) {
+                parser = new JavaParser(input, recordSymbols);
+                typeChecker = new TypeChecker(parser.getSymbolTable());
+                for (AnalysisRule rule : JavaParser.semanticRules()) {
+                    typeChecker.addRule(rule);
+                }
+            } else {
+                parser.reset(input);
+                typeChecker.reset();
+            }
+            parser.setMaxNesting(maxNesting);
+            parser.setMaxSyntaxErrors(maxSyntaxErrors);
+
+            FlatAst flat = null;
+            ASTNode ast = null;
+            if (flatAst) {
+                flat = parser.parseFlat();
+            } else {
+                ast = parser.Program();
+            }
+            tokenCount = parser.getSymbolTable().getTokens().size();
+            SymbolTable tokens = recordSymbols ? parser.getSymbolTable() : null;
+            if (ast == null && printsTree(out)) {
+                ast = flat.toTree();
+            }
+            printParsed(tokens, ast, out);
+
+            // Division, useless statement and type checks share one walk
+            if (flat != null) {
+                if (parallelCheck) {
+                    typeChecker.analyzeParallel(flat);
+                } else {
+                    typeChecker.analyze(flat);
+                }
+            } else if (parallelCheck) {
+                typeChecker.analyzeParallel(ast);
+            } else {
+                typeChecker.analyze(ast);
+            }
+            List<String> unused = parser.getUnusedVariables();
+
+            // A file written in place changes its mapping too; such results are not stored
+            if (cacheKey != null && cacheKey.equals(cache.key(input, recordSymbols, maxNesting))) {
+                byte[] astFile = flat != null ? AstFile.toBytes(flat) : AstFile.toBytes((ProgrameNode) ast);
+                cache.store(cacheKey, new CompileCache.Entry(AstFile.of(astFile), tokens,
+                        typeChecker.getErrors(), typeChecker.getWarnings(), unused));
+            }
+            int status = printDiagnostics(typeChecker.getErrors(), typeChecker.getWarnings(), unused, out, err);
+            if (status == EXIT_SUCCESS && run) {
+                return runProgram((ProgrameNode) (ast != null ? ast : flat.toTree()), out, maxRunSteps);
+            }
+            return status;
+        } finally {
+            // Release the input buffer
+            input.Done();
+        }
+    }
+
+    /**
+     * Whether the report prints the AST, so a tree that is not held as objects has to be built
+     */
+    static boolean printsTree(OutputRenderer out) {
+        return out.isEnabled(OutputRenderer.Section.AST) || out.isEnabled(OutputRenderer.Section.TREE);
+    }
+
+    /**
+     * Print the parse result: the success banner, the symbol table and the AST
+     * ast may be null when printsTree(out) is false.
+     */
+    static void printParsed(SymbolTable tokens, ASTNode ast, OutputRenderer out) {
+        out.println();
+        out.println("SYNTAX VALIDATION SUCCESSFUL!");
+        out.println();
+
+        // Display symbol table (Phase 1)
+        if (tokens != null && out.isEnabled(OutputRenderer.Section.TOKENS)) {
+            tokens.printSymbolTable(out);
+            out.println();
+        }
+
+        // Display AST (Phase 3)
+        boolean showAst = out.isEnabled(OutputRenderer.Section.AST);
+        boolean showTree = out.isEnabled(OutputRenderer.Section.TREE);
+        if (showAst || showTree) {
+            out.println("========================================");
+            out.println("ABSTRACT SYNTAX TREE (AST)");
+            out.println("========================================");
+            if (showAst) {
+                out.print(ast, 0);
+            }
+            if (showTree) {
+                out.printTree(ast, true);
+            }
+            out.println();
+        }
+    }
+
+    /**
+     * Print the type checking results and the summary, returning the exit status
+     */
+    static int printDiagnostics(List<String> errors, List<String> warnings, List<String> unused,
+                                OutputRenderer out, PrintWriter err) {
+        boolean showDiagnostics = out.isEnabled(OutputRenderer.Section.DIAGNOSTICS);
+        if (showDiagnostics) {
+            out.println("TYPE CHECKING");
+            out.println("========================================");
+            TypeChecker.printResults(out, errors, warnings);
+        }
+
+        // Fail if there are type errors
+        if (!errors.isEmpty()) {
+            out.flush();
+            err.println("Compilation failed due to type errors.");
+            err.flush();
+            return EXIT_FAILURE;
+        }
+
+        // Check for unused variables
+        if (showDiagnostics && !unused.isEmpty()) {
+            out.println("========================================");
+            out.println("WARNINGS: UNUSED VARIABLES");
+            out.println("========================================");
+            for (String var : unused) {
+                out.println(" -> " + var);
+            }
+            out.println();
+        }
+
+        // Summary
+        out.println("Phase 1 (Lexical Analysis): Complete");
+        out.println("Phase 2 (Syntax Analysis): Complete");
+        out.println("No syntax errors detected");
+        out.println();
+        return EXIT_SUCCESS;
+    }
+
+    /**
+     * Run a checked program, printing what it writes to standard output
+     * A runtime error is thrown as a RuntimeException and reported like other errors.
+     */
+    static int runProgram(ProgrameNode program, OutputRenderer out, long maxSteps) {
+        out.println("========================================");
+        out.println("PROGRAM OUTPUT");
+        out.println("========================================");
+        Interpreter interpreter = new Interpreter(program, out);
+        interpreter.setMaxSteps(maxSteps);
+        interpreter.run();
+        out.println();
+        return EXIT_SUCCESS;
+    }
+
+    // ==================== ERROR REPORTING ====================
+
+    /**
+     * The syntax errors of the parse that threw e, which is the first of them
+     */
+    private List<SyntaxError> syntaxErrorsOf(ParseException e) {
+        if (parser != null && !parser.getSyntaxErrors().isEmpty()) {
+            return parser.getSyntaxErrors();
+        }
+        return Collections.singletonList(new SyntaxError(e, Collections.<Token>emptyList(), null));
+    }
+
+    /**
+     * The syntax error for a parse that overflowed the stack, at the last token it read
+     */
+    private SyntaxError nestingTooDeep() {
+        Token last = parser != null && parser.token != null ? parser.token : new Token(JavaParserConstants.EOF, "");
+        ParseException e = new ParseException("Nesting too deep for the parser's stack at line " + last.beginLine
+                + ", column " + last.beginColumn + " (lower the limit with --max-nesting=N, default "
+                + JavaParser.DEFAULT_MAX_NESTING + ")");
+        e.currentToken = new Token();
+        e.currentToken.next = last;
+        return new SyntaxError(e, Collections.<Token>emptyList(), null);
+    }
+
+    private void reportSyntaxErrors(List<SyntaxError> errors, PrintWriter err) {
+        err.println();
+        err.println("╔════════════════════════════════════════╗");
+        err.println("║    SYNTAX ERROR DETECTED               ║");
+        err.println("╚════════════════════════════════════════╝");
+        err.println();
+
+        for (SyntaxError error : errors) {
+            reportSyntaxError(error, err);
+        }
+        if (errors.size() > 1) {
+            err.println(errors.size() + " syntax errors");
+            if (errors.size() >= maxSyntaxErrors) {
+                err.println("Stopped at the error limit (raise it with --max-errors=N)");
+            }
+            err.println();
+        }
+    }
+
+    private static void reportSyntaxError(SyntaxError error, PrintWriter err) {
+        err.println("Location: Line " + error.getLine() + ", Column " + error.getColumn());
+        err.println();
+        if (error.getLineText() != null) {
+            printSnippet(error.getLineText(), error.getLine(), error.getColumn(), err);
+            err.println();
+        }
+
+        if (isMissingReturnType(error.getLineTokens())) {
+            err.println("Error: Missing return type in method declaration");
+            err.println();
+            err.println("Hint: Every method in Java must have a return type.");
+            err.println("      If the method doesn't return a value, use 'void'.");
+            err.println();
+            err.println("Examples:");
+            err.println(" public void calculate() { ... }");
+            err.println(" public int calculate() { ... }");
+            err.println(" public calculate() { ... }  // Missing return type!");
+            err.println();
+        } else {
+            // Display generic error message
+            err.println("Error Message:");
+            err.println("  " + error.getMessage());
+            err.println();
+
+            // Try to provide more helpful context
+            err.println("Unexpected token: \"" + error.getToken().image + "\"");
+            err.println();
+        }
+    }
+
+    /**
+     * Print a source line with a caret under the given column
+     * Tabs before the column are repeated under the line so the caret lines up.
+     */
+    private static void printSnippet(String text, int line, int column, PrintWriter err) {
+        String number = String.valueOf(line);
+        StringBuilder caret = new StringBuilder(number.length() + column + 4);
+        for (int i = 0; i < number.length(); i++) {
+            caret.append(' ');
+        }
+        caret.append(" | ");
+        for (int i = 0; i < column - 1; i++) {
+            caret.append(i < text.length() && text.charAt(i) == '\t' ? '\t' : ' ');
+        }
+        caret.append('^');
+        err.println(number + " | " + text);
+        err.println(caret);
+    }
+
+    /**
+     * Check whether the tokens of the error line look like a method declaration
+     * without a return type: a modifier first, then a name followed by '(' that
+     * no type keyword precedes
+     * Examples: "public calculate(", "private static myMethod("
+     */
+    private static boolean isMissingReturnType(List<Token> line) {
+        if (line.isEmpty() || !isModifier(line.get(0).kind)) {
+            return false;
+        }
+        boolean declaresMethod = false;
+        for (int i = 1; i + 1 < line.size(); i++) {
+            if (line.get(i).kind == JavaParserConstants.IDENTIFIER
+                    && line.get(i + 1).kind == JavaParserConstants.LPAREN) {
+                if (isReturnType(line.get(i - 1).kind)) {
+                    return false;
+                }
+                declaresMethod = true;
+            }
+        }
+        return declaresMethod;
+    }
+
+    private static boolean isModifier(int kind) {
+        switch (kind) {
+            case JavaParserConstants.PUBLIC:
+            case JavaParserConstants.PRIVATE:
+            case JavaParserConstants.PROTECTED:
+            case JavaParserConstants.STATIC:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isReturnType(int kind) {
+        switch (kind) {
+            case JavaParserConstants.VOID:
+            case JavaParserConstants.INT:
+            case JavaParserConstants.LONG:
+            case JavaParserConstants.SHORT:
+            case JavaParserConstants.BYTE:
+            case JavaParserConstants.FLOAT:
+            case JavaParserConstants.DOUBLE:
+            case JavaParserConstants.BOOLEAN:
+            case JavaParserConstants.CHAR:
+            case JavaParserConstants.STRING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static void reportLexicalError(TokenMgrError e, PrintWriter err) {
+        err.println();
+        err.println("╔════════════════════════════════════════╗");
+        err.println("║   ✗ LEXICAL ERROR DETECTED             ║");
+        err.println("╚════════════════════════════════════════╝");
+        err.println();
+        String errorMsg = e.getMessage();
+
+        // Check if it's an invalid identifier
+        if (errorMsg.toLowerCase().contains("invalid") ||
+            errorMsg.contains("INVALID_IDENTIFIER")) {
+
+            err.println("Error: Invalid identifier detected");
+            err.println();
+            err.println("Details: " + errorMsg);
+            err.println();
+            err.println("Hint: Java identifiers cannot start with a digit.");
+            err.println("      They must start with a letter, underscore (_), or dollar sign ($).");
+            err.println();
+            err.println("   int 10x;       // Invalid - starts with digit!");
+            err.println();
+        } else {
+            err.println("Invalid token or character encountered");
+            err.println();
+            err.println("Error Message:");
+            err.println("  " + errorMsg);
+            err.println();
+        }
+    }
+}
@@ -0,0 +1,850 @@
+package parser;
+
+import java.util.*;
+
+/**
+ * Compact AST stored in primitive arrays
+ * Node i is kinds[i], its position and up to three attributes, linked to its first
+ * child and next sibling by index, so a large program is a handful of arrays instead
+ * of an object, a child list and a few strings per node. Strings are pooled: a name
+ * used a thousand times is stored once.
+ * Nodes are appended in preorder, so a subtree occupies the index range from its
+ * root to subtreeEnd, and every child has a higher index than its parent.
+ *
+ * JavaParser.parseFlat builds one, appending each class member as soon as it is
+ * parsed. Read it with a Cursor, or get ASTNode objects back for one subtree with
+ * materialize.
+ *
+ * Attributes by kind (name and type are string pool indices, -1 for none):
+ *   CLASS          name, type = modifiers
+ *   METHOD         name, type = return type, extra = data offset of (modifiers, parameter count)
+ *   FIELD          name, type, extra = data offset of (modifiers, is array)
+ *   PARAMETER      name, type, extra = 1 if an array
+ *   VARIABLE       name, type, extra = 1 if an array | 2 if final
+ *   ASSIGNMENT     name = variable
+ *   BINARY_OP      name = operator
+ *   NARY_OP        name = operator, extra = data offset of (line, column) of the second and later operators
+ *   UNARY_OP       name = operator, extra = 1 if prefix
+ *   LITERAL        name = value, type
+ *   IDENTIFIER     name
+ *   METHOD_CALL    name
+ *   MEMBER_ACCESS  extra = data offset of (member count, member names)
+ * An optional child that is missing, such as an if without else, is kept as an
+ * EMPTY node so every child of a kind has a fixed position.
+ */
+public final class FlatAst {
+
+    // ==================== NODE KINDS ====================
+
+    public static final byte EMPTY = 0;
+    public static final byte PROGRAM = 1;
+    public static final byte CLASS = 2;
+    public static final byte METHOD = 3;
+    public static final byte PARAMETER = 4;
+    public static final byte FIELD = 5;
+    public static final byte VARIABLE = 6;
+    public static final byte ASSIGNMENT = 7;
+    public static final byte IF = 8;
+    public static final byte WHILE = 9;
+    public static final byte DO_WHILE = 10;
+    public static final byte FOR = 11;
+    public static final byte SWITCH = 12;
+    public static final byte CASE = 13;
+    public static final byte DEFAULT_CASE = 14;
+    public static final byte RETURN = 15;
+    public static final byte BREAK = 16;
+    public static final byte CONTINUE = 17;
+    public static final byte BLOCK = 18;
+    public static final byte BINARY_OP = 19;
+    public static final byte NARY_OP = 20;
+    public static final byte UNARY_OP = 21;
+    public static final byte LITERAL = 22;
+    public static final byte IDENTIFIER = 23;
+    public static final byte METHOD_CALL = 24;
+    public static final byte MEMBER_ACCESS = 25;
+
+    /**
+     * Index of the program node every arena starts with
+     */
+    public static final int ROOT = 0;
+
+    private static final int NONE = -1;
+
+    // ==================== STORAGE ====================
+
+    private byte[] kinds;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] lines;
+    private int[] columns;
+    private int[] names;
+    private int[] types;
+    private int[] extras;
+    private int size;
+
+    // Variable-length attributes, addressed by extras
+    private int[] data = new int[64];
+    private int dataSize;
+
+    private String[] strings = new String[64];
+    private int stringCount;
+
+    // Building state, released by finish
+    private int[] lastChild;
+    private Map<String, Integer> stringIds = new HashMap<>();
+    private Encoder encoder = new Encoder();
+
+    public FlatAst() {
+        this(256);
+    }
+
+    public FlatAst(int expectedNodes) {
+        int capacity = Math.max(16, expectedNodes);
+        kinds = new byte[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+        names = new int[capacity];
+        types = new int[capacity];
+        extras = new int[capacity];
+        lastChild = new int[capacity];
+        newNode(PROGRAM, 0, 0, NONE, NONE, 0);
+    }
+
+    /**
+     * Encode a whole tree
+     */
+    public static FlatAst encode(ProgrameNode program) {
+        FlatAst ast = new FlatAst();
+        for (ASTNode classNode : program.getClasses()) {
+            ast.append(ROOT, classNode);
+        }
+        return ast.finish();
+    }
+
+    // ==================== BUILDING ====================
+
+    /**
+     * Append a subtree as the last child of parent and return the index of its root
+     * The subtree's objects are not referenced afterwards.
+     */
+    public int append(int parent, ASTNode node) {
+        if (lastChild == null) {
+            throw new IllegalStateException("Cannot append to a finished FlatAst");
+        }
+        Encoder encoder = this.encoder;
+        int base = encoder.pendingSize;
+        encoder.push(node, parent);
+        int root = size;
+        while (encoder.pendingSize > base) {
+            int top = --encoder.pendingSize;
+            ASTNode next = encoder.pendingNodes[top];
+            int nextParent = encoder.pendingParents[top];
+            encoder.pendingNodes[top] = null;
+
+            int index = encoder.encode(next);
+            link(nextParent, index);
+            List<ASTNode> children = encoder.children;
+            for (int i = children.size() - 1; i >= 0; i--) {
+                encoder.push(children.get(i), index);
+            }
+            children.clear();
+        }
+        return root;
+    }
+
+    /**
+     * Stop appending: trim the arrays to size and drop the building state
+     */
+    public FlatAst finish() {
+        if (lastChild != null) {
+            kinds = Arrays.copyOf(kinds, size);
+            firstChild = Arrays.copyOf(firstChild, size);
+            nextSibling = Arrays.copyOf(nextSibling, size);
+            lines = Arrays.copyOf(lines, size);
+            columns = Arrays.copyOf(columns, size);
+            names = Arrays.copyOf(names, size);
+            types = Arrays.copyOf(types, size);
+            extras = Arrays.copyOf(extras, size);
+            data = Arrays.copyOf(data, dataSize);
+            strings = Arrays.copyOf(strings, stringCount);
+            lastChild = null;
+            stringIds = null;
+            encoder = null;
+        }
+        return this;
+    }
+
+    private int newNode(byte kind, int line, int column, int name, int type, int extra) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            names = Arrays.copyOf(names, capacity);
+            types = Arrays.copyOf(types, capacity);
+            extras = Arrays.copyOf(extras, capacity);
+            lastChild = Arrays.copyOf(lastChild, capacity);
+        }
+        int index = size++;
+        kinds[index] = kind;
+        firstChild[index] = NONE;
+        nextSibling[index] = NONE;
+        lastChild[index] = NONE;
+        lines[index] = line;
+        columns[index] = column;
+        names[index] = name;
+        types[index] = type;
+        extras[index] = extra;
+        return index;
+    }
+
+    private void link(int parent, int child) {
+        int previous = lastChild[parent];
+        if (previous == NONE) {
+            firstChild[parent] = child;
+        } else {
+            nextSibling[previous] = child;
+        }
+        lastChild[parent] = child;
+    }
+
+    private int string(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount * 2);
+            }
+            id = stringCount;
+            strings[stringCount++] = value;
+            stringIds.put(value, id);
+        }
+        return id;
+    }
+
+    /**
+     * Reserve count ints of data and return their offset
+     */
+    private int reserve(int count) {
+        if (dataSize + count > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, dataSize + count));
+        }
+        int offset = dataSize;
+        dataSize += count;
+        return offset;
+    }
+
+    /**
+     * Encodes one node at a time, leaving its children (null for a missing one) in children
+     */
+    private final class Encoder implements ASTVisitor<Integer> {
+        final List<ASTNode> children = new ArrayList<>();
+
+        // Nodes waiting to be encoded, with the index of their parent
+        ASTNode[] pendingNodes = new ASTNode[64];
+        int[] pendingParents = new int[64];
+        int pendingSize;
+
+        void push(ASTNode node, int parent) {
+            if (pendingSize == pendingNodes.length) {
+                pendingNodes = Arrays.copyOf(pendingNodes, pendingSize * 2);
+                pendingParents = Arrays.copyOf(pendingParents, pendingSize * 2);
+            }
+            pendingNodes[pendingSize] = node;
+            pendingParents[pendingSize] = parent;
+            pendingSize++;
+        }
+
+        int encode(ASTNode node) {
+            return node != null ? node.accept(this) : newNode(EMPTY, 0, 0, NONE, NONE, 0);
+        }
+
+        private int node(byte kind, ASTNode node, String name, String type, int extra) {
+            return newNode(kind, node.getLine(), node.getColumn(), string(name), string(type), extra);
+        }
+
+        public Integer visitProgram(ProgrameNode node) {
+            throw new IllegalArgumentException("A program can only be the root of a FlatAst");
+        }
+
+        public Integer visitClass(ClassNode node) {
+            children.addAll(node.getMembers());
+            return node(CLASS, node, node.getName(), node.getModifiers(), 0);
+        }
+
+        public Integer visitMethod(MethodNode node) {
+            children.addAll(node.getParameters());
+            children.addAll(node.getStatements());
+            int offset = reserve(2);
+            data[offset] = string(node.getModifiers());
+            data[offset + 1] = node.getParameters().size();
+            return node(METHOD, node, node.getName(), node.getReturnType(), offset);
+        }
+
+        public Integer visitParameter(ParameterNode node) {
+            return node(PARAMETER, node, node.getName(), node.getType(), node.isArray() ? 1 : 0);
+        }
+
+        public Integer visitField(FieldNode node) {
+            int offset = reserve(2);
+            data[offset] = string(node.getModifiers());
+            data[offset + 1] = node.isArray() ? 1 : 0;
+            return node(FIELD, node, node.getName(), node.getType(), offset);
+        }
+
+        public Integer visitVariableDeclaration(VariableDeclarationNode node) {
+            children.add(node.getInitializer());
+            return node(VARIABLE, node, node.getName(), node.getType(),
+                    (node.isArray() ? 1 : 0) | (node.isFinal() ? 2 : 0));
+        }
+
+        public Integer visitAssignment(AssignmentNode node) {
+            children.add(node.getExpression());
+            return node(ASSIGNMENT, node, node.getVariableName(), null, 0);
+        }
+
+        public Integer visitIf(IfNode node) {
+            children.add(node.getCondition());
+            children.add(node.getThenStatement());
+            children.add(node.getElseStatement());
+            return node(IF, node, null, null, 0);
+        }
+
+        public Integer visitWhile(WhileNode node) {
+            children.add(node.getCondition());
+            children.add(node.getBody());
+            return node(WHILE, node, null, null, 0);
+        }
+
+        public Integer visitDoWhile(DoWhileNode node) {
+            children.add(node.getCondition());
+            children.add(node.getBody());
+            return node(DO_WHILE, node, null, null, 0);
+        }
+
+        public Integer visitFor(ForNode node) {
+            children.add(node.getInit());
+            children.add(node.getCondition());
+            children.add(node.getUpdate());
+            children.add(node.getBody());
+            return node(FOR, node, null, null, 0);
+        }
+
+        public Integer visitSwitch(SwitchNode node) {
+            children.add(node.getExpression());
+            children.addAll(node.getCases());
+            children.add(node.getDefaultCase());
+            return node(SWITCH, node, null, null, 0);
+        }
+
+        public Integer visitCase(CaseNode node) {
+            children.add(node.getValue());
+            children.addAll(node.getStatements());
+            return node(CASE, node, null, null, 0);
+        }
+
+        public Integer visitDefaultCase(DefaultCaseNode node) {
+            children.addAll(node.getStatements());
+            return node(DEFAULT_CASE, node, null, null, 0);
+        }
+
+        public Integer visitReturn(ReturnNode node) {
+            children.add(node.getExpression());
+            return node(RETURN, node, null, null, 0);
+        }
+
+        public Integer visitBreak(BreakNode node) {
+            return node(BREAK, node, null, null, 0);
+        }
+
+        public Integer visitContinue(ContinueNode node) {
+            return node(CONTINUE, node, null, null, 0);
+        }
+
+        public Integer visitBlock(BlockNode node) {
+            children.addAll(node.getStatements());
+            return node(BLOCK, node, null, null, 0);
+        }
+
+        public Integer visitBinaryOp(BinaryOpNode node) {
+            children.add(node.getLeft());
+            children.add(node.getRight());
+            return node(BINARY_OP, node, node.getOperator(), null, 0);
+        }
+
+        public Integer visitNaryOp(NaryOpNode node) {
+            List<ASTNode> operands = node.getOperands();
+            children.addAll(operands);
+            int offset = reserve(2 * (operands.size() - 2));
+            for (int i = 1; i < operands.size() - 1; i++) {
+                data[offset + 2 * (i - 1)] = node.getOperatorLine(i);
+                data[offset + 2 * (i - 1) + 1] = node.getOperatorColumn(i);
+            }
+            return node(NARY_OP, node, node.getOperator(), null, offset);
+        }
+
+        public Integer visitUnaryOp(UnaryOpNode node) {
+            children.add(node.getOperand());
+            return node(UNARY_OP, node, node.getOperator(), null, node.isPrefix() ? 1 : 0);
+        }
+
+        public Integer visitLiteral(LiteralNode node) {
+            return node(LITERAL, node, node.getValue(), node.getType(), 0);
+        }
+
+        public Integer visitIdentifier(IdentifierNode node) {
+            return node(IDENTIFIER, node, node.getName(), null, 0);
+        }
+
+        public Integer visitMethodCall(MethodCallNode node) {
+            children.addAll(node.getArguments());
+            return node(METHOD_CALL, node, node.getMethodName(), null, 0);
+        }
+
+        public Integer visitMemberAccess(MemberAccessNode node) {
+            children.add(node.getMethodCall());
+            List<String> members = node.getMembers();
+            int offset = reserve(members.size() + 1);
+            data[offset] = members.size();
+            for (int i = 0; i < members.size(); i++) {
+                data[offset + 1 + i] = string(members.get(i));
+            }
+            return node(MEMBER_ACCESS, node, null, null, offset);
+        }
+    }
+
+    // ==================== ACCESS BY INDEX ====================
+
+    /**
+     * Number of nodes, including EMPTY placeholders
+     */
+    public int size() {
+        return size;
+    }
+
+    public byte kind(int node) {
+        return kinds[node];
+    }
+
+    public int line(int node) {
+        return lines[node];
+    }
+
+    public int column(int node) {
+        return columns[node];
+    }
+
+    /**
+     * First child of node, or -1 for a leaf
+     */
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    /**
+     * Next child of node's parent, or -1 for the last one
+     */
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * Name, operator, literal value or assigned variable, depending on the kind
+     */
+    public String name(int node) {
+        return stringAt(names[node]);
+    }
+
+    /**
+     * Declared type, return type, literal type or class modifiers, depending on the kind
+     */
+    public String type(int node) {
+        return stringAt(types[node]);
+    }
+
+    public String modifiers(int node) {
+        switch (kinds[node]) {
+            case CLASS:
+                return type(node);
+            case METHOD:
+            case FIELD:
+                return stringAt(data[extras[node]]);
+            default:
+                return null;
+        }
+    }
+
+    public boolean isArray(int node) {
+        switch (kinds[node]) {
+            case PARAMETER:
+            case VARIABLE:
+                return (extras[node] & 1) != 0;
+            case FIELD:
+                return data[extras[node] + 1] != 0;
+            default:
+                return false;
+        }
+    }
+
+    public boolean isFinal(int node) {
+        return kinds[node] == VARIABLE && (extras[node] & 2) != 0;
+    }
+
+    /**
+     * Number of parameters of a method; its children are the parameters, then the statements
+     */
+    public int parameterCount(int method) {
+        return kinds[method] == METHOD ? data[extras[method] + 1] : 0;
+    }
+
+    public boolean isPrefix(int unaryOp) {
+        return kinds[unaryOp] == UNARY_OP && extras[unaryOp] != 0;
+    }
+
+    /**
+     * Line of operator k of an n-ary operator, which sits between operands k and k + 1
+     */
+    public int operatorLine(int naryOp, int k) {
+        return k == 0 ? lines[naryOp] : data[extras[naryOp] + 2 * (k - 1)];
+    }
+
+    public int operatorColumn(int naryOp, int k) {
+        return k == 0 ? columns[naryOp] : data[extras[naryOp] + 2 * (k - 1) + 1];
+    }
+
+    /**
+     * Names of a member access, such as System, out and println
+     */
+    public List<String> members(int memberAccess) {
+        List<String> members = new ArrayList<>();
+        if (kinds[memberAccess] == MEMBER_ACCESS) {
+            int offset = extras[memberAccess];
+            for (int m = 1; m <= data[offset]; m++) {
+                members.add(strings[data[offset + m]]);
+            }
+        }
+        return members;
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * One past the last index of node's subtree
+     */
+    public int subtreeEnd(int node) {
+        int last = node;
+        int child = firstChild[last];
+        while (child != NONE) {
+            while (nextSibling[child] != NONE) {
+                child = nextSibling[child];
+            }
+            last = child;
+            child = firstChild[last];
+        }
+        return last + 1;
+    }
+
+    private String stringAt(int id) {
+        return id != NONE ? strings[id] : null;
+    }
+
+    /**
+     * Approximate bytes held by the arrays of this arena, not counting the pooled strings' characters
+     */
+    public long footprintBytes() {
+        long slots = (long) firstChild.length * 7 + data.length;
+        return kinds.length + slots * 4 + (long) strings.length * 4;
+    }
+
+    // ==================== CURSOR ====================
+
+    public Cursor cursor() {
+        return new Cursor(ROOT);
+    }
+
+    public Cursor cursor(int node) {
+        return new Cursor(node);
+    }
+
+    /**
+     * Position in the arena that moves between parent, children and siblings
+     * Remembers the path it descended, so it can return to the parent without a parent array.
+     */
+    public final class Cursor {
+        private int node;
+        private int[] path = new int[16];
+        private int depth;
+
+        private Cursor(int node) {
+            this.node = node;
+        }
+
+        public int node() {
+            return node;
+        }
+
+        public byte kind() {
+            return kinds[node];
+        }
+
+        public int line() {
+            return lines[node];
+        }
+
+        public int column() {
+            return columns[node];
+        }
+
+        public String name() {
+            return FlatAst.this.name(node);
+        }
+
+        public String type() {
+            return FlatAst.this.type(node);
+        }
+
+        /**
+         * Move to the first child; false, without moving, for a leaf
+         */
+        public boolean toFirstChild() {
+            int child = firstChild[node];
+            if (child == NONE) {
+                return false;
+            }
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth++] = node;
+            node = child;
+            return true;
+        }
+
+        /**
+         * Move to the next sibling; false, without moving, for the last child
+         */
+        public boolean toNextSibling() {
+            int sibling = nextSibling[node];
+            if (sibling == NONE) {
+                return false;
+            }
+            node = sibling;
+            return true;
+        }
+
+        /**
+         * Move back to the node this cursor descended from; false at the node it started at
+         */
+        public boolean toParent() {
+            if (depth == 0) {
+                return false;
+            }
+            node = path[--depth];
+            return true;
+        }
+    }
+
+    // ==================== MATERIALIZING ====================
+
+    /**
+     * The whole program as ASTNode objects
+     */
+    public ProgrameNode toTree() {
+        return (ProgrameNode) materialize(ROOT);
+    }
+
+    /**
+     * The subtree at node as ASTNode objects, or null for an EMPTY node
+     * Children have higher indices than their parent, so the subtree is built
+     * from its last index to its first without recursion.
+     */
+    public ASTNode materialize(int node) {
+        int end = subtreeEnd(node);
+        ASTNode[] built = new ASTNode[end - node];
+        for (int i = end - 1; i >= node; i--) {
+            built[i - node] = build(i, built, node);
+        }
+        return built[0];
+    }
+
+    /**
+     * A method with its parameters but no statements, for walking a program's outline
+     */
+    public MethodNode materializeHeader(int method) {
+        MethodNode header = new MethodNode(modifiers(method), type(method), name(method),
+                lines[method], columns[method]);
+        List<ASTNode> parameters = new ArrayList<>();
+        int child = firstChild[method];
+        for (int i = parameterCount(method); i > 0; i--) {
+            parameters.add(materialize(child));
+            child = nextSibling[child];
+        }
+        header.setParameter(parameters);
+        return header;
+    }
+
+    /**
+     * The statements of a method body as ASTNode objects
+     */
+    public List<ASTNode> materializeStatements(int method) {
+        List<ASTNode> statements = new ArrayList<>();
+        int child = firstChild[method];
+        for (int i = parameterCount(method); i > 0; i--) {
+            child = nextSibling[child];
+        }
+        for (; child != NONE; child = nextSibling[child]) {
+            statements.add(materialize(child));
+        }
+        return statements;
+    }
+
+    /**
+     * Build node i from its children, which are already in built at their index minus base
+     */
+    private ASTNode build(int i, ASTNode[] built, int base) {
+        int line = lines[i];
+        int column = columns[i];
+        int child = firstChild[i];
+        switch (kinds[i]) {
+            case EMPTY:
+                return null;
+            case PROGRAM: {
+                ProgrameNode program = new ProgrameNode();
+                for (; child != NONE; child = nextSibling[child]) {
+                    program.addClass(built[child - base]);
+                }
+                return program;
+            }
+            case CLASS: {
+                ClassNode classNode = new ClassNode(name(i), type(i), line, column);
+                for (; child != NONE; child = nextSibling[child]) {
+                    classNode.addMember(built[child - base]);
+                }
+                return classNode;
+            }
+            case METHOD: {
+                MethodNode method = new MethodNode(modifiers(i), type(i), name(i), line, column);
+                List<ASTNode> parameters = new ArrayList<>();
+                for (int p = parameterCount(i); p > 0; p--) {
+                    parameters.add(built[child - base]);
+                    child = nextSibling[child];
+                }
+                method.setParameter(parameters);
+                method.setStatement(childList(child, built, base));
+                return method;
+            }
+            case PARAMETER:
+                return new ParameterNode(type(i), name(i), isArray(i), line, column);
+            case FIELD:
+                return new FieldNode(modifiers(i), type(i), name(i), isArray(i), line, column);
+            case VARIABLE:
+                return new VariableDeclarationNode(type(i), name(i), isArray(i), isFinal(i), built[child - base],
+                        line, column);
+            case ASSIGNMENT:
+                return new AssignmentNode(name(i), built[child - base], line, column);
+            case IF: {
+                int then = nextSibling[child];
+                return new IfNode(built[child - base], built[then - base], built[nextSibling[then] - base],
+                        line, column);
+            }
+            case WHILE:
+                return new WhileNode(built[child - base], built[nextSibling[child] - base], line, column);
+            case DO_WHILE:
+                return new DoWhileNode(built[child - base], built[nextSibling[child] - base], line, column);
+            case FOR: {
+                int condition = nextSibling[child];
+                int update = nextSibling[condition];
+                return new ForNode(built[child - base], built[condition - base], built[update - base],
+                        built[nextSibling[update] - base], line, column);
+            }
+            case SWITCH: {
+                SwitchNode switchNode = new SwitchNode(built[child - base], line, column);
+                child = nextSibling[child];
+                // The default case, possibly EMPTY, is always the last child
+                for (; nextSibling[child] != NONE; child = nextSibling[child]) {
+                    switchNode.addCase(built[child - base]);
+                }
+                switchNode.setDefaultCase(built[child - base]);
+                return switchNode;
+            }
+            case CASE: {
+                CaseNode caseNode = new CaseNode(built[child - base], line, column);
+                for (child = nextSibling[child]; child != NONE; child = nextSibling[child]) {
+                    caseNode.addStatement(built[child - base]);
+                }
+                return caseNode;
+            }
+            case DEFAULT_CASE: {
+                DefaultCaseNode defaultCase = new DefaultCaseNode(line, column);
+                for (; child != NONE; child = nextSibling[child]) {
+                    defaultCase.addStatement(built[child - base]);
+                }
+                return defaultCase;
+            }
+            case RETURN:
+                return new ReturnNode(built[child - base], line, column);
+            case BREAK:
+                return new BreakNode(line, column);
+            case CONTINUE:
+                return new ContinueNode(line, column);
+            case BLOCK:
+                return new BlockNode(childList(child, built, base), line, column);
+            case BINARY_OP:
+                return new BinaryOpNode(name(i), built[child - base], built[nextSibling[child] - base], line, column);
+            case NARY_OP: {
+                int second = nextSibling[child];
+                NaryOpNode run = new NaryOpNode(name(i), built[child - base], built[second - base], line, column);
+                int offset = extras[i];
+                for (child = nextSibling[second]; child != NONE; child = nextSibling[child]) {
+                    run.addOperand(built[child - base], data[offset], data[offset + 1]);
+                    offset += 2;
+                }
+                return run;
+            }
+            case UNARY_OP:
+                return new UnaryOpNode(name(i), built[child - base], extras[i] != 0, line, column);
+            case LITERAL:
+                return new LiteralNode(type(i), name(i), line, column);
+            case IDENTIFIER:
+                return new IdentifierNode(name(i), line, column);
+            case METHOD_CALL: {
+                MethodCallNode call = new MethodCallNode(name(i), line, column);
+                call.setArguments(childList(child, built, base));
+                return call;
+            }
+            case MEMBER_ACCESS: {
+                MemberAccessNode access = new MemberAccessNode(line, column);
+                int offset = extras[i];
+                for (int m = 1; m <= data[offset]; m++) {
+                    access.addMember(strings[data[offset + m]]);
+                }
+                access.setMethodCall(built[child - base]);
+                return access;
+            }
+            default:
+                throw new IllegalStateException("Unknown node kind " + kinds[i] + " at index " + i);
+        }
+    }
+
+    /**
+     * The built nodes from child to the last of its siblings
+     */
+    private List<ASTNode> childList(int child, ASTNode[] built, int base) {
+        List<ASTNode> list = new ArrayList<>();
+        for (; child != NONE; child = nextSibling[child]) {
+            list.add(built[child - base]);
+        }
+        return list;
+    }
+}
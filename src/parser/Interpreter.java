@@ -0,0 +1,967 @@
+package parser;
+
+import java.util.*;
+
+/**
+ * Executes a checked program by walking its AST
+ * Loading the program resolves every name once: each local and parameter gets
+ * a slot in its method's frame, each field an index into one array of fields,
+ * and each call the method it reaches, all kept in the nodes' slot. Running it
+ * then reads and writes plain arrays, with no map lookup per variable access,
+ * and each node is executed through one visitor call for its kind.
+ *
+ * Values are Integer, Long, Float, Double, Character, Boolean and String, with
+ * Java's promotions and conversions. Fields and methods are all treated as
+ * static, one copy per class. Calls reach the program's own methods and
+ * System.out.print and println, which write to a buffered OutputRenderer.
+ * Errors at run time are reported as "runtime error!" like a division by zero
+ * found while checking. A tree is loaded by one interpreter at a time.
+ */
+public class Interpreter {
+
+    // Slot of a node whose name did not resolve; executing it is an error
+    private static final int UNRESOLVED = Integer.MIN_VALUE;
+
+    // Slots of calls to the built-in output methods
+    private static final int PRINTLN = -1;
+    private static final int PRINT = -2;
+
+    // Operator codes, kept in the slot of operator nodes
+    private static final int ADD = 0;
+    private static final int SUB = 1;
+    private static final int MUL = 2;
+    private static final int DIV = 3;
+    private static final int REM = 4;
+    private static final int EQ = 5;
+    private static final int NE = 6;
+    private static final int LT = 7;
+    private static final int LE = 8;
+    private static final int GT = 9;
+    private static final int GE = 10;
+    private static final int AND = 11;
+    private static final int OR = 12;
+    private static final int NOT = 13;
+    private static final int NEG = 14;
+    private static final int INC = 15;
+    private static final int DEC = 16;
+
+    /**
+     * What a statement did besides completing normally
+     */
+    private static final class Signal {
+    }
+
+    private static final Signal BREAK = new Signal();
+    private static final Signal CONTINUE = new Signal();
+    private static final Signal RETURN = new Signal();
+
+    /**
+     * A method of the program, with the layout of its frame
+     * Parameters take the first slots, then each local declaration gets its own slot.
+     */
+    private static final class Function {
+        final MethodNode method;
+        final int parameterCount;
+        int[] slotTypes = new int[8]; // type id per slot, UNKNOWN for arrays
+        int frameSize;
+
+        Function(MethodNode method) {
+            this.method = method;
+            this.parameterCount = method.getParameters().size();
+        }
+
+        int allocate(int type) {
+            if (frameSize == slotTypes.length) {
+                slotTypes = Arrays.copyOf(slotTypes, frameSize * 2);
+            }
+            slotTypes[frameSize] = type;
+            return frameSize++;
+        }
+    }
+
+    private final OutputRenderer out;
+    private final Executor executor = new Executor();
+
+    private final List<Function> functions = new ArrayList<>();
+    private Function main;
+
+    // Every class's fields, in one array
+    private Object[] fields;
+    private int[] fieldTypes;
+
+    // Frame of the method being executed, and what its last return statement returned
+    private Function current;
+    private Object[] frame;
+    private Object returnValue;
+
+    // Statement being executed, for errors that have no node of their own
+    private ASTNode statement;
+
+    // Statements a run may execute, and how many it has left
+    private long maxSteps = Long.MAX_VALUE;
+    private long stepsLeft;
+
+    /**
+     * Load a program, writing what it prints to out
+     */
+    public Interpreter(ProgrameNode program, OutputRenderer out) {
+        this.out = out;
+        new Resolver().load(program);
+    }
+
+    /**
+     * Stop a run with a runtime error once it has executed this many statements
+     * Loop bodies count once per iteration, so a program that never ends is stopped too.
+     */
+    public void setMaxSteps(long maxSteps) {
+        if (maxSteps < 1) {
+            throw new IllegalArgumentException("Step limit must be at least 1, got " + maxSteps);
+        }
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Run the program's main method, with every field starting from its default value
+     * Throws RuntimeException with a "runtime error!" message if the program fails.
+     */
+    public void run() {
+        if (main == null) {
+            throw new RuntimeException("runtime error! No main method to run");
+        }
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = defaultValue(fieldTypes[i]);
+        }
+        stepsLeft = maxSteps;
+        try {
+            Object[] arguments = new Object[main.frameSize];
+            if (main.parameterCount == 1) {
+                arguments[0] = new String[0];
+            }
+            call(main, arguments);
+        } catch (StackOverflowError e) {
+            throw error(statement, "Stack overflow, calls or statements nest too deeply");
+        } finally {
+            current = null;
+            frame = null;
+            returnValue = null;
+        }
+    }
+
+    private Object call(Function function, Object[] arguments) {
+        Function caller = current;
+        Object[] callerFrame = frame;
+        current = function;
+        frame = arguments;
+        try {
+            Object signal = executeAll(function.method.getStatements());
+            Object value = signal == RETURN ? returnValue : null;
+            returnValue = null;
+            return value;
+        } finally {
+            current = caller;
+            frame = callerFrame;
+        }
+    }
+
+    private Object executeAll(List<ASTNode> statements) {
+        for (int i = 0, n = statements.size(); i < n; i++) {
+            ASTNode stmt = statements.get(i);
+            step(stmt);
+            Object result = stmt.accept(executor);
+            if (result instanceof Signal) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private Object execute(ASTNode stmt) {
+        if (stmt == null) {
+            return null;
+        }
+        step(stmt);
+        Object result = stmt.accept(executor);
+        return result instanceof Signal ? result : null;
+    }
+
+    private void step(ASTNode stmt) {
+        statement = stmt;
+        if (--stepsLeft < 0) {
+            throw error(stmt, "Step limit of " + maxSteps + " statements reached");
+        }
+    }
+
+    /**
+     * value as a condition; the checker makes it a boolean, but a local may never have been assigned
+     */
+    private static boolean truth(ASTNode at, Object value) {
+        if (!(value instanceof Boolean)) {
+            throw error(at, "Condition without a value");
+        }
+        return (Boolean) value;
+    }
+
+    private static RuntimeException error(ASTNode at, String message) {
+        if (at == null) {
+            return new RuntimeException("runtime error! " + message);
+        }
+        return new RuntimeException("runtime error! at line " + at.getLine() + ", column " + at.getColumn()
+                + " . " + message);
+    }
+
+    // ==================== EXECUTION ====================
+
+    /**
+     * Executes statements, returning a Signal or null, and evaluates expressions to their value
+     */
+    private class Executor extends ASTDefaultVisitor<Object> {
+
+        @Override
+        protected Object defaultVisit(ASTNode node) {
+            throw error(node, "Cannot execute " + node.getClass().getSimpleName());
+        }
+
+        // Operators whose left operand evalChain is evaluating, innermost last
+        private ASTNode[] chain = new ASTNode[16];
+        private int chainSize;
+
+        private Object eval(ASTNode node) {
+            return node.accept(this);
+        }
+
+        private boolean test(ASTNode condition) {
+            return condition == null || truth(condition, condition.accept(this));
+        }
+
+        // ---------- statements ----------
+
+        @Override
+        public Object visitVariableDeclaration(VariableDeclarationNode node) {
+            int type = current.slotTypes[node.slot];
+            ASTNode initializer = node.getInitializer();
+            frame[node.slot] = initializer != null ? convert(eval(initializer), type) : defaultValue(type);
+            return null;
+        }
+
+        @Override
+        public Object visitAssignment(AssignmentNode node) {
+            store(node, node.slot, eval(node.getExpression()));
+            return null;
+        }
+
+        @Override
+        public Object visitIf(IfNode node) {
+            return execute(test(node.getCondition()) ? node.getThenStatement() : node.getElseStatement());
+        }
+
+        @Override
+        public Object visitWhile(WhileNode node) {
+            while (test(node.getCondition())) {
+                Object signal = execute(node.getBody());
+                if (signal == BREAK) {
+                    break;
+                }
+                if (signal == RETURN) {
+                    return signal;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Object visitDoWhile(DoWhileNode node) {
+            do {
+                Object signal = execute(node.getBody());
+                if (signal == BREAK) {
+                    break;
+                }
+                if (signal == RETURN) {
+                    return signal;
+                }
+            } while (test(node.getCondition()));
+            return null;
+        }
+
+        @Override
+        public Object visitFor(ForNode node) {
+            if (node.getInit() != null) {
+                eval(node.getInit());
+            }
+            for (; test(node.getCondition()); ) {
+                Object signal = execute(node.getBody());
+                if (signal == BREAK) {
+                    break;
+                }
+                if (signal == RETURN) {
+                    return signal;
+                }
+                if (node.getUpdate() != null) {
+                    eval(node.getUpdate());
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Run the statements from the matching case on, falling through to later
+         * cases and the default until a break
+         */
+        @Override
+        public Object visitSwitch(SwitchNode node) {
+            Object value = eval(node.getExpression());
+            List<ASTNode> cases = node.getCases();
+            int start = cases.size();
+            for (int i = 0; i < cases.size(); i++) {
+                if (matches(value, eval(((CaseNode) cases.get(i)).getValue()))) {
+                    start = i;
+                    break;
+                }
+            }
+            DefaultCaseNode defaultCase = (DefaultCaseNode) node.getDefaultCase();
+            if (start == cases.size() && defaultCase == null) {
+                return null;
+            }
+            Object signal = null;
+            for (int i = start; i < cases.size() && signal == null; i++) {
+                signal = executeAll(((CaseNode) cases.get(i)).getStatements());
+            }
+            if (signal == null && defaultCase != null) {
+                signal = executeAll(defaultCase.getStatements());
+            }
+            return signal == BREAK ? null : signal;
+        }
+
+        @Override
+        public Object visitReturn(ReturnNode node) {
+            ASTNode expression = node.getExpression();
+            returnValue = expression != null ? convert(eval(expression), current.method.getReturnTypeId()) : null;
+            return RETURN;
+        }
+
+        @Override
+        public Object visitBreak(BreakNode node) {
+            return BREAK;
+        }
+
+        @Override
+        public Object visitContinue(ContinueNode node) {
+            return CONTINUE;
+        }
+
+        @Override
+        public Object visitBlock(BlockNode node) {
+            return executeAll(node.getStatements());
+        }
+
+        // ---------- expressions ----------
+
+        @Override
+        public Object visitLiteral(LiteralNode node) {
+            Object value = node.getConstant();
+            if (value == null) {
+                throw error(node, "Literal " + node.getValue() + " is out of range");
+            }
+            return value;
+        }
+
+        @Override
+        public Object visitIdentifier(IdentifierNode node) {
+            return load(node, node.slot);
+        }
+
+        @Override
+        public Object visitBinaryOp(BinaryOpNode node) {
+            return evalChain(node);
+        }
+
+        @Override
+        public Object visitNaryOp(NaryOpNode node) {
+            return evalChain(node);
+        }
+
+        /**
+         * Evaluate an operator and the operators down its left operands in a loop
+         * A chain like a - b - c nests on the left, so evaluating it by recursion
+         * would take one stack frame per operator; here only right operands recurse.
+         */
+        private Object evalChain(ASTNode node) {
+            int base = chainSize;
+            try {
+                while (node instanceof BinaryOpNode || node instanceof NaryOpNode) {
+                    if (chainSize == chain.length) {
+                        chain = Arrays.copyOf(chain, chainSize * 2);
+                    }
+                    chain[chainSize++] = node;
+                    node = node instanceof BinaryOpNode
+                            ? ((BinaryOpNode) node).getLeft() : ((NaryOpNode) node).getOperands().get(0);
+                }
+                Object value = eval(node);
+                while (chainSize > base) {
+                    ASTNode operator = chain[--chainSize];
+                    chain[chainSize] = null;
+                    if (operator instanceof BinaryOpNode) {
+                        value = applyRight(operator, operator.slot, value, ((BinaryOpNode) operator).getRight());
+                    } else {
+                        List<ASTNode> operands = ((NaryOpNode) operator).getOperands();
+                        for (int i = 1, n = operands.size(); i < n; i++) {
+                            value = applyRight(operator, operator.slot, value, operands.get(i));
+                        }
+                    }
+                }
+                return value;
+            } finally {
+                Arrays.fill(chain, base, chainSize, null);
+                chainSize = base;
+            }
+        }
+
+        /**
+         * left op right, evaluating right only if && and || need it
+         */
+        private Object applyRight(ASTNode at, int op, Object left, ASTNode right) {
+            if (op == AND) {
+                return truth(at, left) && truth(right, eval(right));
+            }
+            if (op == OR) {
+                return truth(at, left) || truth(right, eval(right));
+            }
+            return binary(at, op, left, eval(right));
+        }
+
+        @Override
+        public Object visitUnaryOp(UnaryOpNode node) {
+            switch (node.slot) {
+                case NOT:
+                    return !truth(node, eval(node.getOperand()));
+                case NEG: {
+                    Object value = eval(node.getOperand());
+                    switch (kind(value)) {
+                        case TypeIds.INT:
+                            return -intValue(value);
+                        case TypeIds.LONG:
+                            return -(Long) value;
+                        case TypeIds.FLOAT:
+                            return -(Float) value;
+                        case TypeIds.DOUBLE:
+                            return -(Double) value;
+                        default:
+                            throw error(node, "Bad operand for '-'");
+                    }
+                }
+                default: {
+                    // ++ and -- on a variable, converted back to the variable's type
+                    int slot = node.getOperand().slot;
+                    Object old = load(node.getOperand(), slot);
+                    Object updated = store(node, slot, binary(node, node.slot == INC ? ADD : SUB, old, 1));
+                    return node.isPrefix() ? updated : old;
+                }
+            }
+        }
+
+        @Override
+        public Object visitMethodCall(MethodCallNode node) {
+            return invoke(node);
+        }
+
+        @Override
+        public Object visitMemberAccess(MemberAccessNode node) {
+            if (node.getMethodCall() != null) {
+                return invoke((MethodCallNode) node.getMethodCall());
+            }
+            if (node.slot == UNRESOLVED) {
+                throw error(node, "Unsupported member access '" + String.join(".", node.getMembers()) + "'");
+            }
+            return fields[node.slot];
+        }
+
+        private Object invoke(MethodCallNode node) {
+            List<ASTNode> arguments = node.getArguments() != null ? node.getArguments() : Collections.<ASTNode>emptyList();
+            switch (node.slot) {
+                case PRINTLN:
+                    out.println(arguments.isEmpty() ? "" : String.valueOf(eval(arguments.get(0))));
+                    return null;
+                case PRINT:
+                    out.print(String.valueOf(eval(arguments.get(0))));
+                    return null;
+                case UNRESOLVED:
+                    throw error(node, "Unknown method '" + node.getMethodName() + "' with "
+                            + arguments.size() + " argument(s)");
+                default: {
+                    Function function = functions.get(node.slot);
+                    // Arguments are evaluated in the caller's frame, straight into the callee's slots
+                    Object[] callee = new Object[function.frameSize];
+                    for (int i = 0; i < function.parameterCount; i++) {
+                        callee[i] = convert(eval(arguments.get(i)), function.slotTypes[i]);
+                    }
+                    Object value = call(function, callee);
+                    statement = node;
+                    return value;
+                }
+            }
+        }
+    }
+
+    // ==================== VALUES ====================
+
+    /**
+     * A local (slot at least 0) or a field (slot below PRINT)
+     */
+    private Object load(ASTNode at, int slot) {
+        if (slot >= 0) {
+            return frame[slot];
+        }
+        if (slot == UNRESOLVED) {
+            throw error(at, "Unknown variable");
+        }
+        return fields[fieldIndex(slot)];
+    }
+
+    private Object store(ASTNode at, int slot, Object value) {
+        if (slot >= 0) {
+            return frame[slot] = convert(value, current.slotTypes[slot]);
+        }
+        if (slot == UNRESOLVED) {
+            throw error(at, "Unknown variable");
+        }
+        int index = fieldIndex(slot);
+        return fields[index] = convert(value, fieldTypes[index]);
+    }
+
+    // Fields are stored as PRINT - 1 - index, clear of the call slots
+    private static int fieldSlot(int index) {
+        return PRINT - 1 - index;
+    }
+
+    private static int fieldIndex(int slot) {
+        return PRINT - 1 - slot;
+    }
+
+    /**
+     * Numeric kind of a value after unary promotion: INT, LONG, FLOAT, DOUBLE, or UNKNOWN
+     */
+    private static int kind(Object value) {
+        if (value instanceof Integer || value instanceof Character || value instanceof Short || value instanceof Byte) {
+            return TypeIds.INT;
+        }
+        if (value instanceof Double) {
+            return TypeIds.DOUBLE;
+        }
+        if (value instanceof Long) {
+            return TypeIds.LONG;
+        }
+        if (value instanceof Float) {
+            return TypeIds.FLOAT;
+        }
+        return TypeIds.UNKNOWN;
+    }
+
+    private static int intValue(Object value) {
+        return value instanceof Character ? (Character) value : ((Number) value).intValue();
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Character ? (Character) value : ((Number) value).longValue();
+    }
+
+    private static double doubleValue(Object value) {
+        return value instanceof Character ? (Character) value : ((Number) value).doubleValue();
+    }
+
+    private static float floatValue(Object value) {
+        return value instanceof Character ? (Character) value : ((Number) value).floatValue();
+    }
+
+    /**
+     * a op b for an arithmetic, comparison or equality operator, with Java's promotions
+     */
+    private static Object binary(ASTNode at, int op, Object a, Object b) {
+        if (op == ADD && (a instanceof String || b instanceof String)) {
+            return String.valueOf(a) + b;
+        }
+        int ka = kind(a);
+        int kb = kind(b);
+        if (ka == TypeIds.UNKNOWN || kb == TypeIds.UNKNOWN) {
+            if (op == EQ || op == NE) {
+                // Booleans compare by value; strings by reference, as in Java
+                boolean same = a instanceof Boolean ? a.equals(b) : a == b;
+                return op == EQ ? same : !same;
+            }
+            throw error(at, "Bad operand types for this operator");
+        }
+        switch (Math.max(ka, kb)) {
+            case TypeIds.INT: {
+                int x = intValue(a);
+                int y = intValue(b);
+                switch (op) {
+                    case ADD: return x + y;
+                    case SUB: return x - y;
+                    case MUL: return x * y;
+                    case DIV: return x / nonZero(at, y);
+                    case REM: return x % nonZero(at, y);
+                    case EQ: return x == y;
+                    case NE: return x != y;
+                    case LT: return x < y;
+                    case LE: return x <= y;
+                    case GT: return x > y;
+                    default: return x >= y;
+                }
+            }
+            case TypeIds.LONG: {
+                long x = longValue(a);
+                long y = longValue(b);
+                switch (op) {
+                    case ADD: return x + y;
+                    case SUB: return x - y;
+                    case MUL: return x * y;
+                    case DIV: return x / nonZero(at, y);
+                    case REM: return x % nonZero(at, y);
+                    case EQ: return x == y;
+                    case NE: return x != y;
+                    case LT: return x < y;
+                    case LE: return x <= y;
+                    case GT: return x > y;
+                    default: return x >= y;
+                }
+            }
+            case TypeIds.FLOAT: {
+                float x = floatValue(a);
+                float y = floatValue(b);
+                switch (op) {
+                    case ADD: return x + y;
+                    case SUB: return x - y;
+                    case MUL: return x * y;
+                    case DIV: return x / y;
+                    case REM: return x % y;
+                    case EQ: return x == y;
+                    case NE: return x != y;
+                    case LT: return x < y;
+                    case LE: return x <= y;
+                    case GT: return x > y;
+                    default: return x >= y;
+                }
+            }
+            default: {
+                double x = doubleValue(a);
+                double y = doubleValue(b);
+                switch (op) {
+                    case ADD: return x + y;
+                    case SUB: return x - y;
+                    case MUL: return x * y;
+                    case DIV: return x / y;
+                    case REM: return x % y;
+                    case EQ: return x == y;
+                    case NE: return x != y;
+                    case LT: return x < y;
+                    case LE: return x <= y;
+                    case GT: return x > y;
+                    default: return x >= y;
+                }
+            }
+        }
+    }
+
+    private static int nonZero(ASTNode at, int divisor) {
+        if (divisor == 0) {
+            throw error(at, "Division/Modulo by zero");
+        }
+        return divisor;
+    }
+
+    private static long nonZero(ASTNode at, long divisor) {
+        if (divisor == 0) {
+            throw error(at, "Division/Modulo by zero");
+        }
+        return divisor;
+    }
+
+    /**
+     * A value converted for a variable of the given type, as assignment in Java converts it
+     */
+    private static Object convert(Object value, int type) {
+        if (kind(value) == TypeIds.UNKNOWN) {
+            return value;
+        }
+        switch (type) {
+            case TypeIds.INT:
+                return value instanceof Integer ? value : (Object) intValue(value);
+            case TypeIds.LONG:
+                return value instanceof Long ? value : (Object) longValue(value);
+            case TypeIds.FLOAT:
+                return value instanceof Float ? value : (Object) floatValue(value);
+            case TypeIds.DOUBLE:
+                return value instanceof Double ? value : (Object) doubleValue(value);
+            case TypeIds.CHAR:
+                return value instanceof Character ? value : (Object) (char) intValue(value);
+            case TypeIds.SHORT:
+                return (short) intValue(value);
+            case TypeIds.BYTE:
+                return (byte) intValue(value);
+            default:
+                return value;
+        }
+    }
+
+    private static Object defaultValue(int type) {
+        switch (type) {
+            case TypeIds.BYTE: return (byte) 0;
+            case TypeIds.SHORT: return (short) 0;
+            case TypeIds.CHAR: return '\0';
+            case TypeIds.INT: return 0;
+            case TypeIds.LONG: return 0L;
+            case TypeIds.FLOAT: return 0f;
+            case TypeIds.DOUBLE: return 0d;
+            case TypeIds.BOOLEAN: return Boolean.FALSE;
+            default: return null;
+        }
+    }
+
+    private static boolean matches(Object value, Object label) {
+        if (kind(value) != TypeIds.UNKNOWN && kind(label) != TypeIds.UNKNOWN) {
+            return longValue(value) == longValue(label);
+        }
+        return value != null && value.equals(label);
+    }
+
+    // ==================== LOADING ====================
+
+    /**
+     * Resolves names to slots, calls to methods and operators to codes, once per program
+     * Methods and fields of every class are collected first, so a body may use any of them.
+     */
+    private class Resolver extends ASTWalker {
+
+        // Per class: its fields by name and its methods by name and argument count
+        private final Map<String, Map<String, Integer>> fieldsByClass = new HashMap<>();
+        private final Map<String, Map<String, Integer>> methodsByClass = new HashMap<>();
+        private final List<Integer> types = new ArrayList<>();
+
+        // Locals visible in the method being resolved, with what each declaration hid
+        private final Map<String, Integer> locals = new HashMap<>();
+        private final ArrayDeque<Object[]> hidden = new ArrayDeque<>();
+        private final Object scopeEnd = new Object();
+        private Function function;
+        private String className;
+        private ASTNode qualifiedCall;
+
+        void load(ProgrameNode program) {
+            for (ASTNode classNode : program.getClasses()) {
+                collect((ClassNode) classNode);
+            }
+            fields = new Object[types.size()];
+            fieldTypes = new int[types.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fieldTypes[i] = types.get(i);
+            }
+            walk(program);
+        }
+
+        private void collect(ClassNode classNode) {
+            Map<String, Integer> classFields = new HashMap<>();
+            Map<String, Integer> classMethods = new HashMap<>();
+            fieldsByClass.put(classNode.getName(), classFields);
+            methodsByClass.put(classNode.getName(), classMethods);
+            for (ASTNode member : classNode.getMembers()) {
+                if (member instanceof FieldNode) {
+                    FieldNode field = (FieldNode) member;
+                    classFields.put(field.getName(), types.size());
+                    types.add(field.isArray() ? TypeIds.UNKNOWN : field.getTypeId());
+                } else if (member instanceof MethodNode) {
+                    MethodNode method = (MethodNode) member;
+                    String key = method.getName() + "/" + method.getParameters().size();
+                    if (!classMethods.containsKey(key)) {
+                        classMethods.put(key, functions.size());
+                        Function f = new Function(method);
+                        functions.add(f);
+                        if (main == null && method.getName().equals("main") && f.parameterCount <= 1) {
+                            main = f;
+                        }
+                    }
+                }
+            }
+        }
+
+        private int methodSlot(String className, String name, int argumentCount) {
+            Map<String, Integer> classMethods = methodsByClass.get(className);
+            Integer index = classMethods != null ? classMethods.get(name + "/" + argumentCount) : null;
+            return index != null ? index : UNRESOLVED;
+        }
+
+        private int variableSlot(String name) {
+            Integer slot = locals.get(name);
+            if (slot != null) {
+                return slot;
+            }
+            Integer field = fieldsByClass.get(className).get(name);
+            return field != null ? fieldSlot(field) : UNRESOLVED;
+        }
+
+        private void declare(String name, int slot) {
+            hidden.push(new Object[] { name, locals.put(name, slot) });
+        }
+
+        /**
+         * Open a scope that closes once node's children are resolved
+         */
+        private void openScope(ASTNode node) {
+            hidden.push(new Object[] { scopeEnd, null });
+            afterChildren(node, scopeEnd);
+        }
+
+        @Override
+        protected void leave(ASTNode node, Object token) {
+            if (token == scopeEnd) {
+                while (true) {
+                    Object[] entry = hidden.pop();
+                    if (entry[0] == scopeEnd) {
+                        break;
+                    }
+                    if (entry[1] != null) {
+                        locals.put((String) entry[0], (Integer) entry[1]);
+                    } else {
+                        locals.remove(entry[0]);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Void visitClass(ClassNode node) {
+            className = node.getName();
+            return super.visitClass(node);
+        }
+
+        @Override
+        public Void visitMethod(MethodNode node) {
+            int index = methodSlot(className, node.getName(), node.getParameters().size());
+            function = index != UNRESOLVED && functions.get(index).method == node
+                    ? functions.get(index) : new Function(node); // A duplicate is never called
+            locals.clear();
+            hidden.clear();
+            openScope(node);
+            for (ASTNode parameter : node.getParameters()) {
+                ParameterNode p = (ParameterNode) parameter;
+                p.slot = function.allocate(p.isArray() ? TypeIds.UNKNOWN : p.getTypeId());
+                declare(p.getName(), p.slot);
+            }
+            return super.visitMethod(node);
+        }
+
+        @Override
+        public Void visitVariableDeclaration(VariableDeclarationNode node) {
+            node.slot = function.allocate(node.isArray() ? TypeIds.UNKNOWN : node.getTypeId());
+            declare(node.getName(), node.slot);
+            return super.visitVariableDeclaration(node);
+        }
+
+        @Override
+        public Void visitAssignment(AssignmentNode node) {
+            node.slot = variableSlot(node.getVariableName());
+            return super.visitAssignment(node);
+        }
+
+        @Override
+        public Void visitIdentifier(IdentifierNode node) {
+            node.slot = variableSlot(node.getName());
+            return null;
+        }
+
+        @Override
+        public Void visitBlock(BlockNode node) {
+            openScope(node);
+            return super.visitBlock(node);
+        }
+
+        @Override
+        public Void visitFor(ForNode node) {
+            openScope(node);
+            return super.visitFor(node);
+        }
+
+        @Override
+        public Void visitSwitch(SwitchNode node) {
+            // The whole switch block is one scope, so a case can use a local declared by an earlier one
+            openScope(node);
+            return super.visitSwitch(node);
+        }
+
+        @Override
+        public Void visitBinaryOp(BinaryOpNode node) {
+            node.slot = operatorCode(node.getOperator());
+            return super.visitBinaryOp(node);
+        }
+
+        @Override
+        public Void visitNaryOp(NaryOpNode node) {
+            node.slot = operatorCode(node.getOperator());
+            return super.visitNaryOp(node);
+        }
+
+        @Override
+        public Void visitUnaryOp(UnaryOpNode node) {
+            // Prefix - is negation; only the binary operator subtracts
+            node.slot = node.getOperator().equals("-") ? NEG : operatorCode(node.getOperator());
+            return super.visitUnaryOp(node);
+        }
+
+        @Override
+        public Void visitMethodCall(MethodCallNode node) {
+            if (node != qualifiedCall) {
+                node.slot = methodSlot(className, node.getMethodName(), argumentCount(node));
+            }
+            return super.visitMethodCall(node);
+        }
+
+        @Override
+        public Void visitMemberAccess(MemberAccessNode node) {
+            List<String> members = node.getMembers();
+            MethodCallNode call = (MethodCallNode) node.getMethodCall();
+            qualifiedCall = call; // The walk enters it next
+            node.slot = UNRESOLVED;
+            if (call != null) {
+                call.slot = UNRESOLVED;
+                int arguments = argumentCount(call);
+                if (members.size() == 3 && members.get(0).equals("System") && members.get(1).equals("out")) {
+                    if (members.get(2).equals("println") && arguments <= 1) {
+                        call.slot = PRINTLN;
+                    } else if (members.get(2).equals("print") && arguments == 1) {
+                        call.slot = PRINT;
+                    }
+                } else if (members.size() == 2) {
+                    call.slot = methodSlot(members.get(0), members.get(1), arguments);
+                }
+            } else if (members.size() == 2 && fieldsByClass.containsKey(members.get(0))) {
+                Integer field = fieldsByClass.get(members.get(0)).get(members.get(1));
+                if (field != null) {
+                    node.slot = field;
+                }
+            }
+            return super.visitMemberAccess(node);
+        }
+
+        private int argumentCount(MethodCallNode node) {
+            return node.getArguments() != null ? node.getArguments().size() : 0;
+        }
+
+        private int operatorCode(String operator) {
+            switch (operator) {
+                case "+": return ADD;
+                case "-": return SUB;
+                case "*": return MUL;
+                case "/": return DIV;
+                case "%": return REM;
+                case "==": return EQ;
+                case "!=": return NE;
+                case "<": return LT;
+                case "<=": return LE;
+                case ">": return GT;
+                case ">=": return GE;
+                case "&&": return AND;
+                case "||": return OR;
+                case "!": return NOT;
+                case "++": return INC;
+                case "--": return DEC;
+                default: return UNRESOLVED;
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package parser;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CharStream over a whole input held in memory
+ * Files are memory-mapped and read byte-for-char while the input is ASCII.
+ * The first byte above 0x7F switches the rest of the file to a one-time UTF-8 decode.
+ * Line and column numbers come from an index of line start offsets built while reading,
+ * so backup() is just a position change and nothing is buffered per character.
+ */
+public class MappedCharStream implements CharStream {
+
+    // ASCII prefix, read straight from the mapped file
+    private ByteBuffer bytes;
+    private int asciiLimit;
+
+    // Everything from asciiLimit onwards, decoded once
+    private char[] decoded;
+
+    private int length;
+    private int pos = -1;
+    private int tokenBegin = -1;
+
+    // Line index: lineStarts[i] is the offset of the first char of line startLine + i
+    private int[] lineStarts = new int[64];
+    private int lineCount = 1;
+    private int indexed = 0;
+    private char lastIndexedChar;
+    private int lineCursor = 0;
+
+    private final int startLine;
+    private final int startColumn;
+    private int tabSize = 1;
+    private boolean trackLineColumn = true;
+
+    private char[] scratch = new char[64];
+
+    private MappedCharStream(ByteBuffer bytes, char[] chars, int startLine, int startColumn) {
+        this.bytes = bytes;
+        this.decoded = chars;
+        this.asciiLimit = bytes != null ? bytes.limit() : 0;
+        this.length = bytes != null ? bytes.limit() : chars.length;
+        this.startLine = startLine;
+        this.startColumn = startColumn;
+    }
+
+    /**
+     * Map a file for lexing
+     */
+    public static MappedCharStream open(String filename) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + filename);
+            }
+            // The mapping stays valid after the channel is closed
+            return new MappedCharStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), null, 1, 1);
+        }
+    }
+
+    /**
+     * Stream over text that is already in memory
+     */
+    public static MappedCharStream ofString(String text) {
+        return ofString(text, 1, 1);
+    }
+
+    /**
+     * Stream over text that starts at the given position of a larger source
+     */
+    public static MappedCharStream ofString(String text, int startLine, int startColumn) {
+        return new MappedCharStream(null, text.toCharArray(), startLine, startColumn);
+    }
+
+    /**
+     * Stream over everything a reader produces
+     */
+    public static MappedCharStream fromReader(Reader reader) throws IOException {
+        char[] buffer = new char[8192];
+        int size = 0;
+        int n;
+        while ((n = reader.read(buffer, size, buffer.length - size)) != -1) {
+            size += n;
+            if (size == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        return new MappedCharStream(null, Arrays.copyOf(buffer, size), 1, 1);
+    }
+
+    /**
+     * The mapped file, or null for a stream over text already in memory
+     */
+    ByteBuffer getBytes() {
+        return bytes != null ? bytes.duplicate() : null;
+    }
+
+    // ==================== CHARACTER ACCESS ====================
+
+    private char charAt(int i) {
+        return i < asciiLimit ? (char) bytes.get(i) : decoded[i - asciiLimit];
+    }
+
+    /**
+     * Decode the rest of the file from the first non-ASCII byte
+     */
+    private void decodeFrom(int offset) throws IOException {
+        ByteBuffer rest = bytes.duplicate();
+        rest.position(offset);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            CharBuffer chars = decoder.decode(rest);
+            decoded = new char[chars.remaining()];
+            chars.get(decoded);
+        } catch (CharacterCodingException e) {
+            throw new IOException("Could not decode input as UTF-8", e);
+        }
+        asciiLimit = offset;
+        length = offset + decoded.length;
+    }
+
+    public char readChar() throws IOException {
+        if (pos + 1 >= length) {
+            if (tokenBegin == -1) {
+                tokenBegin = pos;
+            }
+            throw new IOException();
+        }
+        pos++;
+        char c;
+        if (pos < asciiLimit) {
+            byte b = bytes.get(pos);
+            if (b < 0) {
+                decodeFrom(pos);
+                c = decoded[0];
+            } else {
+                c = (char) b;
+            }
+        } else {
+            c = decoded[pos - asciiLimit];
+        }
+        if (pos == indexed) {
+            indexLineStart(pos, c);
+        }
+        return c;
+    }
+
+    public char BeginToken() throws IOException {
+        tokenBegin = -1;
+        char c = readChar();
+        tokenBegin = pos;
+        return c;
+    }
+
+    public void backup(int amount) {
+        pos -= amount;
+    }
+
+    public String GetImage() {
+        int count = pos - tokenBegin + 1;
+        if (scratch.length < count) {
+            scratch = new char[Math.max(count, scratch.length * 2)];
+        }
+        for (int i = 0; i < count; i++) {
+            scratch[i] = charAt(tokenBegin + i);
+        }
+        return new String(scratch, 0, count);
+    }
+
+    public char[] GetSuffix(int len) {
+        char[] suffix = new char[len];
+        int start = pos - len + 1;
+        for (int i = 0; i < len; i++) {
+            suffix[i] = charAt(start + i);
+        }
+        return suffix;
+    }
+
+    public void Done() {
+        bytes = null;
+        decoded = null;
+        scratch = null;
+    }
+
+    // ==================== LINE INDEX ====================
+
+    /**
+     * Record a line start at offset i if the previous char ended a line.
+     * "\r\n" counts as one line break, matching SimpleCharStream.
+     */
+    private void indexLineStart(int i, char c) {
+        char prev = lastIndexedChar;
+        if (i > 0 && (prev == '\n' || (prev == '\r' && c != '\n'))) {
+            if (lineCount == lineStarts.length) {
+                lineStarts = Arrays.copyOf(lineStarts, lineCount * 2);
+            }
+            lineStarts[lineCount++] = i;
+        }
+        lastIndexedChar = c;
+        indexed = i + 1;
+    }
+
+    private int lineIndexOf(int offset) {
+        while (lineCursor > 0 && offset < lineStarts[lineCursor]) {
+            lineCursor--;
+        }
+        while (lineCursor + 1 < lineCount && offset >= lineStarts[lineCursor + 1]) {
+            lineCursor++;
+        }
+        return lineCursor;
+    }
+
+    private int lineOf(int offset) {
+        return offset < 0 ? 0 : startLine + lineIndexOf(offset);
+    }
+
+    private int columnOf(int offset) {
+        if (offset < 0) {
+            return 0;
+        }
+        int index = lineIndexOf(offset);
+        int lineStart = lineStarts[index];
+        int column = index == 0 ? startColumn - 1 : 0;
+        if (tabSize == 1) {
+            return column + offset - lineStart + 1;
+        }
+        for (int i = lineStart; i <= offset; i++) {
+            column++;
+            if (charAt(i) == '\t') {
+                column--;
+                column += (tabSize - (column % tabSize));
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Number of lines the lexer has reached so far
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Offset of the first char of a line the lexer has reached
+     */
+    public int getLineStart(int line) {
+        int index = line - startLine;
+        if (index < 0 || index >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + line + " has not been read");
+        }
+        return lineStarts[index];
+    }
+
+    /**
+     * Text of a line without its line break, or null if the lexer has not reached
+     * it or the input was released
+     * The start comes from the line index, so only the line itself is read.
+     */
+    public String getLineText(int line) {
+        if ((bytes == null && decoded == null) || line < startLine || line - startLine >= lineCount) {
+            return null;
+        }
+        int start = getLineStart(line);
+        int end = start;
+        while (end < length) {
+            if (end < asciiLimit && bytes.get(end) < 0) {
+                try {
+                    decodeFrom(end); // As the lexer would on reaching it; offsets before it stay the same
+                } catch (IOException e) {
+                    break;
+                }
+            }
+            char c = charAt(end);
+            if (c == '\n' || c == '\r') {
+                break;
+            }
+            end++;
+        }
+        StringBuilder text = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            text.append(charAt(i));
+        }
+        return text.toString();
+    }
+
+    @Deprecated
+    public int getColumn() {
+        return columnOf(pos);
+    }
+
+    @Deprecated
+    public int getLine() {
+        return lineOf(pos);
+    }
+
+    public int getEndColumn() {
+        return columnOf(pos);
+    }
+
+    public int getEndLine() {
+        return lineOf(pos);
+    }
+
+    public int getBeginColumn() {
+        return columnOf(tokenBegin);
+    }
+
+    public int getBeginLine() {
+        return lineOf(tokenBegin);
+    }
+
+    public void setTabSize(int i) {
+        tabSize = i;
+    }
+
+    public int getTabSize() {
+        return tabSize;
+    }
+
+    public boolean getTrackLineColumn() {
+        return trackLineColumn;
+    }
+
+    public void setTrackLineColumn(boolean trackLineColumn) {
+        this.trackLineColumn = trackLineColumn;
+    }
+}
@@ -0,0 +1,373 @@
+package parser;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Single buffered output pipeline for the compiler report
+ * Symbol table rows, both AST views and diagnostics are streamed through one
+ * large writer, and the tree prefix is kept in a shared buffer instead of
+ * being rebuilt as a new string at every level.
+ * The AST views run on an explicit work stack, so a deep tree cannot overflow
+ * the thread's stack.
+ */
+public class OutputRenderer {
+
+    /**
+     * Report sections that can be turned on or off
+     */
+    public enum Section {
+        TOKENS, AST, TREE, DIAGNOSTICS
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final PrintWriter out;
+    private final EnumSet<Section> sections;
+    private int maxDepth;
+
+    // Tree view state: the current line prefix and nesting depth
+    private final StringBuilder prefix = new StringBuilder(128);
+    private int depth;
+
+    public OutputRenderer(Writer writer) {
+        this(writer, EnumSet.allOf(Section.class), 0);
+    }
+
+    /**
+     * @param maxDepth deepest AST level to print in the tree views, 0 for no limit
+     */
+    public OutputRenderer(Writer writer, Set<Section> sections, int maxDepth) {
+        this.out = new PrintWriter(new BufferedWriter(writer, BUFFER_SIZE));
+        this.sections = sections.isEmpty() ? EnumSet.noneOf(Section.class) : EnumSet.copyOf(sections);
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Renderer that writes to System.out in its own encoding
+     */
+    public static OutputRenderer toStandardOutput() {
+        return new OutputRenderer(new PrintStreamWriter(System.out));
+    }
+
+    public static OutputRenderer toStandardOutput(Set<Section> sections, int maxDepth) {
+        return new OutputRenderer(new PrintStreamWriter(System.out), sections, maxDepth);
+    }
+
+    /**
+     * Unbuffered writer for error messages on System.err
+     */
+    public static PrintWriter standardError() {
+        return new PrintWriter(new PrintStreamWriter(System.err));
+    }
+
+    /**
+     * Parse a comma separated section list such as "tokens,tree"
+     */
+    public static EnumSet<Section> parseSections(String list) {
+        EnumSet<Section> result = EnumSet.noneOf(Section.class);
+        for (String name : list.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            try {
+                result.add(Section.valueOf(name.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown output section '" + name
+                        + "' (expected tokens, ast, tree or diagnostics)");
+            }
+        }
+        return result;
+    }
+
+    public boolean isEnabled(Section section) {
+        return sections.contains(section);
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    // ==================== PLAIN OUTPUT ====================
+
+    public void print(CharSequence text) {
+        out.append(text);
+    }
+
+    public void println(String text) {
+        out.println(text);
+    }
+
+    public void println() {
+        out.println();
+    }
+
+    public void flush() {
+        out.flush();
+    }
+
+    // ==================== AST VIEWS ====================
+
+    /**
+     * Print a node in indented form, or "..." in its place below the depth limit
+     */
+    public void print(ASTNode node, int indent) {
+        render(PRINT_NODE, node, indent);
+    }
+
+    /**
+     * Print one line of the indented view, two spaces per level
+     */
+    public void line(int indent, String text) {
+        if (recording) {
+            queue(LINE, text, indent);
+            return;
+        }
+        for (int i = 0; i < indent; i++) {
+            out.write("  ");
+        }
+        out.println(text);
+    }
+
+    /**
+     * Print a node in tree form, or "..." in its place below the depth limit
+     */
+    public void printTree(ASTNode node, boolean isLast) {
+        render(TREE_NODE, node, isLast ? 1 : 0);
+    }
+
+    /**
+     * Print a subtree in tree form with every line starting with the given prefix
+     */
+    public void printTree(String initialPrefix, ASTNode node, boolean isLast) {
+        int saved = prefix.length();
+        prefix.append(initialPrefix);
+        try {
+            printTree(node, isLast);
+        } finally {
+            prefix.setLength(saved);
+        }
+    }
+
+    /**
+     * Print one line of the tree view under the current prefix
+     */
+    public void branch(boolean isLast, String text) {
+        if (recording) {
+            queue(BRANCH, text, isLast ? 1 : 0);
+            return;
+        }
+        out.append(prefix);
+        out.write(isLast ? "└── " : "├── ");
+        out.println(text);
+    }
+
+    /**
+     * Extend the prefix for the children of a branch
+     */
+    public void push(boolean isLast) {
+        if (recording) {
+            queue(PUSH, null, isLast ? 1 : 0);
+            return;
+        }
+        prefix.append(isLast ? "    " : "│   ");
+    }
+
+    public void pop() {
+        if (recording) {
+            queue(POP, null, 0);
+            return;
+        }
+        prefix.setLength(prefix.length() - 4);
+    }
+
+    /**
+     * Whether a node the given number of levels below the one being printed is
+     * within the depth limit
+     * For nodes that print nested levels of their own, such as NaryOpNode.
+     */
+    public boolean fitsBelow(int levels) {
+        return maxDepth <= 0 || depth - 1 + levels < maxDepth;
+    }
+
+    /**
+     * Count the nodes printed from now on as one level deeper, until leaveLevel
+     */
+    public void enterLevel() {
+        if (recording) {
+            queue(ENTER_LEVEL, null, 0);
+            return;
+        }
+        depth++;
+    }
+
+    public void leaveLevel() {
+        if (recording) {
+            queue(LEAVE_LEVEL, null, 0);
+            return;
+        }
+        depth--;
+    }
+
+    // ==================== VIEW WORK STACK ====================
+
+    // Actions of the AST views; a LEAVE_LEVEL action marks the end of a node's subtree
+    private static final byte PRINT_NODE = 0;
+    private static final byte TREE_NODE = 1;
+    private static final byte LINE = 2;
+    private static final byte BRANCH = 3;
+    private static final byte PUSH = 4;
+    private static final byte POP = 5;
+    private static final byte ENTER_LEVEL = 6;
+    private static final byte LEAVE_LEVEL = 7;
+
+    private byte[] actionKinds = new byte[64];
+    private Object[] actionValues = new Object[64];
+    private int[] actionArgs = new int[64];
+    private int actionCount;
+    private boolean recording;
+
+    private void render(byte kind, ASTNode node, int arg) {
+        if (recording) {
+            queue(kind, node, arg);
+            return;
+        }
+        int base = actionCount;
+        int savedDepth = depth;
+        int savedPrefix = prefix.length();
+        queue(kind, node, arg);
+        try {
+            while (actionCount > base) {
+                int top = --actionCount;
+                Object value = actionValues[top];
+                actionValues[top] = null;
+                int topArg = actionArgs[top];
+                switch (actionKinds[top]) {
+                    case PRINT_NODE:
+                    case TREE_NODE:
+                        expand(actionKinds[top] == TREE_NODE, (ASTNode) value, topArg);
+                        break;
+                    case LINE:
+                        line(topArg, (String) value);
+                        break;
+                    case BRANCH:
+                        branch(topArg != 0, (String) value);
+                        break;
+                    case PUSH:
+                        push(topArg != 0);
+                        break;
+                    case POP:
+                        pop();
+                        break;
+                    case ENTER_LEVEL:
+                        enterLevel();
+                        break;
+                    default:
+                        leaveLevel();
+                        break;
+                }
+            }
+        } finally {
+            recording = false;
+            while (actionCount > base) {
+                actionValues[--actionCount] = null;
+            }
+            depth = savedDepth;
+            prefix.setLength(savedPrefix);
+        }
+    }
+
+    /**
+     * Render one node
+     * While its print or printTree method runs, the calls it makes on this renderer
+     * are recorded as actions instead of being carried out. The actions are then
+     * queued to run in the order they were made, so each child's subtree is
+     * rendered before the action that follows it, without a stack frame per level.
+     */
+    private void expand(boolean tree, ASTNode node, int arg) {
+        if (maxDepth > 0 && depth >= maxDepth) {
+            if (tree) {
+                branch(arg != 0, "...");
+            } else {
+                line(arg, "...");
+            }
+            return;
+        }
+        depth++;
+        queue(LEAVE_LEVEL, null, 0);
+        int start = actionCount;
+        recording = true;
+        try {
+            if (tree) {
+                node.printTree(this, arg != 0);
+            } else {
+                node.print(this, arg);
+            }
+        } finally {
+            recording = false;
+        }
+        // Reverse the recorded actions so the first one is on top
+        for (int i = start, j = actionCount - 1; i < j; i++, j--) {
+            byte kind = actionKinds[i];
+            actionKinds[i] = actionKinds[j];
+            actionKinds[j] = kind;
+            Object value = actionValues[i];
+            actionValues[i] = actionValues[j];
+            actionValues[j] = value;
+            int swapArg = actionArgs[i];
+            actionArgs[i] = actionArgs[j];
+            actionArgs[j] = swapArg;
+        }
+    }
+
+    private void queue(byte kind, Object value, int arg) {
+        if (actionCount == actionKinds.length) {
+            actionKinds = Arrays.copyOf(actionKinds, actionCount * 2);
+            actionValues = Arrays.copyOf(actionValues, actionCount * 2);
+            actionArgs = Arrays.copyOf(actionArgs, actionCount * 2);
+        }
+        actionKinds[actionCount] = kind;
+        actionValues[actionCount] = value;
+        actionArgs[actionCount] = arg;
+        actionCount++;
+    }
+
+    // ==================== INNER CLASSES ====================
+
+    /**
+     * Hands chunks to a PrintStream so they are encoded the same way
+     * as everything else printed there
+     */
+    private static class PrintStreamWriter extends Writer {
+        private final PrintStream stream;
+
+        PrintStreamWriter(PrintStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            stream.print(new String(cbuf, off, len));
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            stream.print(str.substring(off, off + len));
+        }
+
+        @Override
+        public void flush() {
+            stream.flush();
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,755 @@
+package parser;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Micro-benchmarks for the compiler front end
+ * Runs against a generated source so results scale with input size
+ *
+ * Usage: java parser.ParserBenchmark <benchmark> [methods]
+ */
+public class ParserBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final int CHAIN_TERMS_PER_METHOD = 50;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: java parser.ParserBenchmark <tokens|lex|parse|traverse|typecheck|footprint|reload|edit|run> [methods]");
+            System.exit(1);
+        }
+
+        int methods = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        String source = generateSource(methods);
+        System.out.println("Generated source: " + methods + " methods, " + source.length() + " chars");
+
+        switch (args[0]) {
+            case "tokens":
+                benchmarkTokenTypes(source);
+                break;
+            case "lex":
+                benchmarkLexing(source);
+                break;
+            case "parse":
+                benchmarkParsing(source);
+                break;
+            case "traverse":
+                benchmarkTraversal(methods);
+                break;
+            case "typecheck":
+                benchmarkTypeChecking(source, methods);
+                break;
+            case "footprint":
+                benchmarkFootprint(source, methods);
+                break;
+            case "reload":
+                benchmarkReload(source, methods);
+                break;
+            case "edit":
+                benchmarkEditing(source, methods);
+                break;
+            case "run":
+                benchmarkRunning(methods);
+                break;
+            default:
+                System.err.println("Unknown benchmark: " + args[0]);
+                System.exit(1);
+        }
+    }
+
+    // ==================== BENCHMARKS ====================
+
+    /**
+     * Token type lookup: string classification per token vs the precomputed kind table
+     */
+    private static void benchmarkTokenTypes(String source) {
+        final Token[] tokens = lex(source);
+        System.out.println("Tokens (including comments): " + tokens.length);
+
+        measure("classify (string switch)", tokens.length, new Runnable() {
+            public void run() {
+                int hash = 0;
+                for (Token t : tokens) {
+                    hash += JavaParser.classifyTokenImage(JavaParser.tokenImage[t.kind]).length();
+                }
+                sink(hash);
+            }
+        });
+        measure("classify (kind table)", tokens.length, new Runnable() {
+            public void run() {
+                int hash = 0;
+                for (Token t : tokens) {
+                    hash += JavaParser.getTokenName(t.kind).length();
+                }
+                sink(hash);
+            }
+        });
+        measure("record (string switch)", tokens.length, new Runnable() {
+            public void run() {
+                SymbolTable table = new SymbolTable();
+                for (Token t : tokens) {
+                    table.addToken(t, JavaParser.classifyTokenImage(JavaParser.tokenImage[t.kind]));
+                }
+                sink(table.getTokens().size());
+            }
+        });
+        measure("record (kind table)", tokens.length, new Runnable() {
+            public void run() {
+                SymbolTable table = new SymbolTable(JavaParser.TOKEN_TYPE_NAMES);
+                for (Token t : tokens) {
+                    table.addToken(t, JavaParser.TOKEN_TYPES[t.kind]);
+                }
+                sink(table.getTokens().size());
+            }
+        });
+    }
+
+    /**
+     * Lexing a file through the mapped ASCII fast path vs decoding it through a Reader first
+     */
+    private static void benchmarkLexing(String source) throws IOException {
+        final File file = File.createTempFile("bench", ".java");
+        file.deleteOnExit();
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            out.write(source);
+        }
+        final int count = countTokens(MappedCharStream.ofString(source));
+        System.out.println("Tokens (including comments): " + count);
+
+        measure("lex (mapped, ASCII fast path)", count, new Runnable() {
+            public void run() {
+                try {
+                    sink(countTokens(MappedCharStream.open(file.getPath())));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        measure("lex (reader, decoded copy)", count, new Runnable() {
+            public void run() {
+                try (Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8")) {
+                    sink(countTokens(MappedCharStream.fromReader(reader)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Full parse with symbol table recording vs parse-only mode
+     */
+    private static void benchmarkParsing(final String source) {
+        final int count = countTokens(MappedCharStream.ofString(source));
+        System.out.println("Tokens (including comments): " + count);
+
+        measure("parse (recording symbols)", count, new Runnable() {
+            public void run() {
+                sink(parse(source, true));
+            }
+        });
+        measure("parse (--no-symbols)", count, new Runnable() {
+            public void run() {
+                sink(parse(source, false));
+            }
+        });
+    }
+
+    /**
+     * Full-tree walk through an instanceof chain vs ASTNode.accept on deeply nested trees
+     */
+    private static void benchmarkTraversal(int methods) {
+        final ASTNode tree = buildDeepTree(methods, 40, 100);
+        final int count = countNodesByInstanceof(tree);
+        System.out.println("AST nodes: " + count);
+
+        measure("walk (instanceof chain)", count, new Runnable() {
+            public void run() {
+                sink(countNodesByInstanceof(tree));
+            }
+        });
+        measure("walk (visitor)", count, new Runnable() {
+            public void run() {
+                NodeCounter counter = new NodeCounter();
+                counter.walk(tree);
+                sink(counter.count);
+            }
+        });
+    }
+
+    private static class NodeCounter extends ASTWalker {
+        int count;
+
+        @Override
+        protected void visitNode(ASTNode node) {
+            count++;
+            node.accept(this);
+        }
+    }
+
+    /**
+     * Node count using the instanceof dispatch the passes used before ASTVisitor
+     */
+    private static int countNodesByInstanceof(ASTNode node) {
+        if (node == null) return 0;
+        int count = 1;
+        if (node instanceof BinaryOpNode) {
+            count += countNodesByInstanceof(((BinaryOpNode) node).getLeft());
+            count += countNodesByInstanceof(((BinaryOpNode) node).getRight());
+        } else if (node instanceof ProgrameNode) {
+            for (ASTNode child : ((ProgrameNode) node).getClasses()) count += countNodesByInstanceof(child);
+        } else if (node instanceof ClassNode) {
+            for (ASTNode child : ((ClassNode) node).getMembers()) count += countNodesByInstanceof(child);
+        } else if (node instanceof MethodNode) {
+            for (ASTNode child : ((MethodNode) node).getParameters()) count += countNodesByInstanceof(child);
+            for (ASTNode child : ((MethodNode) node).getStatements()) count += countNodesByInstanceof(child);
+        } else if (node instanceof BlockNode) {
+            for (ASTNode child : ((BlockNode) node).getStatements()) count += countNodesByInstanceof(child);
+        } else if (node instanceof IfNode) {
+            IfNode ifNode = (IfNode) node;
+            count += countNodesByInstanceof(ifNode.getCondition());
+            count += countNodesByInstanceof(ifNode.getThenStatement());
+            count += countNodesByInstanceof(ifNode.getElseStatement());
+        } else if (node instanceof WhileNode) {
+            count += countNodesByInstanceof(((WhileNode) node).getCondition());
+            count += countNodesByInstanceof(((WhileNode) node).getBody());
+        } else if (node instanceof DoWhileNode) {
+            count += countNodesByInstanceof(((DoWhileNode) node).getBody());
+            count += countNodesByInstanceof(((DoWhileNode) node).getCondition());
+        } else if (node instanceof ForNode) {
+            ForNode forNode = (ForNode) node;
+            count += countNodesByInstanceof(forNode.getInit());
+            count += countNodesByInstanceof(forNode.getCondition());
+            count += countNodesByInstanceof(forNode.getUpdate());
+            count += countNodesByInstanceof(forNode.getBody());
+        } else if (node instanceof SwitchNode) {
+            SwitchNode switchNode = (SwitchNode) node;
+            count += countNodesByInstanceof(switchNode.getExpression());
+            for (ASTNode child : switchNode.getCases()) count += countNodesByInstanceof(child);
+            count += countNodesByInstanceof(switchNode.getDefaultCase());
+        } else if (node instanceof CaseNode) {
+            count += countNodesByInstanceof(((CaseNode) node).getValue());
+            for (ASTNode child : ((CaseNode) node).getStatements()) count += countNodesByInstanceof(child);
+        } else if (node instanceof DefaultCaseNode) {
+            for (ASTNode child : ((DefaultCaseNode) node).getStatements()) count += countNodesByInstanceof(child);
+        } else if (node instanceof ReturnNode) {
+            count += countNodesByInstanceof(((ReturnNode) node).getExpression());
+        } else if (node instanceof AssignmentNode) {
+            count += countNodesByInstanceof(((AssignmentNode) node).getExpression());
+        } else if (node instanceof VariableDeclarationNode) {
+            count += countNodesByInstanceof(((VariableDeclarationNode) node).getInitializer());
+        } else if (node instanceof UnaryOpNode) {
+            count += countNodesByInstanceof(((UnaryOpNode) node).getOperand());
+        } else if (node instanceof MethodCallNode) {
+            for (ASTNode child : ((MethodCallNode) node).getArguments()) count += countNodesByInstanceof(child);
+        } else if (node instanceof MemberAccessNode) {
+            count += countNodesByInstanceof(((MemberAccessNode) node).getMethodCall());
+        }
+        return count;
+    }
+
+    /**
+     * Build a program whose methods nest if/while/block statements nestDepth deep,
+     * with an expression chain of chainLength operators at the innermost level
+     */
+    static ProgrameNode buildDeepTree(int methods, int nestDepth, int chainLength) {
+        ProgrameNode program = new ProgrameNode();
+        ClassNode cls = new ClassNode("Deep", "public", 1, 1);
+        program.addClass(cls);
+        for (int m = 0; m < methods; m++) {
+            ASTNode expr = new IdentifierNode("a", m, 1);
+            for (int i = 0; i < chainLength; i++) {
+                ASTNode operand = i % 3 == 0
+                        ? new UnaryOpNode("-", new LiteralNode("int", String.valueOf(i), m, 1), true, m, 1)
+                        : new IdentifierNode("b", m, 1);
+                expr = new BinaryOpNode(i % 2 == 0 ? "+" : "*", expr, operand, m, 1);
+            }
+            ASTNode stmt = new AssignmentNode("a", expr, m, 1);
+            for (int d = 0; d < nestDepth; d++) {
+                ASTNode condition = new BinaryOpNode("<", new IdentifierNode("a", m, 1),
+                        new LiteralNode("int", String.valueOf(d), m, 1), m, 1);
+                switch (d % 3) {
+                    case 0:
+                        stmt = new IfNode(condition, stmt, new BreakNode(m, 1), m, 1);
+                        break;
+                    case 1:
+                        stmt = new WhileNode(condition, stmt, m, 1);
+                        break;
+                    default:
+                        List<ASTNode> block = new ArrayList<>();
+                        block.add(new VariableDeclarationNode("int", "t" + d, false, condition, m, 1));
+                        block.add(stmt);
+                        stmt = new BlockNode(block, m, 1);
+                        break;
+                }
+            }
+            MethodNode method = new MethodNode("public", "void", "m" + m, m, 1);
+            List<ASTNode> statements = new ArrayList<>();
+            statements.add(stmt);
+            statements.add(new ReturnNode(null, m, 1));
+            method.setParameter(new ArrayList<ASTNode>());
+            method.setStatement(statements);
+            cls.addMember(method);
+        }
+        return program;
+    }
+
+    /**
+     * Type checking the generated program, alone and with the semantic rules, and a
+     * single long string concatenation chain
+     */
+    private static void benchmarkTypeChecking(String source, int methods) throws ParseException {
+        final JavaParser programParser = new JavaParser(MappedCharStream.ofString(source), true);
+        final ASTNode program = programParser.Program();
+        measure("typecheck (generated program)", methods, new Runnable() {
+            public void run() {
+                TypeChecker checker = new TypeChecker(programParser.getSymbolTable());
+                checker.analyze(program);
+                sink(checker.getWarnings().size());
+            }
+        });
+        measure("typecheck + rules (program)", methods, new Runnable() {
+            public void run() {
+                TypeChecker checker = new TypeChecker(programParser.getSymbolTable());
+                for (AnalysisRule rule : JavaParser.semanticRules()) {
+                    checker.addRule(rule);
+                }
+                checker.analyze(program);
+                sink(checker.getWarnings().size());
+            }
+        });
+
+        // Operands are typed from a work list, so the chain may be far deeper than the thread's stack
+        final int terms = methods * CHAIN_TERMS_PER_METHOD;
+        final JavaParser chainParser = new JavaParser(MappedCharStream.ofString(generateConcatChain(terms)), true);
+        final ASTNode chain = chainParser.Program();
+        measure("typecheck (" + terms + "-term concat)", terms, new Runnable() {
+            public void run() {
+                TypeChecker checker = new TypeChecker(chainParser.getSymbolTable());
+                checker.analyze(chain);
+                sink(checker.getErrors().size());
+            }
+        });
+    }
+
+    /**
+     * Heap retained by the parsed program as ASTNode objects vs as a FlatAst,
+     * and the cost of parsing and type checking each form
+     */
+    private static void benchmarkFootprint(final String source, int methods) throws ParseException {
+        long before = usedHeap();
+        ASTNode tree = new JavaParser(MappedCharStream.ofString(source), false).Program();
+        long treeBytes = usedHeap() - before;
+        sink(tree.getLine());
+        tree = null;
+
+        before = usedHeap();
+        final FlatAst flat = new JavaParser(MappedCharStream.ofString(source), false).parseFlat();
+        long flatBytes = usedHeap() - before;
+        int nodes = flat.size();
+        System.out.println("AST nodes (flat, including empty slots): " + nodes);
+        System.out.printf("%-32s %,12d bytes  %8.1f bytes/node%n", "retained (object tree)", treeBytes,
+                (double) treeBytes / nodes);
+        System.out.printf("%-32s %,12d bytes  %8.1f bytes/node  (arrays %,d bytes)%n", "retained (flat arena)",
+                flatBytes, (double) flatBytes / nodes, flat.footprintBytes());
+
+        measure("parse (object tree)", nodes, new Runnable() {
+            public void run() {
+                try {
+                    sink(new JavaParser(MappedCharStream.ofString(source), false).Program().getLine());
+                } catch (ParseException e) {
+                    throw new IllegalStateException("Generated source failed to parse", e);
+                }
+            }
+        });
+        measure("parse (flat arena)", nodes, new Runnable() {
+            public void run() {
+                try {
+                    sink(new JavaParser(MappedCharStream.ofString(source), false).parseFlat().size());
+                } catch (ParseException e) {
+                    throw new IllegalStateException("Generated source failed to parse", e);
+                }
+            }
+        });
+
+        final ASTNode program = flat.toTree();
+        measure("typecheck + rules (object tree)", methods, new Runnable() {
+            public void run() {
+                TypeChecker checker = checkerWithRules();
+                checker.analyze(program);
+                sink(checker.getWarnings().size());
+            }
+        });
+        measure("typecheck + rules (flat arena)", methods, new Runnable() {
+            public void run() {
+                TypeChecker checker = checkerWithRules();
+                checker.analyze(flat);
+                sink(checker.getWarnings().size());
+            }
+        });
+    }
+
+    /**
+     * Getting an AST back by parsing the source vs reading it from an AstFile,
+     * whole or one method body at a time
+     */
+    private static void benchmarkReload(final String source, int methods) throws ParseException, IOException {
+        FlatAst flat = new JavaParser(MappedCharStream.ofString(source), false).parseFlat();
+        final File file = File.createTempFile("bench", ".ast");
+        file.deleteOnExit();
+        AstFile.write(flat, file.getPath());
+        final int nodes = flat.size();
+        System.out.printf("AST file: %,d bytes for %,d chars of source (%.1f bytes/node)%n", file.length(),
+                source.length(), (double) file.length() / nodes);
+
+        measure("parse (object tree)", nodes, new Runnable() {
+            public void run() {
+                try {
+                    sink(new JavaParser(MappedCharStream.ofString(source), false).Program().getLine());
+                } catch (ParseException e) {
+                    throw new IllegalStateException("Generated source failed to parse", e);
+                }
+            }
+        });
+        measure("read AST file (whole tree)", nodes, new Runnable() {
+            public void run() {
+                try {
+                    sink(AstFile.open(file.getPath()).readAll().getClasses().size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        measure("read AST file (outline + one body)", nodes, new Runnable() {
+            public void run() {
+                try {
+                    AstFile ast = AstFile.open(file.getPath());
+                    ClassNode first = (ClassNode) ast.outline().getClasses().get(0);
+                    List<ASTNode> members = first.getMembers();
+                    sink(ast.statements((MethodNode) members.get(members.size() - 1)).size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+        measure("typecheck + rules (AST file, lazy bodies)", methods, new Runnable() {
+            public void run() {
+                try {
+                    AstFile ast = AstFile.open(file.getPath());
+                    TypeChecker checker = checkerWithRules();
+                    checker.analyze(ast.outline(), ast);
+                    sink(checker.getWarnings().size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Bringing an EditSession up to date after an edit inside one method, on the
+     * same line and with a line added, vs parsing and checking the whole source
+     */
+    private static void benchmarkEditing(final String source, int methods) throws ParseException {
+        final EditSession session = new EditSession(source, true);
+        final int offset = source.indexOf("sum = sum - 7;", source.indexOf("int m" + methods / 2 + "("));
+        session.replace(offset, 0, " ");
+        System.out.println("Edit inside one method: " + session.getReparsedMemberCount() + " member reparsed, "
+                + session.getCheckedMethodCount() + " method checked");
+        session.replace(offset, 1, "");
+        session.replace(offset, 0, "\n");
+        System.out.println("Line added inside one method: " + session.getCheckedMethodCount()
+                + " methods checked");
+        session.replace(offset, 1, "");
+
+        measure("edit (same line, 2 edits)", 2, new Runnable() {
+            public void run() {
+                try {
+                    session.replace(offset, 0, " ");
+                    session.replace(offset, 1, "");
+                    sink(session.getErrors().size());
+                } catch (ParseException e) {
+                    throw new IllegalStateException("Edited source failed to parse", e);
+                }
+            }
+        });
+        measure("edit (line added, 2 edits)", 2, new Runnable() {
+            public void run() {
+                try {
+                    session.replace(offset, 0, "\n");
+                    session.replace(offset, 1, "");
+                    sink(session.getErrors().size());
+                } catch (ParseException e) {
+                    throw new IllegalStateException("Edited source failed to parse", e);
+                }
+            }
+        });
+        measure("parse + check (whole source, x2)", 2, new Runnable() {
+            public void run() {
+                try {
+                    sink(new EditSession(source, true).getErrors().size());
+                    sink(new EditSession(source, true).getErrors().size());
+                } catch (ParseException e) {
+                    throw new IllegalStateException("Generated source failed to parse", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Loading a program into the Interpreter, which resolves its names to slots,
+     * and running it, with what it prints discarded
+     */
+    private static void benchmarkRunning(int methods) throws ParseException {
+        final int iterations = methods * 100;
+        final ProgrameNode program = (ProgrameNode) new JavaParser(
+                MappedCharStream.ofString(generateProgram(iterations)), false).Program();
+        final OutputRenderer out = new OutputRenderer(new Writer() {
+            public void write(char[] cbuf, int off, int len) {
+                sink(len);
+            }
+
+            public void flush() {
+            }
+
+            public void close() {
+            }
+        });
+        System.out.println("Program: " + iterations + " loop iterations");
+
+        measure("load (resolve slots)", 1, new Runnable() {
+            public void run() {
+                sink(new Interpreter(program, out) != null ? 1 : 0);
+            }
+        });
+        final Interpreter interpreter = new Interpreter(program, out);
+        measure("run (interpreter)", iterations, new Runnable() {
+            public void run() {
+                interpreter.run();
+                out.flush();
+            }
+        });
+    }
+
+    private static TypeChecker checkerWithRules() {
+        TypeChecker checker = new TypeChecker(new SymbolTable(JavaParser.TOKEN_TYPE_NAMES));
+        for (AnalysisRule rule : JavaParser.semanticRules()) {
+            checker.addRule(rule);
+        }
+        return checker;
+    }
+
+    private static int parse(String source, boolean recordSymbols) {
+        try {
+            JavaParser parser = new JavaParser(MappedCharStream.ofString(source), recordSymbols);
+            ASTNode ast = parser.Program();
+            return ast.getLine() + parser.getSymbolTable().getTokens().size();
+        } catch (ParseException e) {
+            throw new IllegalStateException("Generated source failed to parse", e);
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private static volatile int blackhole;
+
+    private static void sink(int value) {
+        blackhole += value;
+    }
+
+    /**
+     * Run a task for warmup and measured rounds and print the best round
+     * along with the bytes it allocated on average
+     */
+    private static void measure(String label, long items, Runnable task) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            task.run();
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            task.run();
+            long elapsed = System.nanoTime() - start;
+            best = Math.min(best, elapsed);
+            total += elapsed;
+        }
+        long allocated = (allocatedBytes() - allocatedBefore) / MEASURED_ROUNDS;
+        System.out.printf("%-32s best %9.3f ms  avg %9.3f ms  %,15.0f items/sec  %,10.1f MB alloc%n",
+                label, best / 1e6, total / 1e6 / MEASURED_ROUNDS, items * 1e9 / best, allocated / 1e6);
+    }
+
+    /**
+     * Heap in use after collecting garbage
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Bytes allocated so far by this thread, or 0 when the JVM cannot report it
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    static int countTokens(CharStream input) {
+        JavaParserTokenManager lexer = new JavaParserTokenManager(input);
+        int count = 0;
+        Token t = lexer.getNextToken();
+        while (t.kind != JavaParserConstants.EOF) {
+            for (Token special = t.specialToken; special != null; special = special.specialToken) {
+                count++;
+            }
+            count++;
+            t = lexer.getNextToken();
+        }
+        return count;
+    }
+
+    /**
+     * Lex the whole source, returning regular and special tokens in one array
+     */
+    static Token[] lex(String source) {
+        return lex(MappedCharStream.ofString(source));
+    }
+
+    static Token[] lex(CharStream input) {
+        JavaParserTokenManager lexer = new JavaParserTokenManager(input);
+        List<Token> tokens = new ArrayList<>();
+        Token t = lexer.getNextToken();
+        while (t.kind != JavaParserConstants.EOF) {
+            for (Token special = t.specialToken; special != null; special = special.specialToken) {
+                tokens.add(special);
+            }
+            tokens.add(t);
+            t = lexer.getNextToken();
+        }
+        return tokens.toArray(new Token[0]);
+    }
+
+    /**
+     * Generate a program whose main runs a while loop with a switch, a do/while
+     * calling a recursive method and a printing for loop, iterations times in all
+     */
+    static String generateProgram(int iterations) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("public class Loops {\n");
+        sb.append("    static int calls;\n");
+        sb.append("\n");
+        sb.append("    static int fib(int n) {\n");
+        sb.append("        calls++;\n");
+        sb.append("        if (n < 2) {\n");
+        sb.append("            return n;\n");
+        sb.append("        }\n");
+        sb.append("        return fib(n - 1) + fib(n - 2);\n");
+        sb.append("    }\n");
+        sb.append("\n");
+        sb.append("    public static void main(String[] args) {\n");
+        sb.append("        int n = ").append(iterations / 2).append(";\n");
+        sb.append("        int i = 0;\n");
+        sb.append("        long sum = 0;\n");
+        sb.append("        while (i < n) {\n");
+        sb.append("            switch (i % 3) {\n");
+        sb.append("                case 0:\n");
+        sb.append("                    sum = sum + i;\n");
+        sb.append("                    break;\n");
+        sb.append("                case 1:\n");
+        sb.append("                    sum = sum - 1;\n");
+        sb.append("                    break;\n");
+        sb.append("                default:\n");
+        sb.append("                    sum = sum * 2 % 1000003;\n");
+        sb.append("            }\n");
+        sb.append("            i++;\n");
+        sb.append("        }\n");
+        sb.append("        int j = 0;\n");
+        sb.append("        do {\n");
+        sb.append("            sum = sum + fib(j % 8);\n");
+        sb.append("            j++;\n");
+        sb.append("        } while (j < n / 20);\n");
+        sb.append("        for (int k = 0; k < n / 100; k++) {\n");
+        sb.append("            System.out.println(\"sum \" + sum + \" at \" + k);\n");
+        sb.append("        }\n");
+        sb.append("        System.out.println(calls);\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Generate one method whose body is a left-deep chain "s" + a + b + ... of the given length
+     */
+    static String generateConcatChain(int terms) {
+        StringBuilder sb = new StringBuilder(terms * 8);
+        sb.append("public class Chain {\n");
+        sb.append("    public static String join(int a, double b) {\n");
+        sb.append("        String s = \"s\"");
+        for (int i = 0; i < terms; i++) {
+            sb.append(i % 2 == 0 ? " + a" : " + b");
+        }
+        sb.append(";\n");
+        sb.append("        return s;\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Generate a valid program with the given number of methods,
+     * using every statement form the grammar accepts
+     */
+    static String generateSource(int methods) {
+        StringBuilder sb = new StringBuilder(methods * 700);
+        sb.append("public class Generated {\n");
+        sb.append("    private int counter;\n\n");
+        for (int i = 0; i < methods; i++) {
+            sb.append("    // method ").append(i).append('\n');
+            sb.append("    public static int m").append(i).append("(int a, int b) {\n");
+            sb.append("        int sum = 0;\n");
+            sb.append("        /* accumulate over\n           the range */\n");
+            sb.append("        for (int k = 0; k < a; k++) {\n");
+            sb.append("            sum = sum + k * b - 3 / 1;\n");
+            sb.append("        }\n");
+            sb.append("        while (sum > 100) {\n");
+            sb.append("            sum = sum - 7;\n");
+            sb.append("        }\n");
+            sb.append("        do {\n");
+            sb.append("            sum++;\n");
+            sb.append("        } while (sum < 3);\n");
+            sb.append("        if (sum >= 10 && b != 0) {\n");
+            sb.append("            sum = sum % 10;\n");
+            sb.append("        } else {\n");
+            sb.append("            sum = sum + 1;\n");
+            sb.append("        }\n");
+            sb.append("        double ratio = sum * 1.5;\n");
+            sb.append("        boolean flag = !(ratio < 2.0) || false;\n");
+            sb.append("        String label = \"m").append(i).append(" \" + sum;\n");
+            sb.append("        switch (b) {\n");
+            sb.append("            case 1:\n");
+            sb.append("                sum = sum + 1;\n");
+            sb.append("                break;\n");
+            sb.append("            default:\n");
+            sb.append("                sum = 0;\n");
+            sb.append("        }\n");
+            if (i > 0) {
+                sb.append("        sum = m").append(i - 1).append("(sum, b);\n");
+            }
+            sb.append("        System.out.println(label);\n");
+            sb.append("        return sum;\n");
+            sb.append("    }\n\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
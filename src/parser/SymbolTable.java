@@ -1,5 +1,7 @@
 package parser;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 /**
@@ -8,20 +10,67 @@ import java.util.*;
  */
 public class SymbolTable {
 
-    // Store all tokens for Phase 1 output
-    private List<TokenEntry> tokens;
+    // Columnar token store for Phase 1 output: one slot per token in each array
+    private static final int INITIAL_TOKEN_CAPACITY = 256;
+    private int tokenCount;
+    private int[] tokenKinds;
+    private int[] tokenTypes;
+    private int[] tokenLines;
+    private int[] tokenColumns;
+    private int[] tokenOffsets;
+
+    // Lexemes are appended back to back; token i spans [offset(i), offset(i + 1))
+    private char[] lexemePool;
+    private int lexemePoolSize;
+
+    // Token type names are interned once and referenced by id
+    private List<String> typeNames;
+    private Map<String, Integer> typeIds;
+
+    private final TokenView tokenView = new TokenView();
 
     // Store variables for semantic analysis
-    private Map<String, VariableInfo> variables;
+    // Open-addressed table from name to the innermost visible declaration; each
+    // declaration links to the one it shadows, so lookup is a single probe sequence
+    private static final int INITIAL_SLOT_CAPACITY = 64;
+    private String[] slotNames;
+    private VariableInfo[] slotHeads;
+    private int slotCount;
 
-    // Scope management (for bonus Phase 4)
-    private Stack<Map<String, VariableInfo>> scopeStack;
+    // Undo log: declarations in the order they were made, and the log size at each scope entry
+    private VariableInfo[] declared;
+    private int declaredCount;
+    private int[] scopeMarks;
+    private int scopeDepth;
+
+    // Every declaration of the file in source order, kept after its scope closes
+    private List<VariableInfo> variables;
 
     public SymbolTable() {
-        this.tokens = new ArrayList<>();
-        this.variables = new HashMap<>();
-        this.scopeStack = new Stack<>();
-        this.scopeStack.push(variables); // Global scope
+        this.tokenKinds = new int[INITIAL_TOKEN_CAPACITY];
+        this.tokenTypes = new int[INITIAL_TOKEN_CAPACITY];
+        this.tokenLines = new int[INITIAL_TOKEN_CAPACITY];
+        this.tokenColumns = new int[INITIAL_TOKEN_CAPACITY];
+        this.tokenOffsets = new int[INITIAL_TOKEN_CAPACITY];
+        this.lexemePool = new char[INITIAL_TOKEN_CAPACITY * 8];
+        this.typeNames = new ArrayList<>();
+        this.typeIds = new HashMap<>();
+        this.slotNames = new String[INITIAL_SLOT_CAPACITY];
+        this.slotHeads = new VariableInfo[INITIAL_SLOT_CAPACITY];
+        this.declared = new VariableInfo[INITIAL_SLOT_CAPACITY];
+        this.scopeMarks = new int[16];
+        this.variables = new ArrayList<>();
+    }
+
+    /**
+     * Create a symbol table whose token type ids 0..n-1 are the given names,
+     * so callers with a precomputed kind-to-type table can record by id
+     */
+    public SymbolTable(String[] tokenTypeNames) {
+        this();
+        for (String name : tokenTypeNames) {
+            internType(name);
+        }
     }
 
     // ==================== TOKEN MANAGEMENT ====================
@@ -30,51 +79,344 @@ public class SymbolTable {
      * Record a token for symbol table display
      */
     public void addToken(Token token, String tokenType) {
-        tokens.add(new TokenEntry(tokenType, token.image,
-                token.beginLine, token.beginColumn));
+        appendToken(token, internType(tokenType));
     }
 
     /**
-     * Get all recorded tokens
+     * Record a token whose type id was assigned by this table
      */
-    public List<TokenEntry> getTokens() {
-        return tokens;
+    public void addToken(Token token, int typeId) {
+        if (typeId < 0 || typeId >= typeNames.size()) {
+            throw new IllegalArgumentException("Unknown token type id " + typeId);
+        }
+        appendToken(token, typeId);
     }
-    private String normalize(String text) {
-        return text
-                .replace("\r\n", " ")
-                .replace("\n", " ")
-                .replace("\r", " ")
-                .replace("\t", " ")
-                .trim();
+
+    private void appendToken(Token token, int typeId) {
+        if (tokenCount == tokenKinds.length) {
+            growTokenColumns();
+        }
+        String image = token.image;
+        int length = image.length();
+        if (lexemePoolSize + length > lexemePool.length) {
+            lexemePool = Arrays.copyOf(lexemePool, Math.max(lexemePool.length * 2, lexemePoolSize + length));
+        }
+        image.getChars(0, length, lexemePool, lexemePoolSize);
+
+        int i = tokenCount++;
+        tokenKinds[i] = token.kind;
+        tokenTypes[i] = typeId;
+        tokenLines[i] = token.beginLine;
+        tokenColumns[i] = token.beginColumn;
+        tokenOffsets[i] = lexemePoolSize;
+        lexemePoolSize += length;
     }
+
+    private void growTokenColumns() {
+        int capacity = tokenKinds.length * 2;
+        tokenKinds = Arrays.copyOf(tokenKinds, capacity);
+        tokenTypes = Arrays.copyOf(tokenTypes, capacity);
+        tokenLines = Arrays.copyOf(tokenLines, capacity);
+        tokenColumns = Arrays.copyOf(tokenColumns, capacity);
+        tokenOffsets = Arrays.copyOf(tokenOffsets, capacity);
+    }
+
+    private int internType(String tokenType) {
+        Integer id = typeIds.get(tokenType);
+        if (id == null) {
+            id = typeNames.size();
+            typeNames.add(tokenType);
+            typeIds.put(tokenType, id);
+        }
+        return id;
+    }
+
+    /**
+     * Get a read-only view over all recorded tokens
+     */
+    public TokenView getTokens() {
+        return tokenView;
+    }
+
+    /**
+     * Append the lexeme of token i with line breaks and tabs turned into
+     * single spaces and surrounding whitespace trimmed
+     */
+    private void appendNormalizedLexeme(StringBuilder out, int i) {
+        int start = tokenOffsets[i];
+        int end = i + 1 < tokenCount ? tokenOffsets[i + 1] : lexemePoolSize;
+        while (start < end && lexemePool[start] <= ' ') start++;
+        while (end > start && lexemePool[end - 1] <= ' ') end--;
+
+        for (int j = start; j < end; j++) {
+            char c = lexemePool[j];
+            if (c == '\r' && j + 1 < end && lexemePool[j + 1] == '\n') {
+                j++;
+                out.append(' ');
+            } else if (c == '\r' || c == '\n' || c == '\t') {
+                out.append(' ');
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    private static void padTo(StringBuilder out, int start, int width) {
+        while (out.length() - start < width) {
+            out.append(' ');
+        }
+    }
+
+    private static void appendRightAligned(StringBuilder out, int value, int width) {
+        int start = out.length();
+        out.append(value);
+        while (out.length() - start < width) {
+            out.insert(start, ' ');
+        }
+    }
+
     /**
      * Print symbol table in formatted style
      */
     public void printSymbolTable() {
-        System.out.println("\n========== SYMBOL TABLE ==========");
-        System.out.println();
-        System.out.println(String.format("%-15s %-10s %-8s %-10s %-10s",
+        OutputRenderer out = OutputRenderer.toStandardOutput();
+        printSymbolTable(out);
+        out.flush();
+    }
+
+    /**
+     * Stream the symbol table through a renderer, one reused row buffer for all tokens
+     */
+    public void printSymbolTable(OutputRenderer out) {
+        out.println("\n========== SYMBOL TABLE ==========");
+        out.println();
+        out.println(String.format("%-15s %-10s %-8s %-10s %-10s",
                 "NAME", "TYPE", "SCOPE", "LINE", "COLUMN"));
-        System.out.println("----------------------------------------------------------------------");
-        int count = 1;
-        for (TokenEntry entry : tokens) {
-            System.out.printf("│ %-4d │ %-19s │ %-22s │ %4d │ %6d │%n",
-                    count++, entry.type, normalize(entry.lexeme), entry.line, entry.column);
+        out.println("----------------------------------------------------------------------");
+        StringBuilder row = new StringBuilder(96);
+        String newline = System.lineSeparator();
+        for (int i = 0; i < tokenCount; i++) {
+            row.setLength(0);
+            row.append("│ ");
+            int cell = row.length();
+            row.append(i + 1);
+            padTo(row, cell, 4);
+            row.append(" │ ");
+            cell = row.length();
+            row.append(typeNames.get(tokenTypes[i]));
+            padTo(row, cell, 19);
+            row.append(" │ ");
+            cell = row.length();
+            appendNormalizedLexeme(row, i);
+            padTo(row, cell, 22);
+            row.append(" │ ");
+            appendRightAligned(row, tokenLines[i], 4);
+            row.append(" │ ");
+            appendRightAligned(row, tokenColumns[i], 6);
+            row.append(" │").append(newline);
+            out.print(row);
+        }
+
+        out.println("└──────┴─────────────────────┴────────────────────────┴──────┴────────┘");
+    }
+
+    /**
+     * Write the recorded tokens: type names, the token columns and the lexemes
+     * Each column is written whole, with lines as the change from the previous
+     * token and lexemes by length, so the stream compresses well.
+     */
+    public void writeTokens(DataOutputStream out) throws IOException {
+        out.writeInt(typeNames.size());
+        for (String name : typeNames) {
+            out.writeUTF(name);
+        }
+        out.writeInt(tokenCount);
+        for (int i = 0; i < tokenCount; i++) {
+            out.writeInt(tokenKinds[i]);
+        }
+        for (int i = 0; i < tokenCount; i++) {
+            out.writeInt(tokenTypes[i]);
+        }
+        for (int i = 0; i < tokenCount; i++) {
+            out.writeInt(i == 0 ? tokenLines[0] : tokenLines[i] - tokenLines[i - 1]);
+        }
+        for (int i = 0; i < tokenCount; i++) {
+            out.writeInt(tokenColumns[i]);
+        }
+        for (int i = 0; i < tokenCount; i++) {
+            out.writeInt((i + 1 < tokenCount ? tokenOffsets[i + 1] : lexemePoolSize) - tokenOffsets[i]);
+        }
+        byte[] lexemes = new String(lexemePool, 0, lexemePoolSize).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(lexemes.length);
+        out.write(lexemes);
+    }
+
+    /**
+     * Replace the recorded tokens with ones written by writeTokens
+     * Variables are cleared as well.
+     */
+    public void readTokens(DataInputStream in) throws IOException {
+        clear();
+        int[] typeMap = new int[in.readInt()];
+        for (int i = 0; i < typeMap.length; i++) {
+            typeMap[i] = internType(in.readUTF());
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt token table header");
+        }
+        while (tokenKinds.length < count) {
+            growTokenColumns();
+        }
+        for (int i = 0; i < count; i++) {
+            tokenKinds[i] = in.readInt();
+        }
+        for (int i = 0; i < count; i++) {
+            int type = in.readInt();
+            if (type < 0 || type >= typeMap.length) {
+                throw new IOException("Corrupt token type " + type);
+            }
+            tokenTypes[i] = typeMap[type];
+        }
+        for (int i = 0; i < count; i++) {
+            tokenLines[i] = in.readInt() + (i == 0 ? 0 : tokenLines[i - 1]);
+        }
+        for (int i = 0; i < count; i++) {
+            tokenColumns[i] = in.readInt();
+        }
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            tokenOffsets[i] = offset;
+            offset += in.readInt();
+        }
+        byte[] lexemes = new byte[in.readInt()];
+        in.readFully(lexemes);
+        char[] chars = new String(lexemes, StandardCharsets.UTF_8).toCharArray();
+        if (chars.length != offset) {
+            throw new IOException("Corrupt lexeme pool");
+        }
+        lexemePool = chars.length > lexemePool.length ? chars : lexemePool;
+        if (lexemePool != chars) {
+            System.arraycopy(chars, 0, lexemePool, 0, chars.length);
+        }
+        tokenCount = count;
+        lexemePoolSize = offset;
+    }
+
+    /**
+     * Replace tokens from (inclusive) to to (exclusive) with all tokens of source,
+     * moving the tokens after them by lineDelta lines, for part of the input that was lexed again
+     */
+    public void replaceTokens(int from, int to, SymbolTable source, int lineDelta) {
+        if (from < 0 || from > to || to > tokenCount) {
+            throw new IndexOutOfBoundsException("Token range [" + from + ", " + to + ") out of range [0, "
+                    + tokenCount + ")");
+        }
+        int inserted = source.tokenCount;
+        int tail = tokenCount - to;
+        int newCount = from + inserted + tail;
+        while (tokenKinds.length < newCount) {
+            growTokenColumns();
         }
 
-        System.out.println("└──────┴─────────────────────┴────────────────────────┴──────┴────────┘");
+        int poolFrom = from < tokenCount ? tokenOffsets[from] : lexemePoolSize;
+        int poolTo = to < tokenCount ? tokenOffsets[to] : lexemePoolSize;
+        int poolTail = lexemePoolSize - poolTo;
+        int newPoolSize = poolFrom + source.lexemePoolSize + poolTail;
+        if (newPoolSize > lexemePool.length) {
+            lexemePool = Arrays.copyOf(lexemePool, Math.max(lexemePool.length * 2, newPoolSize));
+        }
+
+        // Move the tail first, so it is not overwritten by the replacement
+        int at = from + inserted;
+        System.arraycopy(tokenKinds, to, tokenKinds, at, tail);
+        System.arraycopy(tokenTypes, to, tokenTypes, at, tail);
+        System.arraycopy(tokenLines, to, tokenLines, at, tail);
+        System.arraycopy(tokenColumns, to, tokenColumns, at, tail);
+        System.arraycopy(tokenOffsets, to, tokenOffsets, at, tail);
+        System.arraycopy(lexemePool, poolTo, lexemePool, poolFrom + source.lexemePoolSize, poolTail);
+        int poolShift = poolFrom + source.lexemePoolSize - poolTo;
+        for (int i = at; i < newCount; i++) {
+            tokenLines[i] += lineDelta;
+            tokenOffsets[i] += poolShift;
+        }
+
+        int[] typeMap = new int[source.typeNames.size()];
+        for (int t = 0; t < typeMap.length; t++) {
+            typeMap[t] = internType(source.typeNames.get(t));
+        }
+        System.arraycopy(source.tokenKinds, 0, tokenKinds, from, inserted);
+        System.arraycopy(source.tokenLines, 0, tokenLines, from, inserted);
+        System.arraycopy(source.tokenColumns, 0, tokenColumns, from, inserted);
+        for (int i = 0; i < inserted; i++) {
+            tokenTypes[from + i] = typeMap[source.tokenTypes[i]];
+            tokenOffsets[from + i] = poolFrom + source.tokenOffsets[i];
+        }
+        System.arraycopy(source.lexemePool, 0, lexemePool, poolFrom, source.lexemePoolSize);
+        tokenCount = newCount;
+        lexemePoolSize = newPoolSize;
     }
 
     // ==================== VARIABLE MANAGEMENT ====================
     public boolean isVariableDeclared(String name) {
         return lookupVariable(name) != null;
-    }    /**
+    }
+
+    /**
+     * Open a nested scope; declarations made until the matching exitScope are dropped by it
+     */
+    public void enterScope() {
+        if (scopeDepth == scopeMarks.length) {
+            scopeMarks = Arrays.copyOf(scopeMarks, scopeDepth * 2);
+        }
+        scopeMarks[scopeDepth++] = declaredCount;
+    }
+
+    /**
+     * Close the innermost scope, making any declarations it shadowed visible again
+     */
+    public void exitScope() {
+        if (scopeDepth == 0) {
+            throw new IllegalStateException("No scope to exit");
+        }
+        int mark = scopeMarks[--scopeDepth];
+        while (declaredCount > mark) {
+            VariableInfo info = declared[--declaredCount];
+            declared[declaredCount] = null;
+            slotHeads[findSlot(info.name)] = info.shadowed;
+        }
+    }
+
+    /**
+     * Nesting depth of the current scope, 0 for the global scope
+     */
+    public int getScopeDepth() {
+        return scopeDepth;
+    }
+
+    /**
      * Add a variable to the symbol table
      */
-    public void addVariable(String name, String type, int line) {
-        Map<String, VariableInfo> currentScope = scopeStack.peek();
-        currentScope.put(name, new VariableInfo(name, type, line));
+    public VariableInfo addVariable(String name, String type, int line) {
+        VariableInfo info = new VariableInfo(name, type, line, scopeDepth);
+        int slot = findSlot(name);
+        boolean newName = slotNames[slot] == null;
+        if (newName) {
+            slotNames[slot] = name;
+            slotCount++;
+        }
+        info.shadowed = slotHeads[slot];
+        slotHeads[slot] = info;
+        if (newName && slotCount * 4 > slotNames.length * 3) {
+            rehash();
+        }
+
+        if (declaredCount == declared.length) {
+            declared = Arrays.copyOf(declared, declaredCount * 2);
+        }
+        declared[declaredCount++] = info;
+        variables.add(info);
+        return info;
     }
 
     /**
@@ -91,57 +433,141 @@ public class SymbolTable {
      * Lookup a variable in current and parent scopes
      */
     public VariableInfo lookupVariable(String name) {
-        // Search from innermost to outermost scope
-        for (int i = scopeStack.size() - 1; i >= 0; i--) {
-            Map<String, VariableInfo> scope = scopeStack.get(i);
-            if (scope.containsKey(name)) {
-                return scope.get(name);
+        return slotHeads[findSlot(name)];
+    }
+
+    /**
+     * Slot holding name, or the empty slot where it would be inserted
+     */
+    private int findSlot(String name) {
+        int mask = slotNames.length - 1;
+        int slot = name.hashCode() * 0x9E3779B9 >>> 7 & mask;
+        String slotName;
+        while ((slotName = slotNames[slot]) != null && !slotName.equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        String[] oldNames = slotNames;
+        VariableInfo[] oldHeads = slotHeads;
+
+        // Names with nothing in scope are dropped, so the table only grows with live names
+        int live = 0;
+        for (VariableInfo head : oldHeads) {
+            if (head != null) {
+                live++;
+            }
+        }
+        int capacity = live * 2 > oldNames.length ? oldNames.length * 2 : oldNames.length;
+        slotNames = new String[capacity];
+        slotHeads = new VariableInfo[capacity];
+        slotCount = 0;
+        for (int i = 0; i < oldNames.length; i++) {
+            if (oldHeads[i] != null) {
+                int slot = findSlot(oldNames[i]);
+                slotNames[slot] = oldNames[i];
+                slotHeads[slot] = oldHeads[i];
+                slotCount++;
             }
         }
-        return null;
     }
 
 
     // ==================== UTILITY METHODS ====================
 
     /**
-     * Check for unused variables
+     * Check for unused variables, in declaration order
      */
     public List<String> getUnusedVariables() {
         List<String> unused = new ArrayList<>();
-        for (VariableInfo info : variables.values()) {
+        for (VariableInfo info : variables) {
             if (!info.used) {
-                unused.add(info.name + " (line " + info.line + ")");
+                unused.add(describeUnused(info));
             }
         }
         return unused;
     }
+    /**
+     * How an unused variable is listed
+     */
+    static String describeUnused(VariableInfo info) {
+        return info.name + " (line " + info.line + ")";
+    }
+
     /**
      * Clear all data
      */
     public void clear() {
-        tokens.clear();
+        tokenCount = 0;
+        lexemePoolSize = 0;
+        Arrays.fill(slotNames, null);
+        Arrays.fill(slotHeads, null);
+        slotCount = 0;
+        Arrays.fill(declared, 0, declaredCount, null);
+        declaredCount = 0;
+        scopeDepth = 0;
         variables.clear();
-        scopeStack.clear();
-        scopeStack.push(new HashMap<>());
     }
 
     // ==================== INNER CLASSES ====================
 
     /**
-     * Represents a token entry in the symbol table
+     * Indexed read-only view over the token store.
+     * Reads go straight to the columns, so iterating allocates nothing
+     * unless a lexeme is requested as a String.
      */
-    public static class TokenEntry {
-        public String type;
-        public String lexeme;
-        public int line;
-        public int column;
+    public class TokenView {
+        public int size() {
+            return tokenCount;
+        }
 
-        public TokenEntry(String type, String lexeme, int line, int column) {
-            this.type = type;
-            this.lexeme = lexeme;
-            this.line = line;
-            this.column = column;
+        public int getKind(int i) {
+            checkIndex(i);
+            return tokenKinds[i];
+        }
+
+        public String getType(int i) {
+            checkIndex(i);
+            return typeNames.get(tokenTypes[i]);
+        }
+
+        public int getLine(int i) {
+            checkIndex(i);
+            return tokenLines[i];
+        }
+
+        public int getColumn(int i) {
+            checkIndex(i);
+            return tokenColumns[i];
+        }
+
+        /**
+         * Offset of the lexeme of token i in the lexeme pool
+         */
+        public int getOffset(int i) {
+            checkIndex(i);
+            return tokenOffsets[i];
+        }
+
+        public int getLexemeLength(int i) {
+            checkIndex(i);
+            return (i + 1 < tokenCount ? tokenOffsets[i + 1] : lexemePoolSize) - tokenOffsets[i];
+        }
+
+        public String getLexeme(int i) {
+            return new String(lexemePool, getOffset(i), getLexemeLength(i));
+        }
+
+        public void appendLexeme(StringBuilder out, int i) {
+            out.append(lexemePool, getOffset(i), getLexemeLength(i));
+        }
+
+        private void checkIndex(int i) {
+            if (i < 0 || i >= tokenCount) {
+                throw new IndexOutOfBoundsException("Token index " + i + " out of range [0, " + tokenCount + ")");
+            }
         }
     }
 
@@ -151,13 +577,18 @@ public class SymbolTable {
     public static class VariableInfo {
         public String name;
         public String type;
+        public int typeId;
         public int line;
         public boolean used;
         public int scopeLevel;
 
+        // Declaration of the same name this one hides, restored when its scope exits
+        private VariableInfo shadowed;
+
         public VariableInfo(String name, String type, int line) {
             this.name = name;
             this.type = type;
+            this.typeId = TypeIds.intern(type);
             this.line = line;
             this.used = false;
             this.scopeLevel = 0;
@@ -166,6 +597,7 @@ public class SymbolTable {
         public VariableInfo(String name, String type, int line, int scopeLevel) {
             this.name = name;
             this.type = type;
+            this.typeId = TypeIds.intern(type);
             this.line = line;
             this.used = false;
             this.scopeLevel = scopeLevel;
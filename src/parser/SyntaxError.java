@@ -0,0 +1,59 @@
+package parser;
+
+import java.util.*;
+
+/**
+ * A syntax error found while parsing, with its line as the lexer read it
+ * Error reporting looks at the line through these tokens and text instead of
+ * reading the file again.
+ */
+public class SyntaxError {
+
+    private final ParseException exception;
+    private final List<Token> lineTokens;
+    private final String lineText;
+
+    public SyntaxError(ParseException exception, List<Token> lineTokens, String lineText) {
+        this.exception = exception;
+        this.lineTokens = lineTokens;
+        this.lineText = lineText;
+    }
+
+    public ParseException getException() {
+        return exception;
+    }
+
+    /**
+     * The token the parser could not accept
+     */
+    public Token getToken() {
+        return exception.currentToken.next;
+    }
+
+    public int getLine() {
+        return getToken().beginLine;
+    }
+
+    public int getColumn() {
+        return getToken().beginColumn;
+    }
+
+    public String getMessage() {
+        return exception.getMessage();
+    }
+
+    /**
+     * Tokens on the error line, from the start of the statement or member being parsed
+     * through the end of the line
+     */
+    public List<Token> getLineTokens() {
+        return lineTokens;
+    }
+
+    /**
+     * Source text of the error line without its line break, or null if the input could not provide it
+     */
+    public String getLineText() {
+        return lineText;
+    }
+}
@@ -1,50 +1,75 @@
 package parser;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Type Checker for semantic analysis
  * Performs type checking for expressions and variable assignments
  */
 public class TypeChecker {
-    private Map<String, Map<String, String>> methodLocalVariables; // methodName -> (varName -> type)
+    private Map<String, Integer> localVariables; // varName -> type id for the current method, null outside one
+    private Map<String, Boolean> finalLocals; // final local -> whether it was declared with a value, null outside a method
+    private Map<String, Integer> fieldTypes; // fieldName -> type id, taken from the AST
     private SymbolTable symbolTable;
     private List<String> errors;
     private List<String> warnings;
 
-    // Type compatibility matrix
-    private static final Map<String, Set<String>> COMPATIBLE_TYPES = new HashMap<>();
+    // Return type of the method being analyzed when outside any method
+    private static final int NO_METHOD = -1;
 
-    static {
-        // Numeric type hierarchy (implicit widening conversions)
-        COMPATIBLE_TYPES.put("byte", new HashSet<>(Arrays.asList("byte", "short", "int", "long", "float", "double")));
-        COMPATIBLE_TYPES.put("short", new HashSet<>(Arrays.asList("short", "int", "long", "float", "double")));
-        COMPATIBLE_TYPES.put("int", new HashSet<>(Arrays.asList("int", "long", "float", "double")));
-        COMPATIBLE_TYPES.put("long", new HashSet<>(Arrays.asList("long", "float", "double")));
-        COMPATIBLE_TYPES.put("float", new HashSet<>(Arrays.asList("float", "double")));
-        COMPATIBLE_TYPES.put("double", new HashSet<>(Arrays.asList("double")));
-        COMPATIBLE_TYPES.put("char", new HashSet<>(Arrays.asList("char", "int", "long", "float", "double")));
+    // Built from the whole tree before any method body is checked
+    private SignatureIndex signatures = SignatureIndex.EMPTY;
 
-        // Boolean (no implicit conversion)
-        COMPATIBLE_TYPES.put("boolean", new HashSet<>(Arrays.asList("boolean")));
+    // Each analyze() call gets a fresh stamp; a node's cached type is valid only under the current one
+    private static final AtomicInteger ANALYSIS_STAMPS = new AtomicInteger();
+    private int analysisStamp;
 
-        // String (no implicit conversion)
-        COMPATIBLE_TYPES.put("String", new HashSet<>(Arrays.asList("String")));
-    }
-    private Map<String, MethodSignature> methodSignatures;
+    private final ExpressionTyper expressionTyper = new ExpressionTyper();
+
+    // Operator nodes queued by typeOperands, parents before their operands
+    private ASTNode[] pendingOperators = new ASTNode[16];
+    private int pendingCount;
+
+    // Rules run in the same walk as the type checks; shared with the analyzeParallel contexts
+    private final List<AnalysisRule> extraRules;
+    private final TypeRule typeRule = new TypeRule();
+    private final AnalysisRule.Diagnostics diagnostics = new AnalysisRule.Diagnostics() {
+        public void error(String message) {
+            errors.add(message);
+        }
+
+        public void warning(String message) {
+            warnings.add(message);
+        }
+    };
+
+    // Class whose members are being analyzed; unqualified calls resolve against it
+    private String currentClassName = "";
+    private Map<String, Integer> classFieldsSnapshot; // fieldTypes as of the current class, for method contexts
+
+    // The call of the MemberAccess being analyzed, which resolves against the named class
+    private ASTNode qualifiedCall;
 
     // NEW: Current method context for return type checking
     private String currentMethodName = null;
-    private String currentMethodReturnType = null;
+    private int currentMethodReturnType = NO_METHOD;
 
     // NEW: Method signature class
     public static class MethodSignature {
         String name;
-        String returnType;
+        int returnType;
         List<Parameter> parameters;
         int line;
+        MethodNode declaration; // set for signatures taken from the AST
 
         public MethodSignature(String name, String returnType, List<Parameter> parameters, int line) {
+            this(name, TypeIds.intern(returnType), parameters, line);
+        }
+
+        MethodSignature(String name, int returnType, List<Parameter> parameters, int line) {
             this.name = name;
             this.returnType = returnType;
             this.parameters = parameters != null ? parameters : new ArrayList<>();
@@ -55,10 +80,14 @@ public class TypeChecker {
     // NEW: Parameter class
     public static class Parameter {
         String name;
-        String type;
+        int type;
         boolean isArray;
 
         public Parameter(String name, String type, boolean isArray) {
+            this(name, TypeIds.intern(type), isArray);
+        }
+
+        Parameter(String name, int type, boolean isArray) {
             this.name = name;
             this.type = type;
             this.isArray = isArray;
@@ -68,9 +97,42 @@ public class TypeChecker {
         this.symbolTable = symbolTable;
         this.errors = new ArrayList<>();
         this.warnings = new ArrayList<>();
-        this.methodSignatures = new HashMap<>();
-        this.methodLocalVariables = new HashMap<>();  // INITIALIZE
+        this.fieldTypes = new HashMap<>();
+        this.extraRules = new ArrayList<>();
+
+    }
 
+    /**
+     * Context for checking one method body in analyzeParallel
+     * Shares the symbol table and the collected signatures, which are only read,
+     * and keeps its own diagnostics and method state.
+     */
+    private TypeChecker(TypeChecker parent, String className, Map<String, Integer> fieldTypes) {
+        this.symbolTable = parent.symbolTable;
+        this.errors = new ArrayList<>();
+        this.warnings = new ArrayList<>();
+        this.signatures = parent.signatures;
+        this.extraRules = parent.extraRules;
+        this.currentClassName = className;
+        this.fieldTypes = fieldTypes;
+        this.analysisStamp = parent.analysisStamp;
+    }
+
+    /**
+     * Drop all results and collected signatures so the checker can analyze another program
+     */
+    public void reset() {
+        errors.clear();
+        warnings.clear();
+        signatures = SignatureIndex.EMPTY;
+        localVariables = null;
+        finalLocals = null;
+        fieldTypes.clear();
+        currentClassName = "";
+        classFieldsSnapshot = null;
+        qualifiedCall = null;
+        currentMethodName = null;
+        currentMethodReturnType = NO_METHOD;
     }
 
     /**
@@ -80,19 +142,7 @@ public class TypeChecker {
         if (fromType == null || toType == null) {
             return false;
         }
-
-        // Exact match
-        if (fromType.equals(toType)) {
-            return true;
-        }
-
-        // Check if implicit conversion is allowed
-        Set<String> compatibleTypes = COMPATIBLE_TYPES.get(fromType);
-        if (compatibleTypes != null) {
-            return compatibleTypes.contains(toType);
-        }
-
-        return false;
+        return TypeIds.isAssignable(TypeIds.intern(fromType), TypeIds.intern(toType));
     }
 
     /**
@@ -102,172 +152,222 @@ public class TypeChecker {
         if (node == null) {
             return null;
         }
+        return TypeIds.name(typeOf(node));
+    }
 
-        if (node instanceof LiteralNode) {
-            return getLiteralType((LiteralNode) node);
-        } else if (node instanceof IdentifierNode) {
-            return getIdentifierType((IdentifierNode) node);
-        } else if (node instanceof BinaryOpNode) {
-            return getBinaryOpType((BinaryOpNode) node);
-        } else if (node instanceof UnaryOpNode) {
-            return getUnaryOpType((UnaryOpNode) node);
-        } else if (node instanceof MethodCallNode) {
-            return "unknown"; // Would need method signature info
-        } else if (node instanceof MemberAccessNode) {
-            return "unknown"; // Would need type inference
+    /**
+     * Type id of an expression
+     * Each node is typed once per analysis; later calls read the id cached on the node,
+     * so nested binary expressions are not re-typed at every level.
+     */
+    private int typeOf(ASTNode node) {
+        if (analysisStamp == 0) {
+            // Called outside analyze(): cache types for the duration of this call only
+            analysisStamp = ANALYSIS_STAMPS.incrementAndGet();
+            try {
+                return typeOf(node);
+            } finally {
+                analysisStamp = 0;
+            }
+        }
+        if (node.typeStamp == analysisStamp) {
+            return node.cachedTypeId;
+        }
+        if (isOperator(node)) {
+            typeOperands(node);
         }
+        return cacheType(node, node.accept(expressionTyper));
+    }
+
+    private int cacheType(ASTNode node, int type) {
+        node.cachedTypeId = type;
+        node.typeStamp = analysisStamp;
+        return type;
+    }
 
-        return "unknown";
+    private static boolean isOperator(ASTNode node) {
+        return node instanceof BinaryOpNode || node instanceof NaryOpNode || node instanceof UnaryOpNode;
     }
 
     /**
-     * Get type of literal
+     * Type every untyped operator below an operator, operands first
+     * Typing the operator itself then only reads cached operand types, so a long
+     * operator chain is typed without one stack frame per level.
      */
-    private String getLiteralType(LiteralNode node) {
-        // Access the type field using reflection or make it public
-        // For now, we'll infer from the node structure
+    private void typeOperands(ASTNode operator) {
+        int base = pendingCount;
         try {
-            java.lang.reflect.Field typeField = LiteralNode.class.getDeclaredField("type");
-            typeField.setAccessible(true);
-            return (String) typeField.get(node);
-        } catch (Exception e) {
-            return "unknown";
+            queueOperands(operator);
+            for (int next = base; next < pendingCount; next++) {
+                queueOperands(pendingOperators[next]);
+            }
+            // Each operator was queued after its parent, so typing back to front types operands first
+            for (int i = pendingCount - 1; i >= base; i--) {
+                ASTNode pending = pendingOperators[i];
+                cacheType(pending, pending.accept(expressionTyper));
+            }
+        } finally {
+            Arrays.fill(pendingOperators, base, pendingCount, null);
+            pendingCount = base;
+        }
+    }
+
+    private void queueOperands(ASTNode operator) {
+        if (operator instanceof BinaryOpNode) {
+            queueOperator(((BinaryOpNode) operator).getLeft());
+            queueOperator(((BinaryOpNode) operator).getRight());
+        } else if (operator instanceof NaryOpNode) {
+            for (ASTNode operand : ((NaryOpNode) operator).getOperands()) {
+                queueOperator(operand);
+            }
+        } else {
+            queueOperator(((UnaryOpNode) operator).getOperand());
         }
     }
 
+    private void queueOperator(ASTNode node) {
+        if (node == null || !isOperator(node) || node.typeStamp == analysisStamp) {
+            return;
+        }
+        if (pendingCount == pendingOperators.length) {
+            pendingOperators = Arrays.copyOf(pendingOperators, pendingCount * 2);
+        }
+        pendingOperators[pendingCount++] = node;
+    }
+
+    /**
+     * Get type of literal
+     */
+    private int getLiteralType(LiteralNode node) {
+        return node.getTypeId();
+    }
+
     /**
      * Get type of identifier (variable)
      */
-    private String getIdentifierType(IdentifierNode node) {
+    private int getIdentifierType(IdentifierNode node) {
         String name = node.getName();
-        if (currentMethodName != null) {
-            Map<String, String> localVars = methodLocalVariables.get(currentMethodName);
-            if (localVars != null && localVars.containsKey(name)) {
-                return localVars.get(name);
+        if (localVariables != null) {
+            Integer type = localVariables.get(name);
+            if (type != null) {
+                return type;
             }
         }
 
-        // SECOND: Check global symbol table (for fields)
+        // SECOND: Check fields of the class, then the global symbol table
+        Integer fieldType = fieldTypes.get(name);
+        if (fieldType != null) {
+            return fieldType;
+        }
         SymbolTable.VariableInfo varInfo = symbolTable.lookupVariable(name);
         if (varInfo != null) {
-            return varInfo.type;
+            return varInfo.typeId;
         }
 
-        return "unknown";
+        return TypeIds.UNKNOWN;
     }
 
     /**
      * Get result type of binary operation
      */
-    private String getBinaryOpType(BinaryOpNode node) {
-        try {
-            java.lang.reflect.Field opField = BinaryOpNode.class.getDeclaredField("operator");
-            java.lang.reflect.Field leftField = BinaryOpNode.class.getDeclaredField("left");
-            java.lang.reflect.Field rightField = BinaryOpNode.class.getDeclaredField("right");
-
-            opField.setAccessible(true);
-            leftField.setAccessible(true);
-            rightField.setAccessible(true);
-
-            String operator = (String) opField.get(node);
-            ASTNode left = (ASTNode) leftField.get(node);
-            ASTNode right = (ASTNode) rightField.get(node);
-
-            String leftType = getExpressionType(left);
-            String rightType = getExpressionType(right);
-
-            // Relational and equality operators return boolean
-            if (operator.equals("==") || operator.equals("!=") ||
-                    operator.equals("<") || operator.equals(">") ||
-                    operator.equals("<=") || operator.equals(">=")) {
-                return "boolean";
-            }
+    private int getBinaryOpType(BinaryOpNode node) {
+        int leftType = typeOf(node.getLeft());
+        int rightType = typeOf(node.getRight());
+        return binaryOpType(node.getOperator(), leftType, rightType);
+    }
 
-            // Logical operators return boolean
-            if (operator.equals("&&") || operator.equals("||")) {
-                return "boolean";
-            }
+    /**
+     * Get result type of an operator chain, folding from the left like the BinaryOp chain it stands for
+     */
+    private int getNaryOpType(NaryOpNode node) {
+        List<ASTNode> operands = node.getOperands();
+        int type = typeOf(operands.get(0));
+        for (int i = 1; i < operands.size(); i++) {
+            type = binaryOpType(node.getOperator(), type, typeOf(operands.get(i)));
+        }
+        return type;
+    }
 
-            // Arithmetic operators: return wider type
-            return getWiderType(leftType, rightType);
+    private static int binaryOpType(String operator, int leftType, int rightType) {
+        // Relational and equality operators return boolean
+        if (operator.equals("==") || operator.equals("!=") ||
+                operator.equals("<") || operator.equals(">") ||
+                operator.equals("<=") || operator.equals(">=")) {
+            return TypeIds.BOOLEAN;
+        }
 
-        } catch (Exception e) {
-            return "unknown";
+        // Logical operators return boolean
+        if (operator.equals("&&") || operator.equals("||")) {
+            return TypeIds.BOOLEAN;
         }
+
+        // Arithmetic operators: return wider type
+        return TypeIds.wider(leftType, rightType);
     }
 
     /**
      * Get result type of unary operation
      */
-    private String getUnaryOpType(UnaryOpNode node) {
-        try {
-            java.lang.reflect.Field opField = UnaryOpNode.class.getDeclaredField("operator");
-            java.lang.reflect.Field operandField = UnaryOpNode.class.getDeclaredField("operand");
-
-            opField.setAccessible(true);
-            operandField.setAccessible(true);
-
-            String operator = (String) opField.get(node);
-            ASTNode operand = (ASTNode) operandField.get(node);
-
-            String operandType = getExpressionType(operand);
-
-            // Logical NOT returns boolean
-            if (operator.equals("!")) {
-                return "boolean";
-            }
+    private int getUnaryOpType(UnaryOpNode node) {
+        int operandType = typeOf(node.getOperand());
 
-            // Unary minus, ++, -- return same type as operand
-            return operandType;
-
-        } catch (Exception e) {
-            return "unknown";
+        // Logical NOT returns boolean
+        if (node.getOperator().equals("!")) {
+            return TypeIds.BOOLEAN;
         }
+
+        // Unary minus, ++, -- return same type as operand
+        return operandType;
     }
 
     /**
-     * Get wider type for numeric promotion
+     * Get return type of a call to a method of the current class
      */
-    private String getWiderType(String type1, String type2) {
-        if (type1 == null || type2 == null) {
-            return "unknown";
-        }
-
-        // Order: byte < short < int < long < float < double
-        String[] typeOrder = {"byte", "short", "char", "int", "long", "float", "double"};
+    private int getMethodCallType(MethodCallNode node) {
+        MethodSignature signature = signatures.lookup(currentClassName, node.getMethodName(), argumentCount(node));
+        return signature != null ? signature.returnType : TypeIds.UNKNOWN;
+    }
 
-        int index1 = -1, index2 = -1;
-        for (int i = 0; i < typeOrder.length; i++) {
-            if (typeOrder[i].equals(type1)) index1 = i;
-            if (typeOrder[i].equals(type2)) index2 = i;
+    /**
+     * Get type of ClassName.method(...) or ClassName.field for a class of this program
+     */
+    private int getMemberAccessType(MemberAccessNode node) {
+        List<String> members = node.getMembers();
+        if (members.size() != 2 || !signatures.hasClass(members.get(0))) {
+            return TypeIds.UNKNOWN; // Would need type inference
         }
-
-        if (index1 == -1 || index2 == -1) {
-            return "unknown";
+        MethodCallNode call = (MethodCallNode) node.getMethodCall();
+        if (call == null) {
+            return signatures.fieldType(members.get(0), members.get(1));
         }
+        MethodSignature signature = signatures.lookup(members.get(0), call.getMethodName(), argumentCount(call));
+        return signature != null ? signature.returnType : TypeIds.UNKNOWN;
+    }
 
-        return typeOrder[Math.max(index1, index2)];
+    private static int argumentCount(MethodCallNode node) {
+        List<ASTNode> arguments = node.getArguments();
+        return arguments != null ? arguments.size() : 0;
     }
 
     /**
      * Check assignment statement for type compatibility
      */
     public void checkAssignment(String varName, ASTNode expression, int line) {
-        String varType = null;
+        Integer varType = null;
 
         // Check current method's local variables first
-        if (currentMethodName != null) {
-            Map<String, String> localVars = methodLocalVariables.get(currentMethodName);
-            if (localVars != null && localVars.containsKey(varName)) {
-                varType = localVars.get(varName);
-            }
+        if (localVariables != null) {
+            varType = localVariables.get(varName);
         }
 
-        // If not found locally, check global symbol table
+        // If not found locally, check fields and then the global symbol table
+        if (varType == null) {
+            varType = fieldTypes.get(varName);
+        }
         if (varType == null) {
             SymbolTable.VariableInfo varInfo = symbolTable.lookupVariable(varName);
             if (varInfo != null) {
-                varType = varInfo.type;
+                varType = varInfo.typeId;
             }
         }
 
@@ -276,15 +376,16 @@ public class TypeChecker {
             return;
         }
 
-        String exprType = getExpressionType(expression);
+        int exprType = typeOf(expression);
 
-        if (exprType.equals("unknown")) {
+        if (exprType == TypeIds.UNKNOWN) {
             warnings.add("Line " + line + ": Cannot determine type of expression in assignment to '" + varName + "'");
             return;
         }
 
-        if (!isAssignmentCompatible(exprType, varType)) {
-            errors.add("Line " + line + ": Type mismatch: cannot assign " + exprType + " to " + varType + " in variable '" + varName + "'");
+        if (!TypeIds.isAssignable(exprType, varType)) {
+            errors.add("Line " + line + ": Type mismatch: cannot assign " + TypeIds.name(exprType) + " to "
+                    + TypeIds.name(varType) + " in variable '" + varName + "'");
         }
     }
 
@@ -292,46 +393,51 @@ public class TypeChecker {
      * Check binary operation for type compatibility
      */
     public void checkBinaryOperation(String operator, ASTNode left, ASTNode right, int line) {
-        String leftType = getExpressionType(left);
-        String rightType = getExpressionType(right);
+        int leftType = typeOf(left);
+        int rightType = typeOf(right);
+        checkOperandTypes(operator, leftType, rightType, line);
+    }
 
-        if (leftType.equals("unknown") || rightType.equals("unknown")) {
+    private void checkOperandTypes(String operator, int leftType, int rightType, int line) {
+        if (leftType == TypeIds.UNKNOWN || rightType == TypeIds.UNKNOWN) {
             return; // Skip if types unknown
         }
 
         // Check relational operators require comparable types
         if (operator.equals("<") || operator.equals(">") ||
                 operator.equals("<=") || operator.equals(">=")) {
-            if (!isNumericType(leftType) || !isNumericType(rightType)) {
-                errors.add("Line " + line + ": Relational operator '" + operator + "' requires numeric operands, got " + leftType + " and " + rightType);
+            if (!TypeIds.isNumeric(leftType) || !TypeIds.isNumeric(rightType)) {
+                errors.add("Line " + line + ": Relational operator '" + operator + "' requires numeric operands, got "
+                        + TypeIds.name(leftType) + " and " + TypeIds.name(rightType));
             }
         }
 
         // Check equality operators
         if (operator.equals("==") || operator.equals("!=")) {
-            if (!leftType.equals(rightType) && !isAssignmentCompatible(leftType, rightType) && !isAssignmentCompatible(rightType, leftType)) {
-                warnings.add("Line " + line + ": Comparing incompatible types: " + leftType + " and " + rightType);
+            if (!TypeIds.isAssignable(leftType, rightType) && !TypeIds.isAssignable(rightType, leftType)) {
+                warnings.add("Line " + line + ": Comparing incompatible types: "
+                        + TypeIds.name(leftType) + " and " + TypeIds.name(rightType));
             }
         }
 
         // Check logical operators require boolean
         if (operator.equals("&&") || operator.equals("||")) {
-            if (!leftType.equals("boolean")) {
-                errors.add("Line " + line + ": Logical operator '" + operator + "' requires boolean operands, left operand is " + leftType);
+            if (leftType != TypeIds.BOOLEAN) {
+                errors.add("Line " + line + ": Logical operator '" + operator + "' requires boolean operands, left operand is " + TypeIds.name(leftType));
             }
-            if (!rightType.equals("boolean")) {
-                errors.add("Line " + line + ": Logical operator '" + operator + "' requires boolean operands, right operand is " + rightType);
+            if (rightType != TypeIds.BOOLEAN) {
+                errors.add("Line " + line + ": Logical operator '" + operator + "' requires boolean operands, right operand is " + TypeIds.name(rightType));
             }
         }
 
         // Check arithmetic operators require numeric types
         if (operator.equals("+") || operator.equals("-") ||
                 operator.equals("*") || operator.equals("/") || operator.equals("%")) {
-            if (!isNumericType(leftType) && !leftType.equals("String")) {
-                errors.add("Line " + line + ": Arithmetic operator '" + operator + "' requires numeric operands, left operand is " + leftType);
+            if (!TypeIds.isNumeric(leftType) && leftType != TypeIds.STRING) {
+                errors.add("Line " + line + ": Arithmetic operator '" + operator + "' requires numeric operands, left operand is " + TypeIds.name(leftType));
             }
-            if (!isNumericType(rightType) && !rightType.equals("String")) {
-                errors.add("Line " + line + ": Arithmetic operator '" + operator + "' requires numeric operands, right operand is " + rightType);
+            if (!TypeIds.isNumeric(rightType) && rightType != TypeIds.STRING) {
+                errors.add("Line " + line + ": Arithmetic operator '" + operator + "' requires numeric operands, right operand is " + TypeIds.name(rightType));
             }
         }
     }
@@ -340,41 +446,314 @@ public class TypeChecker {
      * Check if condition is boolean type
      */
     public void checkCondition(ASTNode condition, String statementType, int line) {
-        String condType = getExpressionType(condition);
+        int condType = typeOf(condition);
 
-        if (condType.equals("unknown")) {
+        if (condType == TypeIds.UNKNOWN) {
             warnings.add("Line " + line + ": Cannot determine type of " + statementType + " condition");
             return;
         }
 
-        if (!condType.equals("boolean")) {
-            errors.add("Line " + line + ": " + statementType + " condition must be boolean, got " + condType);
+        if (condType != TypeIds.BOOLEAN) {
+            errors.add("Line " + line + ": " + statementType + " condition must be boolean, got " + TypeIds.name(condType));
         }
     }
 
     /**
-     * Check if type is numeric
+     * Analyze the entire AST for type errors
      */
-    private boolean isNumericType(String type) {
-        return type.equals("byte") || type.equals("short") || type.equals("int") ||
-                type.equals("long") || type.equals("float") || type.equals("double") ||
-                type.equals("char");
+    public void analyze(ASTNode root) {
+        analysisStamp = ANALYSIS_STAMPS.incrementAndGet();
+        try {
+            signatures = SignatureIndex.build(root);
+            pipeline().run(root);
+        } finally {
+            analysisStamp = 0;
+        }
     }
 
     /**
-     * Analyze the entire AST for type errors
+     * Analyze a flat AST, holding one method body as objects at a time
+     * The classes, fields and method headers are read into an outline tree; each
+     * body is materialized just before the walk reaches it and dropped once it has
+     * been checked. The results are those of analyze(ast.toTree()).
      */
-    public void analyze(ASTNode root) {
-        analyzeNode(root);
+    public void analyze(FlatAst ast) {
+        Map<MethodNode, Integer> bodies = new IdentityHashMap<>();
+        ProgrameNode outline = outline(ast, bodies);
+        analyze(outline, bodiesOf(ast, bodies));
+    }
+
+    /**
+     * Analyze an outline whose method headers were read without their statements
+     * Each body is loaded from bodies just before the walk reaches it and dropped
+     * once it has been checked.
+     */
+    public void analyze(ProgrameNode outline, MethodBodies bodies) {
+        analysisStamp = ANALYSIS_STAMPS.incrementAndGet();
+        try {
+            signatures = SignatureIndex.build(outline);
+            new BodyLoadingPipeline(bodies).run(outline);
+        } finally {
+            analysisStamp = 0;
+        }
+    }
+
+    /**
+     * Where the statements of an outline's methods are loaded from
+     */
+    public interface MethodBodies {
+        /**
+         * The statements of header, or null if its body is not held here
+         * Called from several threads at once by analyzeParallel.
+         */
+        List<ASTNode> statements(MethodNode header);
+    }
+
+    /**
+     * The bodies of a flat AST's methods, given the arena index of each header
+     */
+    private static MethodBodies bodiesOf(final FlatAst ast, final Map<MethodNode, Integer> bodies) {
+        return new MethodBodies() {
+            public List<ASTNode> statements(MethodNode header) {
+                Integer body = bodies.get(header);
+                return body != null ? ast.materializeStatements(body) : null;
+            }
+        };
+    }
+
+    /**
+     * Program, classes, fields and method headers of a flat AST as objects,
+     * recording the arena index of each method in bodies
+     */
+    private static ProgrameNode outline(FlatAst ast, Map<MethodNode, Integer> bodies) {
+        ProgrameNode program = new ProgrameNode();
+        FlatAst.Cursor cursor = ast.cursor();
+        if (!cursor.toFirstChild()) {
+            return program;
+        }
+        do {
+            ClassNode classNode = new ClassNode(cursor.name(), cursor.type(), cursor.line(), cursor.column());
+            program.addClass(classNode);
+            if (cursor.toFirstChild()) {
+                do {
+                    if (cursor.kind() == FlatAst.METHOD) {
+                        MethodNode header = ast.materializeHeader(cursor.node());
+                        bodies.put(header, cursor.node());
+                        classNode.addMember(header);
+                    } else {
+                        classNode.addMember(ast.materialize(cursor.node()));
+                    }
+                } while (cursor.toNextSibling());
+                cursor.toParent();
+            }
+        } while (cursor.toNextSibling());
+        return program;
+    }
+
+    /**
+     * Pipeline over an outline that loads each method body as the walk reaches it
+     */
+    private class BodyLoadingPipeline extends AnalysisPipeline {
+        private final Object unloadBody = new Object();
+        private final MethodBodies bodies;
+
+        BodyLoadingPipeline(MethodBodies bodies) {
+            super(pipelineRules(), diagnostics);
+            this.bodies = bodies;
+        }
+
+        @Override
+        public Void visitMethod(MethodNode node) {
+            List<ASTNode> statements = bodies.statements(node);
+            if (statements != null) {
+                node.setStatement(statements);
+                afterChildren(node, unloadBody);
+            }
+            return super.visitMethod(node);
+        }
+
+        @Override
+        protected void leave(ASTNode node, Object token) {
+            if (token == unloadBody) {
+                ((MethodNode) node).setStatement(new ArrayList<ASTNode>());
+            } else {
+                super.leave(node, token);
+            }
+        }
     }
 
-    public void registerMethod(String name, String returnType, List<Parameter> parameters, int line) {
-        if (methodSignatures.containsKey(name)) {
-            errors.add("Line " + line + ": Method '" + name + "' already declared at line " +
-                    methodSignatures.get(name).line);
+    /**
+     * Run a rule in the same walk as the type checks
+     * The rule reports through the checker's errors and warnings.
+     */
+    void addRule(AnalysisRule rule) {
+        extraRules.add(rule);
+    }
+
+    /**
+     * Analyze with method bodies checked concurrently on the common pool
+     */
+    public void analyzeParallel(ASTNode root) {
+        analyzeParallel(root, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Analyze with method bodies checked concurrently on the given pool
+     * The program outside method bodies is walked here; each method is then
+     * walked in its own context, and the diagnostics are spliced back in at the
+     * point the method was reached, so the results are the same as those of analyze().
+     */
+    public void analyzeParallel(ASTNode root, ForkJoinPool pool) {
+        if (!(root instanceof ProgrameNode)) {
+            analyze(root);
             return;
         }
-        methodSignatures.put(name, new MethodSignature(name, returnType, parameters, line));
+        analyzeParallel(root, null, pool);
+    }
+
+    /**
+     * Analyze a flat AST with method bodies checked concurrently on the common pool
+     * Each body is materialized by the task that checks it.
+     */
+    public void analyzeParallel(FlatAst ast) {
+        Map<MethodNode, Integer> bodies = new IdentityHashMap<>();
+        ProgrameNode outline = outline(ast, bodies);
+        analyzeParallel(outline, bodiesOf(ast, bodies));
+    }
+
+    /**
+     * Analyze an outline with method bodies checked concurrently on the common pool
+     * Each body is loaded from bodies by the task that checks it.
+     */
+    public void analyzeParallel(ProgrameNode outline, MethodBodies bodies) {
+        analyzeParallel(outline, bodies, ForkJoinPool.commonPool());
+    }
+
+    private void analyzeParallel(ASTNode root, MethodBodies bodies, ForkJoinPool pool) {
+        analysisStamp = ANALYSIS_STAMPS.incrementAndGet();
+        try {
+            signatures = SignatureIndex.build(root);
+            OutlinePipeline outline = new OutlinePipeline(bodies);
+            outline.run(root);
+            final List<MethodCheck> checks = outline.checks;
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(checks);
+                }
+            });
+            spliceResults(checks);
+        } finally {
+            analysisStamp = 0;
+        }
+    }
+
+    /**
+     * Diagnostics of checking one method body, kept by callers of analyzeIncremental
+     */
+    public static final class MethodResult {
+        private final List<String> errors;
+        private final List<String> warnings;
+        private final RuntimeException failure;
+
+        private MethodResult(List<String> errors, List<String> warnings, RuntimeException failure) {
+            this.errors = errors;
+            this.warnings = warnings;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Analyze a program, reusing method results from an earlier analysis
+     * results maps each method whose result is still valid to it; the caller removes
+     * the methods whose body, lines, class fields or called signatures changed. The
+     * other methods are checked, and on return results holds exactly the methods
+     * of program. The diagnostics are those of analyze(program).
+     * Returns the number of methods that were checked.
+     */
+    public int analyzeIncremental(ProgrameNode program, Map<MethodNode, MethodResult> results) {
+        analysisStamp = ANALYSIS_STAMPS.incrementAndGet();
+        try {
+            signatures = SignatureIndex.build(program);
+            OutlinePipeline outline = new OutlinePipeline(null);
+            outline.run(program);
+            int checked = 0;
+            Map<MethodNode, MethodResult> previous = new IdentityHashMap<>(results);
+            results.clear();
+            for (MethodCheck check : outline.checks) {
+                MethodResult result = previous.get(check.method);
+                if (result != null) {
+                    check.result = result;
+                } else {
+                    check.invoke();
+                    checked++;
+                }
+                results.put(check.method, check.result);
+            }
+            spliceResults(outline.checks);
+            return checked;
+        } finally {
+            analysisStamp = 0;
+        }
+    }
+
+    /**
+     * Merge the outline's diagnostics with those of each method, in the order
+     * analyze() reports them, then rethrow the first method's failure
+     */
+    private void spliceResults(List<MethodCheck> checks) {
+        List<String> outlineErrors = new ArrayList<>(errors);
+        List<String> outlineWarnings = new ArrayList<>(warnings);
+        errors.clear();
+        warnings.clear();
+        int errorMark = 0;
+        int warningMark = 0;
+        for (MethodCheck check : checks) {
+            errors.addAll(outlineErrors.subList(errorMark, check.errorMark));
+            warnings.addAll(outlineWarnings.subList(warningMark, check.warningMark));
+            errors.addAll(check.result.errors);
+            warnings.addAll(check.result.warnings);
+            errorMark = check.errorMark;
+            warningMark = check.warningMark;
+        }
+        errors.addAll(outlineErrors.subList(errorMark, outlineErrors.size()));
+        warnings.addAll(outlineWarnings.subList(warningMark, outlineWarnings.size()));
+
+        // A rule that aborts analysis does so for the first method it fails on
+        for (MethodCheck check : checks) {
+            if (check.result.failure != null) {
+                throw check.result.failure;
+            }
+        }
+    }
+
+    /**
+     * Walks everything but method bodies, leaving a MethodCheck in place of each method
+     */
+    private class OutlinePipeline extends AnalysisPipeline {
+        final List<MethodCheck> checks = new ArrayList<>();
+
+        // Where the method bodies are loaded from, when the tree is an outline
+        private final MethodBodies bodies;
+
+        OutlinePipeline(MethodBodies bodies) {
+            super(pipelineRules(), diagnostics);
+            this.bodies = bodies;
+        }
+
+        @Override
+        public Void visitMethod(MethodNode node) {
+            if (classFieldsSnapshot == null) {
+                classFieldsSnapshot = new HashMap<>(fieldTypes);
+            }
+            TypeChecker context = new TypeChecker(TypeChecker.this, currentClassName, classFieldsSnapshot);
+            MethodCheck check = new MethodCheck(node, context, errors.size(), warnings.size());
+            if (bodies != null) {
+                check.loadBodyFrom(bodies);
+            }
+            checks.add(check);
+            return null;
+        }
     }
 
     /**
@@ -382,7 +761,7 @@ public class TypeChecker {
      */
     public void enterMethod(String name, String returnType) {
         this.currentMethodName = name;
-        this.currentMethodReturnType = returnType;
+        this.currentMethodReturnType = returnType != null ? TypeIds.intern(returnType) : NO_METHOD;
     }
 
     /**
@@ -390,20 +769,22 @@ public class TypeChecker {
      */
     public void exitMethod() {
         this.currentMethodName = null;
-        this.currentMethodReturnType = null;
+        this.currentMethodReturnType = NO_METHOD;
+        this.localVariables = null;
+        this.finalLocals = null;
     }
 
     /**
      * Check return statement type compatibility
      */
     public void checkReturnStatement(ASTNode returnExpr, int line) {
-        if (currentMethodReturnType == null) {
+        if (currentMethodReturnType == NO_METHOD) {
             errors.add("Line " + line + ": Return statement outside of method");
             return;
         }
 
         // Check void methods
-        if (currentMethodReturnType.equals("void")) {
+        if (currentMethodReturnType == TypeIds.VOID) {
             if (returnExpr != null) {
                 errors.add("Line " + line + ": void method '" + currentMethodName +
                         "' cannot return a value");
@@ -414,20 +795,20 @@ public class TypeChecker {
         // Non-void methods must return a value
         if (returnExpr == null) {
             errors.add("Line " + line + ": Method '" + currentMethodName +
-                    "' must return a value of type '" + currentMethodReturnType + "'");
+                    "' must return a value of type '" + TypeIds.name(currentMethodReturnType) + "'");
             return;
         }
 
         // Check type compatibility
-        String returnType = getExpressionType(returnExpr);
-        if (returnType.equals("unknown")) {
+        int returnType = typeOf(returnExpr);
+        if (returnType == TypeIds.UNKNOWN) {
             warnings.add("Line " + line + ": Cannot determine type of return expression");
             return;
         }
 
-        if (!isAssignmentCompatible(returnType, currentMethodReturnType)) {
+        if (!TypeIds.isAssignable(returnType, currentMethodReturnType)) {
             errors.add("Line " + line + ": Incompatible return type. Expected '" +
-                    currentMethodReturnType + "' but got '" + returnType + "' in method '" +
+                    TypeIds.name(currentMethodReturnType) + "' but got '" + TypeIds.name(returnType) + "' in method '" +
                     currentMethodName + "'");
         }
     }
@@ -436,17 +817,23 @@ public class TypeChecker {
      * Check method call arguments
      */
     public void checkMethodCall(String methodName, List<ASTNode> arguments, int line) {
-        MethodSignature signature = methodSignatures.get(methodName);
+        checkMethodCall(currentClassName, methodName, arguments, line);
+    }
 
-        if (signature == null) {
-            warnings.add("Line " + line + ": Method '" + methodName + "' not found or not yet declared");
-            return;
-        }
+    private void checkMethodCall(String className, String methodName, List<ASTNode> arguments, int line) {
+        MethodSignature signature = signatures.lookup(className, methodName, arguments.size());
 
-        // Check argument count
-        if (arguments.size() != signature.parameters.size()) {
-            errors.add("Line " + line + ": Method '" + methodName + "' expects " +
-                    signature.parameters.size() + " argument(s) but got " + arguments.size());
+        if (signature == null) {
+            List<MethodSignature> overloads = signatures.overloads(className, methodName);
+            if (overloads.isEmpty()) {
+                warnings.add("Line " + line + ": Method '" + methodName + "' not found or not yet declared");
+            } else if (overloads.size() == 1) {
+                errors.add("Line " + line + ": Method '" + methodName + "' expects " +
+                        overloads.get(0).parameters.size() + " argument(s) but got " + arguments.size());
+            } else {
+                errors.add("Line " + line + ": No overload of method '" + methodName + "' takes " +
+                        arguments.size() + " argument(s)");
+            }
             return;
         }
 
@@ -455,366 +842,372 @@ public class TypeChecker {
             Parameter param = signature.parameters.get(i);
             ASTNode arg = arguments.get(i);
 
-            String argType = getExpressionType(arg);
-            String paramType = param.type;
+            int argType = typeOf(arg);
+            int paramType = param.type;
 
-            if (argType.equals("unknown")) {
+            if (argType == TypeIds.UNKNOWN) {
                 warnings.add("Line " + line + ": Cannot determine type of argument " +
                         (i + 1) + " in call to '" + methodName + "'");
                 continue;
             }
 
-            if (!isAssignmentCompatible(argType, paramType)) {
+            if (!TypeIds.isAssignable(argType, paramType)) {
                 errors.add("Line " + line + ": Argument " + (i + 1) + " of method '" +
-                        methodName + "': expected '" + paramType + "' but got '" + argType + "'");
+                        methodName + "': expected '" + TypeIds.name(paramType) + "' but got '" + TypeIds.name(argType) + "'");
             }
         }
     }
 
     /**
-     * Recursively analyze AST nodes
+     * Pipeline running the type checks and the added rules in one walk
      */
-    private void analyzeNode(ASTNode node) {
-        if (node == null) {
-            return;
-        }
+    private AnalysisPipeline pipeline() {
+        return new AnalysisPipeline(pipelineRules(), diagnostics);
+    }
 
-        try {
-            if (node instanceof AssignmentNode) {
-                analyzeAssignment((AssignmentNode) node);
-            } else if (node instanceof IfNode) {
-                analyzeIf((IfNode) node);
-            } else if (node instanceof WhileNode) {
-                analyzeWhile((WhileNode) node);
-            } else if (node instanceof DoWhileNode) {
-                analyzeDoWhile((DoWhileNode) node);
-            } else if (node instanceof ForNode) {
-                analyzeFor((ForNode) node);
-            } else if (node instanceof BinaryOpNode) {
-                analyzeBinaryOp((BinaryOpNode) node);
-            } else if (node instanceof BlockNode) {
-                analyzeBlock((BlockNode) node);
-            } else if (node instanceof MethodNode) {
-                analyzeMethod((MethodNode) node);
-            } else if (node instanceof ClassNode) {
-                analyzeClass((ClassNode) node);
-            } else if (node instanceof ProgrameNode) {
-                analyzeProgram((ProgrameNode) node);
-            } else if (node instanceof VariableDeclarationNode) {
-                analyzeVariableDeclaration((VariableDeclarationNode) node);
-            } else if (node instanceof ReturnNode) {  // NEW
-                analyzeReturn((ReturnNode) node);
-            } else if (node instanceof MethodCallNode) {  // NEW
-                analyzeMethodCall((MethodCallNode) node);
-            }
-        } catch (Exception e) {
-            warnings.add("Error analyzing node: " + e.getMessage());
-        }
-    }
-
-    private void analyzeAssignment(AssignmentNode node) throws Exception {
-        java.lang.reflect.Field varField = AssignmentNode.class.getDeclaredField("variableName");
-        java.lang.reflect.Field exprField = AssignmentNode.class.getDeclaredField("expression");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
-
-        varField.setAccessible(true);
-        exprField.setAccessible(true);
-        lineField.setAccessible(true);
-
-        String varName = (String) varField.get(node);
-        ASTNode expr = (ASTNode) exprField.get(node);
-        int line = (int) lineField.get(node);
-
-        checkAssignment(varName, expr, line);
-        analyzeNode(expr);
-    }
-
-    private void analyzeIf(IfNode node) throws Exception {
-        java.lang.reflect.Field condField = IfNode.class.getDeclaredField("condition");
-        java.lang.reflect.Field thenField = IfNode.class.getDeclaredField("thenStatement");
-        java.lang.reflect.Field elseField = IfNode.class.getDeclaredField("elseStatement");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
-
-        condField.setAccessible(true);
-        thenField.setAccessible(true);
-        elseField.setAccessible(true);
-        lineField.setAccessible(true);
-
-        ASTNode condition = (ASTNode) condField.get(node);
-        ASTNode thenStmt = (ASTNode) thenField.get(node);
-        ASTNode elseStmt = (ASTNode) elseField.get(node);
-        int line = (int) lineField.get(node);
-
-        checkCondition(condition, "if", line);
-        analyzeNode(condition);
-        analyzeNode(thenStmt);
-        if (elseStmt != null) {
-            analyzeNode(elseStmt);
-        }
-    }
-
-    private void analyzeWhile(WhileNode node) throws Exception {
-        java.lang.reflect.Field condField = WhileNode.class.getDeclaredField("condition");
-        java.lang.reflect.Field bodyField = WhileNode.class.getDeclaredField("body");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
-
-        condField.setAccessible(true);
-        bodyField.setAccessible(true);
-        lineField.setAccessible(true);
-
-        ASTNode condition = (ASTNode) condField.get(node);
-        ASTNode body = (ASTNode) bodyField.get(node);
-        int line = (int) lineField.get(node);
-
-        checkCondition(condition, "while", line);
-        analyzeNode(condition);
-        analyzeNode(body);
-    }
-
-    private void analyzeDoWhile(DoWhileNode node) throws Exception {
-        java.lang.reflect.Field condField = DoWhileNode.class.getDeclaredField("condition");
-        java.lang.reflect.Field bodyField = DoWhileNode.class.getDeclaredField("body");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
-
-        condField.setAccessible(true);
-        bodyField.setAccessible(true);
-        lineField.setAccessible(true);
-
-        ASTNode condition = (ASTNode) condField.get(node);
-        ASTNode body = (ASTNode) bodyField.get(node);
-        int line = (int) lineField.get(node);
-
-        checkCondition(condition, "do-while", line);
-        analyzeNode(condition);
-        analyzeNode(body);
-    }
-
-    private void analyzeFor(ForNode node) throws Exception {
-        java.lang.reflect.Field initField = ForNode.class.getDeclaredField("init");
-        java.lang.reflect.Field condField = ForNode.class.getDeclaredField("condition");
-        java.lang.reflect.Field updateField = ForNode.class.getDeclaredField("update");
-        java.lang.reflect.Field bodyField = ForNode.class.getDeclaredField("body");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
+    private List<AnalysisRule> pipelineRules() {
+        List<AnalysisRule> rules = new ArrayList<>(extraRules.size() + 1);
+        rules.add(typeRule);
+        rules.addAll(extraRules);
+        return rules;
+    }
 
-        initField.setAccessible(true);
-        condField.setAccessible(true);
-        updateField.setAccessible(true);
-        bodyField.setAccessible(true);
-        lineField.setAccessible(true);
+    /**
+     * The type checks, as the first rule of this checker's pipeline
+     * Each check runs when its node is entered, before the children are walked.
+     */
+    private class TypeRule extends AnalysisRule {
+        private final NodeAnalyzer nodeAnalyzer = new NodeAnalyzer();
+
+        TypeRule() {
+            super(ClassNode.class, MethodNode.class, VariableDeclarationNode.class, AssignmentNode.class,
+                    IfNode.class, WhileNode.class, DoWhileNode.class, ForNode.class, ReturnNode.class,
+                    BinaryOpNode.class, NaryOpNode.class, UnaryOpNode.class, MethodCallNode.class,
+                    MemberAccessNode.class);
+            exitFrom(MethodNode.class);
+        }
 
-        ASTNode init = (ASTNode) initField.get(node);
-        ASTNode condition = (ASTNode) condField.get(node);
-        ASTNode update = (ASTNode) updateField.get(node);
-        ASTNode body = (ASTNode) bodyField.get(node);
-        int line = (int) lineField.get(node);
+        @Override
+        void enter(ASTNode node, Diagnostics diagnostics) {
+            try {
+                node.accept(nodeAnalyzer);
+            } catch (RuntimeException e) {
+                warnings.add("Error analyzing node: " + e.getMessage());
+            }
+        }
 
-        analyzeNode(init);
-        if (condition != null) {
-            checkCondition(condition, "for", line);
-            analyzeNode(condition);
+        @Override
+        void exit(ASTNode node, Diagnostics diagnostics) {
+            if (node instanceof MethodNode) {
+                exitMethod();
+            }
         }
-        analyzeNode(update);
-        analyzeNode(body);
     }
 
-    private void analyzeBinaryOp(BinaryOpNode node) throws Exception {
-        java.lang.reflect.Field opField = BinaryOpNode.class.getDeclaredField("operator");
-        java.lang.reflect.Field leftField = BinaryOpNode.class.getDeclaredField("left");
-        java.lang.reflect.Field rightField = BinaryOpNode.class.getDeclaredField("right");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
+    /**
+     * Dispatches statements and declarations to their analyzeX method
+     */
+    private class NodeAnalyzer extends ASTDefaultVisitor<Void> {
+        @Override
+        public Void visitAssignment(AssignmentNode node) {
+            analyzeAssignment(node);
+            return null;
+        }
 
-        opField.setAccessible(true);
-        leftField.setAccessible(true);
-        rightField.setAccessible(true);
-        lineField.setAccessible(true);
+        @Override
+        public Void visitIf(IfNode node) {
+            analyzeIf(node);
+            return null;
+        }
 
-        String operator = (String) opField.get(node);
-        ASTNode left = (ASTNode) leftField.get(node);
-        ASTNode right = (ASTNode) rightField.get(node);
-        int line = (int) lineField.get(node);
+        @Override
+        public Void visitWhile(WhileNode node) {
+            analyzeWhile(node);
+            return null;
+        }
 
-        checkBinaryOperation(operator, left, right, line);
-        analyzeNode(left);
-        analyzeNode(right);
-    }
+        @Override
+        public Void visitDoWhile(DoWhileNode node) {
+            analyzeDoWhile(node);
+            return null;
+        }
 
-    private void analyzeBlock(BlockNode node) throws Exception {
-        java.lang.reflect.Field stmtsField = BlockNode.class.getDeclaredField("statements");
-        stmtsField.setAccessible(true);
+        @Override
+        public Void visitFor(ForNode node) {
+            analyzeFor(node);
+            return null;
+        }
 
-        @SuppressWarnings("unchecked")
-        List<ASTNode> statements = (List<ASTNode>) stmtsField.get(node);
+        @Override
+        public Void visitBinaryOp(BinaryOpNode node) {
+            analyzeBinaryOp(node);
+            return null;
+        }
 
-        for (ASTNode stmt : statements) {
-            analyzeNode(stmt);
+        @Override
+        public Void visitNaryOp(NaryOpNode node) {
+            analyzeNaryOp(node);
+            return null;
         }
-    }
 
-    private void analyzeMethod(MethodNode node) throws Exception {
-        java.lang.reflect.Field nameField = MethodNode.class.getDeclaredField("name");
-        java.lang.reflect.Field returnTypeField = MethodNode.class.getDeclaredField("returnType");
-        java.lang.reflect.Field paramsField = MethodNode.class.getDeclaredField("parameters");
-        java.lang.reflect.Field stmtsField = MethodNode.class.getDeclaredField("statements");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
+        @Override
+        public Void visitUnaryOp(UnaryOpNode node) {
+            analyzeUnaryOp(node);
+            return null;
+        }
 
-        nameField.setAccessible(true);
-        returnTypeField.setAccessible(true);
-        paramsField.setAccessible(true);
-        stmtsField.setAccessible(true);
-        lineField.setAccessible(true);
+        @Override
+        public Void visitMethod(MethodNode node) {
+            analyzeMethod(node);
+            return null;
+        }
 
-        String methodName = (String) nameField.get(node);
-        String returnType = (String) returnTypeField.get(node);
-        @SuppressWarnings("unchecked")
-        List<ASTNode> paramNodes = (List<ASTNode>) paramsField.get(node);
-        @SuppressWarnings("unchecked")
-        List<ASTNode> statements = (List<ASTNode>) stmtsField.get(node);
-        int line = (int) lineField.get(node);
+        @Override
+        public Void visitClass(ClassNode node) {
+            analyzeClass(node);
+            return null;
+        }
 
-        // Extract parameter information
-        List<Parameter> parameters = new ArrayList<>();
+        @Override
+        public Void visitVariableDeclaration(VariableDeclarationNode node) {
+            analyzeVariableDeclaration(node);
+            return null;
+        }
 
-        // CREATE LOCAL VARIABLE MAP FOR THIS METHOD
-        Map<String, String> localVars = new HashMap<>();
-        methodLocalVariables.put(methodName, localVars);
+        @Override
+        public Void visitReturn(ReturnNode node) {
+            analyzeReturn(node);
+            return null;
+        }
 
-        if (paramNodes != null) {
-            for (ASTNode paramNode : paramNodes) {
-                if (paramNode instanceof ParameterNode) {
-                    java.lang.reflect.Field pNameField = ParameterNode.class.getDeclaredField("name");
-                    java.lang.reflect.Field pTypeField = ParameterNode.class.getDeclaredField("type");
-                    java.lang.reflect.Field pArrayField = ParameterNode.class.getDeclaredField("isArray");
+        @Override
+        public Void visitMethodCall(MethodCallNode node) {
+            analyzeMethodCall(node);
+            return null;
+        }
 
-                    pNameField.setAccessible(true);
-                    pTypeField.setAccessible(true);
-                    pArrayField.setAccessible(true);
+        @Override
+        public Void visitMemberAccess(MemberAccessNode node) {
+            analyzeMemberAccess(node);
+            return null;
+        }
+    }
 
-                    String pName = (String) pNameField.get(paramNode);
-                    String pType = (String) pTypeField.get(paramNode);
-                    boolean pArray = (boolean) pArrayField.get(paramNode);
+    /**
+     * Computes the static type of an expression node, "unknown" where it cannot tell
+     */
+    private class ExpressionTyper extends ASTDefaultVisitor<Integer> {
+        @Override
+        protected Integer defaultVisit(ASTNode node) {
+            return TypeIds.UNKNOWN;
+        }
 
-                    // Add to parameters list for method signature
-                    parameters.add(new Parameter(pName, pType, pArray));
+        @Override
+        public Integer visitLiteral(LiteralNode node) {
+            return getLiteralType(node);
+        }
 
-                    // ADD PARAMETER TO LOCAL VARIABLES
-                    localVars.put(pName, pType);
-                }
-            }
+        @Override
+        public Integer visitIdentifier(IdentifierNode node) {
+            return getIdentifierType(node);
         }
 
-        // Register method signature
-        registerMethod(methodName, returnType, parameters, line);
+        @Override
+        public Integer visitBinaryOp(BinaryOpNode node) {
+            return getBinaryOpType(node);
+        }
 
-        // Enter method context
-        enterMethod(methodName, returnType);
+        @Override
+        public Integer visitNaryOp(NaryOpNode node) {
+            return getNaryOpType(node);
+        }
 
-        // Analyze method body
-        if (statements != null) {
-            for (ASTNode stmt : statements) {
-                analyzeNode(stmt);
+        @Override
+        public Integer visitUnaryOp(UnaryOpNode node) {
+            return getUnaryOpType(node);
+        }
+
+        @Override
+        public Integer visitMethodCall(MethodCallNode node) {
+            return getMethodCallType(node);
+        }
+
+        @Override
+        public Integer visitMemberAccess(MemberAccessNode node) {
+            return getMemberAccessType(node);
+        }
+    }
+
+    private void analyzeAssignment(AssignmentNode node) {
+        // A final declared without a value may be assigned; whether it is assigned only once is not tracked
+        if (finalLocals != null && Boolean.TRUE.equals(finalLocals.get(node.getVariableName()))) {
+            finalAssigned(node.getVariableName(), node.getLine());
+        }
+        checkAssignment(node.getVariableName(), node.getExpression(), node.getLine());
+    }
+
+    private void analyzeUnaryOp(UnaryOpNode node) {
+        String operator = node.getOperator();
+        if ((operator.equals("++") || operator.equals("--")) && node.getOperand() instanceof IdentifierNode
+                && finalLocals != null) {
+            String name = ((IdentifierNode) node.getOperand()).getName();
+            if (finalLocals.containsKey(name)) {
+                finalAssigned(name, node.getLine());
             }
         }
+    }
 
-        // Exit method context
-        exitMethod();
+    private void finalAssigned(String name, int line) {
+        errors.add("Line " + line + ": Cannot assign a value to final variable '" + name + "'");
     }
-    // ... rest of existing code ...
 
-    private void analyzeReturn(ReturnNode node) throws Exception {
-        java.lang.reflect.Field exprField = ReturnNode.class.getDeclaredField("expression");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
+    private void analyzeIf(IfNode node) {
+        checkCondition(node.getCondition(), "if", node.getLine());
+    }
 
-        exprField.setAccessible(true);
-        lineField.setAccessible(true);
+    private void analyzeWhile(WhileNode node) {
+        checkCondition(node.getCondition(), "while", node.getLine());
+    }
 
-        ASTNode expr = (ASTNode) exprField.get(node);
-        int line = (int) lineField.get(node);
+    private void analyzeDoWhile(DoWhileNode node) {
+        checkCondition(node.getCondition(), "do-while", node.getLine());
+    }
 
-        checkReturnStatement(expr, line);
-        analyzeNode(expr);
+    private void analyzeFor(ForNode node) {
+        if (node.getCondition() != null) {
+            checkCondition(node.getCondition(), "for", node.getLine());
+        }
     }
 
-    // ============================================
-    // NEW: Analyze method call
-    // ============================================
+    private void analyzeBinaryOp(BinaryOpNode node) {
+        checkBinaryOperation(node.getOperator(), node.getLeft(), node.getRight(), node.getLine());
+    }
 
-    private void analyzeMethodCall(MethodCallNode node) throws Exception {
-        java.lang.reflect.Field nameField = MethodCallNode.class.getDeclaredField("methodName");
-        java.lang.reflect.Field argsField = MethodCallNode.class.getDeclaredField("arguments");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
+    /**
+     * Check each operator of the chain against the operand types on either side,
+     * last operator first as for the BinaryOp chain, in one pass over the operands
+     */
+    private void analyzeNaryOp(NaryOpNode node) {
+        String operator = node.getOperator();
+        List<ASTNode> operands = node.getOperands();
+        int count = operands.size() - 1;
+        int[] leftTypes = new int[count];
+        int type = typeOf(operands.get(0));
+        for (int i = 0; i < count; i++) {
+            leftTypes[i] = type;
+            type = binaryOpType(operator, type, typeOf(operands.get(i + 1)));
+        }
+        for (int i = count - 1; i >= 0; i--) {
+            checkOperandTypes(operator, leftTypes[i], typeOf(operands.get(i + 1)), node.getOperatorLine(i));
+        }
+    }
 
-        nameField.setAccessible(true);
-        argsField.setAccessible(true);
-        lineField.setAccessible(true);
+    /**
+     * Enter the method's context; TypeRule.exit leaves it after the body is walked
+     */
+    private void analyzeMethod(MethodNode node) {
+        String methodName = node.getName();
+        int returnType = node.getReturnTypeId();
 
-        String methodName = (String) nameField.get(node);
-        @SuppressWarnings("unchecked")
-        List<ASTNode> arguments = (List<ASTNode>) argsField.get(node);
-        int line = (int) lineField.get(node);
+        // Extract parameter information
+        List<Parameter> parameters = parametersOf(node);
 
-        checkMethodCall(methodName, arguments != null ? arguments : new ArrayList<>(), line);
+        // CREATE LOCAL VARIABLE MAP FOR THIS METHOD
+        Map<String, Integer> localVars = new HashMap<>();
 
-        // Analyze argument expressions
-        if (arguments != null) {
-            for (ASTNode arg : arguments) {
-                analyzeNode(arg);
-            }
+        // ADD PARAMETERS TO LOCAL VARIABLES
+        for (Parameter param : parameters) {
+            localVars.put(param.name, param.type);
         }
-    }
 
-    private void analyzeClass(ClassNode node) throws Exception {
-        java.lang.reflect.Field membersField = ClassNode.class.getDeclaredField("members");
-        membersField.setAccessible(true);
+        // The index keeps the first declaration of each (class, name, arity)
+        MethodSignature declared = signatures.lookup(currentClassName, methodName, parameters.size());
+        if (declared != null && declared.declaration != node) {
+            errors.add("Line " + node.getLine() + ": Method '" + methodName + "' already declared at line " +
+                    declared.line);
+        }
 
-        @SuppressWarnings("unchecked")
-        List<ASTNode> members = (List<ASTNode>) membersField.get(node);
+        // Enter method context
+        currentMethodName = methodName;
+        currentMethodReturnType = returnType;
+        localVariables = localVars;
+        finalLocals = new HashMap<>();
+    }
 
-        for (ASTNode member : members) {
-            analyzeNode(member);
+    private static List<Parameter> parametersOf(MethodNode node) {
+        List<Parameter> parameters = new ArrayList<>();
+        List<ASTNode> paramNodes = node.getParameters();
+        if (paramNodes != null) {
+            for (ASTNode paramNode : paramNodes) {
+                if (paramNode instanceof ParameterNode) {
+                    ParameterNode param = (ParameterNode) paramNode;
+                    parameters.add(new Parameter(param.getName(), param.getTypeId(), param.isArray()));
+                }
+            }
         }
+        return parameters;
     }
 
-    private void analyzeProgram(ProgrameNode node) throws Exception {
-        java.lang.reflect.Field classesField = ProgrameNode.class.getDeclaredField("classes");
-        classesField.setAccessible(true);
+    private void analyzeReturn(ReturnNode node) {
+        checkReturnStatement(node.getExpression(), node.getLine());
+    }
 
-        @SuppressWarnings("unchecked")
-        List<ASTNode> classes = (List<ASTNode>) classesField.get(node);
+    private void analyzeMethodCall(MethodCallNode node) {
+        if (node == qualifiedCall) {
+            return; // Checked by analyzeMemberAccess
+        }
+        List<ASTNode> arguments = node.getArguments();
+        checkMethodCall(node.getMethodName(), arguments != null ? arguments : new ArrayList<>(), node.getLine());
+    }
 
-        for (ASTNode classNode : classes) {
-            analyzeNode(classNode);
+    private void analyzeMemberAccess(MemberAccessNode node) {
+        List<String> members = node.getMembers();
+        ASTNode call = node.getMethodCall();
+        qualifiedCall = call; // The walk enters it next
+        if (members.size() != 2 || call == null || !signatures.hasClass(members.get(0))) {
+            return; // Not a call to a method of this program
         }
+        MethodCallNode methodCall = (MethodCallNode) call;
+        List<ASTNode> arguments = methodCall.getArguments() != null ? methodCall.getArguments() : new ArrayList<>();
+        checkMethodCall(members.get(0), methodCall.getMethodName(), arguments, node.getLine());
     }
 
-    private void analyzeVariableDeclaration(VariableDeclarationNode node) throws Exception {
-        java.lang.reflect.Field initField = VariableDeclarationNode.class.getDeclaredField("initializer");
-        java.lang.reflect.Field typeField = VariableDeclarationNode.class.getDeclaredField("type");
-        java.lang.reflect.Field nameField = VariableDeclarationNode.class.getDeclaredField("name");
-        java.lang.reflect.Field lineField = ASTNode.class.getDeclaredField("line");
+    private void analyzeClass(ClassNode node) {
+        currentClassName = node.getName();
+        classFieldsSnapshot = null;
 
-        initField.setAccessible(true);
-        typeField.setAccessible(true);
-        nameField.setAccessible(true);
-        lineField.setAccessible(true);
+        // Fields are visible to every method, so collect them first.
+        // This keeps field lookups working when the parser did not record symbols.
+        for (ASTNode member : node.getMembers()) {
+            if (member instanceof FieldNode) {
+                FieldNode field = (FieldNode) member;
+                fieldTypes.put(field.getName(), field.getTypeId());
+            }
+        }
+    }
 
-        ASTNode initializer = (ASTNode) initField.get(node);
-        String type = (String) typeField.get(node);
-        String name = (String) nameField.get(node);
-        int line = (int) lineField.get(node);
+    private void analyzeVariableDeclaration(VariableDeclarationNode node) {
+        ASTNode initializer = node.getInitializer();
+        int type = node.getTypeId();
+        String name = node.getName();
 
-        if (currentMethodName != null) {
-            Map<String, String> localVars = methodLocalVariables.get(currentMethodName);
-            if (localVars != null) {
-                localVars.put(name, type);
+        if (localVariables != null) {
+            localVariables.put(name, type);
+        }
+        if (finalLocals != null) {
+            if (node.isFinal()) {
+                finalLocals.put(name, initializer != null);
+            } else {
+                finalLocals.remove(name);
             }
         }
 
         if (initializer != null) {
-            String initType = getExpressionType(initializer);
-            if (!initType.equals("unknown") && !isAssignmentCompatible(initType, type)) {
-                errors.add("Line " + line + ": Type mismatch in initialization of '" + name + "': cannot assign " + initType + " to " + type);
+            int initType = typeOf(initializer);
+            if (initType != TypeIds.UNKNOWN && !TypeIds.isAssignable(initType, type)) {
+                errors.add("Line " + node.getLine() + ": Type mismatch in initialization of '" + name + "': cannot assign "
+                        + TypeIds.name(initType) + " to " + TypeIds.name(type));
             }
-            analyzeNode(initializer);
         }
     }
 
@@ -822,25 +1215,37 @@ public class TypeChecker {
      * Print type checking results
      */
     public void printResults() {
+        OutputRenderer out = OutputRenderer.toStandardOutput();
+        printResults(out);
+        out.flush();
+    }
+
+    public void printResults(OutputRenderer out) {
+        printResults(out, errors, warnings);
+    }
 
+    /**
+     * Print type checking results given as lists, such as ones replayed from a CompileCache
+     */
+    static void printResults(OutputRenderer out, List<String> errors, List<String> warnings) {
         if (errors.isEmpty() && warnings.isEmpty()) {
-            System.out.println(" No type errors found!");
+            out.println(" No type errors found!");
         } else {
             if (!errors.isEmpty()) {
-                System.out.println("\nTYPE ERRORS:");
+                out.println("\nTYPE ERRORS:");
                 for (String error : errors) {
-                    System.out.println("  " + error);
+                    out.println("  " + error);
                 }
             }
 
             if (!warnings.isEmpty()) {
-                System.out.println("\nTYPE WARNINGS:");
+                out.println("\nTYPE WARNINGS:");
                 for (String warning : warnings) {
-                    System.out.println("  " + warning);
+                    out.println("  " + warning);
                 }
             }
         }
-        System.out.println();
+        out.println();
     }
 
     public List<String> getErrors() {
@@ -854,4 +1259,189 @@ public class TypeChecker {
     public boolean hasErrors() {
         return !errors.isEmpty();
     }
+
+    // ==================== INNER CLASSES ====================
+
+    /**
+     * Immutable index of the method signatures and fields of a program
+     * Signatures are keyed by (class, name, arity), so resolving a call is one
+     * hash probe; the first declaration of a key is the one kept.
+     */
+    private static final class SignatureIndex {
+        static final SignatureIndex EMPTY = new SignatureIndex(
+                Collections.<SignatureKey, MethodSignature>emptyMap(),
+                Collections.<SignatureKey, List<MethodSignature>>emptyMap(),
+                Collections.<String, Map<String, Integer>>emptyMap());
+
+        // Overload lists are keyed with this arity; they are only read to explain a failed lookup
+        private static final int ANY_ARITY = -1;
+
+        private final Map<SignatureKey, MethodSignature> signatures;
+        private final Map<SignatureKey, List<MethodSignature>> overloads;
+        private final Map<String, Map<String, Integer>> classFields; // className -> (fieldName -> type id)
+
+        private SignatureIndex(Map<SignatureKey, MethodSignature> signatures,
+                               Map<SignatureKey, List<MethodSignature>> overloads,
+                               Map<String, Map<String, Integer>> classFields) {
+            this.signatures = signatures;
+            this.overloads = overloads;
+            this.classFields = classFields;
+        }
+
+        /**
+         * Collect the signatures of a program, or of a single class
+         */
+        static SignatureIndex build(ASTNode root) {
+            List<ASTNode> classes;
+            if (root instanceof ProgrameNode) {
+                classes = ((ProgrameNode) root).getClasses();
+            } else if (root instanceof ClassNode) {
+                classes = Collections.singletonList(root);
+            } else {
+                return EMPTY;
+            }
+
+            Map<SignatureKey, MethodSignature> signatures = new HashMap<>();
+            Map<SignatureKey, List<MethodSignature>> overloads = new HashMap<>();
+            Map<String, Map<String, Integer>> classFields = new HashMap<>();
+            for (ASTNode classNode : classes) {
+                if (!(classNode instanceof ClassNode)) {
+                    continue;
+                }
+                String className = ((ClassNode) classNode).getName();
+                Map<String, Integer> fields = classFields.get(className);
+                if (fields == null) {
+                    fields = new HashMap<>();
+                    classFields.put(className, fields);
+                }
+                for (ASTNode member : ((ClassNode) classNode).getMembers()) {
+                    if (member instanceof FieldNode) {
+                        FieldNode field = (FieldNode) member;
+                        fields.put(field.getName(), field.getTypeId());
+                    } else if (member instanceof MethodNode) {
+                        MethodNode method = (MethodNode) member;
+                        List<Parameter> parameters = parametersOf(method);
+                        SignatureKey key = new SignatureKey(className, method.getName(), parameters.size());
+                        if (signatures.containsKey(key)) {
+                            continue; // Reported as a duplicate when its body is checked
+                        }
+                        MethodSignature signature = new MethodSignature(method.getName(),
+                                method.getReturnTypeId(), parameters, method.getLine());
+                        signature.declaration = method;
+                        signatures.put(key, signature);
+
+                        SignatureKey nameKey = new SignatureKey(className, method.getName(), ANY_ARITY);
+                        List<MethodSignature> sameName = overloads.get(nameKey);
+                        if (sameName == null) {
+                            sameName = new ArrayList<>(1);
+                            overloads.put(nameKey, sameName);
+                        }
+                        sameName.add(signature);
+                    }
+                }
+            }
+            return new SignatureIndex(signatures, overloads, classFields);
+        }
+
+        MethodSignature lookup(String className, String name, int arity) {
+            return signatures.get(new SignatureKey(className, name, arity));
+        }
+
+        /**
+         * Every signature with the given class and name, in declaration order
+         */
+        List<MethodSignature> overloads(String className, String name) {
+            List<MethodSignature> sameName = overloads.get(new SignatureKey(className, name, ANY_ARITY));
+            return sameName != null ? sameName : Collections.<MethodSignature>emptyList();
+        }
+
+        boolean hasClass(String className) {
+            return classFields.containsKey(className);
+        }
+
+        int fieldType(String className, String fieldName) {
+            Map<String, Integer> fields = classFields.get(className);
+            Integer type = fields != null ? fields.get(fieldName) : null;
+            return type != null ? type : TypeIds.UNKNOWN;
+        }
+    }
+
+    private static final class SignatureKey {
+        private final String className;
+        private final String name;
+        private final int arity;
+        private final int hash;
+
+        SignatureKey(String className, String name, int arity) {
+            this.className = className;
+            this.name = name;
+            this.arity = arity;
+            this.hash = (className.hashCode() * 31 + name.hashCode()) * 31 + arity;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SignatureKey)) {
+                return false;
+            }
+            SignatureKey other = (SignatureKey) o;
+            return arity == other.arity && name.equals(other.name) && className.equals(other.className);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Checks one method body in its own context
+     */
+    private static class MethodCheck extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MethodNode method;
+        private final TypeChecker context;
+
+        // Sizes of the outline's diagnostics when the method was reached
+        private final int errorMark;
+        private final int warningMark;
+
+        private MethodResult result;
+
+        // Where the method's body is loaded from when method is a header without statements
+        private MethodBodies bodies;
+        private boolean loaded;
+
+        MethodCheck(MethodNode method, TypeChecker context, int errorMark, int warningMark) {
+            this.method = method;
+            this.context = context;
+            this.errorMark = errorMark;
+            this.warningMark = warningMark;
+        }
+
+        void loadBodyFrom(MethodBodies bodies) {
+            this.bodies = bodies;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                List<ASTNode> statements = bodies != null ? bodies.statements(method) : null;
+                if (statements != null) {
+                    method.setStatement(statements);
+                    loaded = true;
+                }
+                context.pipeline().run(method);
+                result = new MethodResult(context.errors, context.warnings, null);
+            } catch (RuntimeException e) {
+                // Rethrown by analyzeParallel on the calling thread, in method order
+                result = new MethodResult(context.errors, context.warnings, e);
+            } finally {
+                if (loaded) {
+                    method.setStatement(new ArrayList<ASTNode>());
+                }
+            }
+        }
+    }
 }
\ No newline at end of file
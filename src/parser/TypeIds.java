@@ -0,0 +1,132 @@
+package parser;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned type ids for semantic analysis
+ * Primitive types, String and void have fixed ids; any other type name is
+ * assigned the next free id the first time it is seen, so two types are the
+ * same exactly when their ids are equal.
+ * Widening and numeric promotion are precomputed tables indexed by id.
+ */
+public final class TypeIds {
+
+    public static final int UNKNOWN = 0;
+
+    // Numeric ids are ordered by promotion rank: byte < short < char < int < long < float < double
+    public static final int BYTE = 1;
+    public static final int SHORT = 2;
+    public static final int CHAR = 3;
+    public static final int INT = 4;
+    public static final int LONG = 5;
+    public static final int FLOAT = 6;
+    public static final int DOUBLE = 7;
+
+    public static final int BOOLEAN = 8;
+    public static final int STRING = 9;
+    public static final int VOID = 10;
+
+    private static final String[] BUILTIN_NAMES = {
+            "unknown", "byte", "short", "char", "int", "long", "float", "double", "boolean", "String", "void"
+    };
+    private static final int BUILTIN_COUNT = BUILTIN_NAMES.length;
+
+    // NUMERIC has bit id set for every numeric type
+    private static final long NUMERIC = bits(BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE);
+
+    // ASSIGNABLE[from] has bit `to` set when a value of type from may be assigned to type to
+    private static final long[] ASSIGNABLE = new long[BUILTIN_COUNT];
+
+    // WIDER[a * BUILTIN_COUNT + b] is the promoted type of a numeric binary operation
+    private static final byte[] WIDER = new byte[BUILTIN_COUNT * BUILTIN_COUNT];
+
+    static {
+        // Implicit widening conversions
+        ASSIGNABLE[BYTE] = bits(BYTE, SHORT, INT, LONG, FLOAT, DOUBLE);
+        ASSIGNABLE[SHORT] = bits(SHORT, INT, LONG, FLOAT, DOUBLE);
+        ASSIGNABLE[INT] = bits(INT, LONG, FLOAT, DOUBLE);
+        ASSIGNABLE[LONG] = bits(LONG, FLOAT, DOUBLE);
+        ASSIGNABLE[FLOAT] = bits(FLOAT, DOUBLE);
+        ASSIGNABLE[DOUBLE] = bits(DOUBLE);
+        ASSIGNABLE[CHAR] = bits(CHAR, INT, LONG, FLOAT, DOUBLE);
+
+        // Boolean and String have no implicit conversion
+        ASSIGNABLE[BOOLEAN] = bits(BOOLEAN);
+        ASSIGNABLE[STRING] = bits(STRING);
+
+        for (int a = BYTE; a <= DOUBLE; a++) {
+            for (int b = BYTE; b <= DOUBLE; b++) {
+                WIDER[a * BUILTIN_COUNT + b] = (byte) Math.max(a, b);
+            }
+        }
+    }
+
+    private static final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = Arrays.copyOf(BUILTIN_NAMES, 64);
+    private static int count = BUILTIN_COUNT;
+
+    static {
+        for (int i = 0; i < BUILTIN_COUNT; i++) {
+            ids.put(BUILTIN_NAMES[i], i);
+        }
+    }
+
+    private TypeIds() {
+    }
+
+    private static long bits(int... ids) {
+        long mask = 0;
+        for (int id : ids) {
+            mask |= 1L << id;
+        }
+        return mask;
+    }
+
+    /**
+     * Id of a type name, assigning a new one for a name not seen before
+     * A null name is UNKNOWN.
+     */
+    public static int intern(String name) {
+        if (name == null) {
+            return UNKNOWN;
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : register(name);
+    }
+
+    private static synchronized int register(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+        }
+        names[count] = name;
+        ids.put(name, count);
+        return count++;
+    }
+
+    public static String name(int id) {
+        return names[id];
+    }
+
+    public static boolean isNumeric(int id) {
+        return id < BUILTIN_COUNT && (NUMERIC >>> id & 1) != 0;
+    }
+
+    /**
+     * Whether a value of type from can be assigned to a variable of type to
+     */
+    public static boolean isAssignable(int from, int to) {
+        return from == to || (from < BUILTIN_COUNT && to < BUILTIN_COUNT && (ASSIGNABLE[from] >>> to & 1) != 0);
+    }
+
+    /**
+     * Result type of numeric promotion, UNKNOWN unless both types are numeric
+     */
+    public static int wider(int a, int b) {
+        return a < BUILTIN_COUNT && b < BUILTIN_COUNT ? WIDER[a * BUILTIN_COUNT + b] : UNKNOWN;
+    }
+}